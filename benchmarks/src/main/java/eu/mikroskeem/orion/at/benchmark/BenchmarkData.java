@@ -0,0 +1,167 @@
+package eu.mikroskeem.orion.at.benchmark;
+
+import eu.mikroskeem.orion.at.AccessTransformEntry;
+import eu.mikroskeem.orion.at.CompiledRuleset;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Synthetic access transformer files and classes used by benchmarks
+ *
+ * @author Mark Vainomaa
+ */
+final class BenchmarkData {
+    /** Package of classes which have no rules, but pad rulesets to wanted size */
+    private final static String FILLER_PACKAGE = "net.minecraft.server.filler.";
+
+    private BenchmarkData() {}
+
+    /**
+     * Shape of benchmarked class
+     */
+    enum ClassShape {
+        /** Few members, all of them targeted by rules */
+        SMALL("bench.SmallClass", 4),
+
+        /** Many members with method bodies, a quarter of them targeted by rules */
+        LARGE("bench.LargeClass", 400),
+
+        /** Same as {@link #LARGE}, but no rules target it */
+        NO_MATCH("bench.UnrelatedClass", 400);
+
+        private final String className;
+        private final int members;
+
+        ClassShape(String className, int members) {
+            this.className = className;
+            this.members = members;
+        }
+
+        String getClassName() {
+            return className;
+        }
+
+        byte[] generateClass() {
+            return BenchmarkData.generateClass(className, members, Opcodes.ACC_PROTECTED, this != SMALL);
+        }
+
+        List<String> generateRules() {
+            List<String> lines = new ArrayList<>();
+            if(this == NO_MATCH)
+                return lines;
+
+            int step = this == SMALL ? 1 : 4;
+            lines.add("public-f " + className);
+            for (int i = 0; i < members; i += step) {
+                lines.add("public-f " + className + " field" + i);
+                lines.add("public " + className + " method" + i + "(I)I");
+            }
+            return lines;
+        }
+    }
+
+    /**
+     * Generates synthetic access transformer file
+     *
+     * @param lines Amount of lines
+     * @return Access transformer file contents
+     */
+    static String generateAtFile(int lines) {
+        StringBuilder file = new StringBuilder(lines * 64);
+        for (int i = 0; i < lines; i++) {
+            switch(i % 5) {
+                case 0: file.append("public ").append(FILLER_PACKAGE).append("Class").append(i); break;
+                case 1: file.append("public-f ").append(FILLER_PACKAGE).append("Class").append(i).append(" field").append(i).append(" # comment"); break;
+                case 2: file.append("protected ").append(FILLER_PACKAGE).append("Class").append(i).append(" method").append(i).append("(ILjava/lang/String;)V"); break;
+                case 3: file.append("public ").append(FILLER_PACKAGE).append("Class").append(i / 5).append("$Inner").append(i).append(" *()"); break;
+                default: file.append("# Comment line ").append(i); break;
+            }
+            file.append('\n');
+        }
+        return file.toString();
+    }
+
+    /**
+     * Compiles ruleset having given lines, padded with rules targeting unrelated classes up to given size
+     *
+     * @param lines Lines to include
+     * @param size Wanted ruleset size in entries
+     * @return Compiled ruleset
+     */
+    static CompiledRuleset compileRuleset(List<String> lines, int size) {
+        List<AccessTransformEntry> entries = new ArrayList<>(Math.max(size, lines.size()));
+        for (String line : lines)
+            entries.add(new AccessTransformEntry(line));
+        for (int i = 0; entries.size() < size; i++) {
+            String className = FILLER_PACKAGE + "Class" + (i / 8);
+            entries.add(new AccessTransformEntry(i % 2 == 0
+                    ? "public-f " + className + " field" + i
+                    : "public " + className + " method" + i + "(I)V"));
+        }
+        return CompiledRuleset.compile(entries);
+    }
+
+    /**
+     * Generates class with given amount of fields and methods. Every method calls the next one, so with
+     * private methods every method body contains an INVOKESPECIAL call
+     *
+     * @param className Class name, a'la 'foo.bar.Baz'
+     * @param members Amount of fields and methods
+     * @param memberAccess Access flags of fields and methods
+     * @param wideMethods Whether methods should have longer bodies
+     * @return Class bytes
+     */
+    static byte[] generateClass(String className, int members, int memberAccess, boolean wideMethods) {
+        String internalName = className.replace('.', '/');
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, internalName, null,
+                "java/lang/Object", null);
+
+        for (int i = 0; i < members; i++)
+            cw.visitField(memberAccess | Opcodes.ACC_FINAL, "field" + i, "I", null, null).visitEnd();
+
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        for (int i = 0; i < members; i++) {
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+            mv.visitLdcInsn(i);
+            mv.visitFieldInsn(Opcodes.PUTFIELD, internalName, "field" + i, "I");
+        }
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        boolean isPrivate = (memberAccess & Opcodes.ACC_PRIVATE) != 0;
+        for (int i = 0; i < members; i++) {
+            mv = cw.visitMethod(memberAccess, "method" + i, "(I)I", null, null);
+            mv.visitCode();
+            mv.visitVarInsn(Opcodes.ILOAD, 1);
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+            mv.visitFieldInsn(Opcodes.GETFIELD, internalName, "field" + i, "I");
+            mv.visitInsn(Opcodes.IADD);
+            for (int j = 0; wideMethods && j < 16; j++) {
+                mv.visitLdcInsn(j * 31 + i);
+                mv.visitInsn(Opcodes.IXOR);
+            }
+            if(i + 1 < members) {
+                mv.visitVarInsn(Opcodes.ISTORE, 1);
+                mv.visitVarInsn(Opcodes.ALOAD, 0);
+                mv.visitVarInsn(Opcodes.ILOAD, 1);
+                mv.visitMethodInsn(isPrivate ? Opcodes.INVOKESPECIAL : Opcodes.INVOKEVIRTUAL, internalName,
+                        "method" + (i + 1), "(I)I", false);
+            }
+            mv.visitInsn(Opcodes.IRETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+}
@@ -0,0 +1,105 @@
+package eu.mikroskeem.orion.at.benchmark;
+
+import eu.mikroskeem.orion.at.AccessTransformEntry;
+import eu.mikroskeem.orion.at.AccessTransformer;
+import eu.mikroskeem.test.orion.at.LegacyAtLineParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Access transformer line parsing and file loading benchmarks
+ *
+ * @author Mark Vainomaa
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ParseBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int lines;
+
+    private String atFile;
+
+    @Setup
+    public void setup() {
+        atFile = BenchmarkData.generateAtFile(lines);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public AccessTransformer loadAccessTransformers() throws IOException {
+        AccessTransformer at = new AccessTransformer();
+        at.loadAccessTransformers(new BufferedReader(new StringReader(atFile)));
+        return at;
+    }
+
+    /**
+     * Same as {@link #loadAccessTransformers()}, but using the regular expression based parser as a baseline
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<LegacyAtLineParser.Entry> loadLegacy() throws IOException {
+        List<LegacyAtLineParser.Entry> entries = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new StringReader(atFile));
+        String line;
+        while((line = reader.readLine()) != null) {
+            LegacyAtLineParser.Entry entry = LegacyAtLineParser.processLine(line);
+            if(entry != null)
+                entries.add(entry);
+        }
+        return entries;
+    }
+
+    /**
+     * Single line parsing throughput, independent of file size
+     */
+    @State(Scope.Thread)
+    @Fork(1)
+    @Warmup(iterations = 5, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public static class EntryParsing {
+        private final static String CLASS_LINE = "public-f net.minecraft.server.MinecraftServer";
+        private final static String FIELD_LINE = "public-f net.minecraft.server.MinecraftServer field_71307_n # comment";
+        private final static String METHOD_LINE = "protected net.minecraft.server.MinecraftServer func_71240_o(ILjava/lang/String;)V";
+
+        @Benchmark
+        @BenchmarkMode(Mode.Throughput)
+        @OutputTimeUnit(TimeUnit.MICROSECONDS)
+        public AccessTransformEntry parseClassEntry() {
+            return new AccessTransformEntry(CLASS_LINE);
+        }
+
+        @Benchmark
+        @BenchmarkMode(Mode.Throughput)
+        @OutputTimeUnit(TimeUnit.MICROSECONDS)
+        public AccessTransformEntry parseFieldEntry() {
+            return new AccessTransformEntry(FIELD_LINE);
+        }
+
+        @Benchmark
+        @BenchmarkMode(Mode.Throughput)
+        @OutputTimeUnit(TimeUnit.MICROSECONDS)
+        public AccessTransformEntry parseMethodEntry() {
+            return new AccessTransformEntry(METHOD_LINE);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package eu.mikroskeem.orion.at.benchmark;
+
+import eu.mikroskeem.orion.at.FrozenAccessTransformer;
+import eu.mikroskeem.orion.at.TransformMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class transformation benchmarks over class shapes, ruleset sizes and transform modes
+ *
+ * @author Mark Vainomaa
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TransformBenchmark {
+    @Param({"SMALL", "LARGE", "NO_MATCH"})
+    public BenchmarkData.ClassShape shape;
+
+    @Param({"10", "1000", "100000"})
+    public int rulesetSize;
+
+    @Param({"REBUILD", "SHARE_CONSTANT_POOL", "PATCH_ACCESS_FLAGS"})
+    public TransformMode mode;
+
+    private FrozenAccessTransformer transformer;
+    private byte[] source;
+
+    @Setup
+    public void setup() {
+        source = shape.generateClass();
+        transformer = new FrozenAccessTransformer(BenchmarkData.compileRuleset(shape.generateRules(), rulesetSize), mode);
+    }
+
+    @Benchmark
+    public byte[] transformClass() {
+        return transformer.transformClass(source);
+    }
+}
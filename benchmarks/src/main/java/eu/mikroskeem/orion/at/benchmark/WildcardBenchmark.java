@@ -0,0 +1,69 @@
+package eu.mikroskeem.orion.at.benchmark;
+
+import eu.mikroskeem.orion.at.FrozenAccessTransformer;
+import eu.mikroskeem.orion.at.TransformMode;
+import org.objectweb.asm.Opcodes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks wildcard rules and making private methods non-private, which requires rewriting INVOKESPECIAL calls
+ *
+ * @author Mark Vainomaa
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WildcardBenchmark {
+    private final static String CLASS_NAME = "bench.PrivateClass";
+    private final static int MEMBERS = 200;
+
+    @Param({"REBUILD", "SHARE_CONSTANT_POOL", "PATCH_ACCESS_FLAGS"})
+    public TransformMode mode;
+
+    private byte[] source;
+    private FrozenAccessTransformer wildcards;
+    private FrozenAccessTransformer privateMethods;
+
+    @Setup
+    public void setup() {
+        source = BenchmarkData.generateClass(CLASS_NAME, MEMBERS, Opcodes.ACC_PRIVATE, true);
+
+        /* Wildcards touch every member, including private methods */
+        wildcards = new FrozenAccessTransformer(BenchmarkData.compileRuleset(Arrays.asList(
+                "public-f " + CLASS_NAME + " *",
+                "public " + CLASS_NAME + " *()"
+        ), 1000), mode);
+
+        /* Only methods, every method calls the next one with INVOKESPECIAL */
+        String[] methodRules = new String[MEMBERS];
+        for (int i = 0; i < MEMBERS; i++)
+            methodRules[i] = "protected " + CLASS_NAME + " method" + i + "(I)I";
+        privateMethods = new FrozenAccessTransformer(BenchmarkData.compileRuleset(Arrays.asList(methodRules), 1000), mode);
+    }
+
+    @Benchmark
+    public byte[] wildcardRules() {
+        return wildcards.transformClass(source);
+    }
+
+    @Benchmark
+    public byte[] privateMethodRewrite() {
+        return privateMethods.transformClass(source);
+    }
+}
@@ -0,0 +1,202 @@
+package eu.mikroskeem.orion.at;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static eu.mikroskeem.orion.at.ConstantPool.readInt;
+import static eu.mikroskeem.orion.at.ConstantPool.readUnsignedShort;
+
+/**
+ * Access transformer engine which patches access flags directly in a copy of class bytes, without
+ * rebuilding the class through ASM. Produces same access flags as {@link AccessTransformerVisitor}.
+ *
+ * @author Mark Vainomaa
+ */
+final class AccessFlagPatcher {
+    private final byte[] source;
+    private final CompiledRuleset ruleset;
+    private final ConstantPool constantPool;
+    private final TransformHooks hooks;
+    private byte[] result;
+
+    private AccessFlagPatcher(@NonNull byte[] source, @NonNull CompiledRuleset ruleset, @NonNull TransformHooks hooks) {
+        this.source = source;
+        this.ruleset = ruleset;
+        this.constantPool = ConstantPool.read(source);
+        this.hooks = hooks;
+    }
+
+    /**
+     * Patches access flags of given class
+     *
+     * @param source Class bytes
+     * @param ruleset {@link CompiledRuleset} to apply
+     * @param hooks {@link TransformHooks} to report to. Nothing is reported if this method returns null
+     * @return Patched copy of class bytes, {@code source} itself if nothing changed, or null if class needs
+     *         INVOKESPECIAL rewriting and must go through {@link AccessTransformerVisitor} instead
+     * @throws IllegalArgumentException if given bytes do not describe a valid class file
+     */
+    @Nullable
+    static byte[] patch(@NonNull byte[] source, @NonNull CompiledRuleset ruleset, @NonNull TransformHooks hooks) {
+        if(hooks.isEmpty())
+            return new AccessFlagPatcher(source, ruleset, hooks).patch();
+
+        /* Class may be handed over to ASM halfway through, so report only once patching succeeded */
+        PendingEvents pending = new PendingEvents(hooks);
+        byte[] patched = new AccessFlagPatcher(source, ruleset, new TransformHooks(pending, pending)).patch();
+        if(patched != null)
+            pending.flush();
+        return patched;
+    }
+
+    @Nullable
+    private byte[] patch() {
+        int offset = constantPool.getEnd();
+
+        /* Class access flags */
+        String className = constantPool.getClassName(readUnsignedShort(source, offset + 2));
+        CompiledRuleset.ClassRules classRules = className != null ? ruleset.getClassRules(className) : null;
+        if(classRules != null) {
+            int access = readUnsignedShort(source, offset);
+            writeAccess(offset, AccessRewriter.rewriteClassAccess(classRules, access, hooks), className, null, null);
+        }
+        offset += 8 + readUnsignedShort(source, offset + 6) * 2;
+
+        /* Fields */
+        int fieldCount = readUnsignedShort(source, offset);
+        offset += 2;
+        for(int i = 0; i < fieldCount; i++) {
+            if(classRules != null) {
+                int access = readUnsignedShort(source, offset);
+                String name = constantPool.getUtf8(readUnsignedShort(source, offset + 2));
+                writeAccess(offset, AccessRewriter.rewriteFieldAccess(classRules, access, name, hooks), className, name, null);
+            }
+            offset = skipAttributes(offset + 6);
+        }
+
+        /* Methods */
+        int methodCount = readUnsignedShort(source, offset);
+        offset += 2;
+        for(int i = 0; i < methodCount; i++) {
+            if(classRules != null) {
+                int access = readUnsignedShort(source, offset);
+                String name = constantPool.getUtf8(readUnsignedShort(source, offset + 2));
+                if(!"<clinit>".equals(name)) {
+                    String desc = constantPool.getUtf8(readUnsignedShort(source, offset + 4));
+                    int newAccess = AccessRewriter.rewriteMethodAccess(classRules, access, name, desc, hooks);
+
+                    /* Call sites need rewriting, leave this class to ASM */
+                    if(AccessRewriter.isDeprivatized(name, access, newAccess))
+                        return null;
+
+                    writeAccess(offset, newAccess, className, name, desc);
+                }
+            }
+            offset = skipAttributes(offset + 6);
+        }
+
+        /* InnerClasses attribute */
+        int attributeCount = readUnsignedShort(source, offset);
+        offset += 2;
+        for(int i = 0; i < attributeCount; i++) {
+            String attributeName = constantPool.getUtf8(readUnsignedShort(source, offset));
+            int length = readInt(source, offset + 2);
+            offset += 6;
+
+            if("InnerClasses".equals(attributeName)) {
+                int classCount = readUnsignedShort(source, offset);
+                for(int j = 0, entry = offset + 2; j < classCount; j++, entry += 8) {
+                    String innerClassName = constantPool.getClassName(readUnsignedShort(source, entry));
+                    if(innerClassName == null)
+                        continue;
+
+                    int access = readUnsignedShort(source, entry + 6);
+                    writeAccess(entry + 6, AccessRewriter.rewriteClassAccess(ruleset, access, innerClassName, hooks),
+                            innerClassName, null, null);
+                }
+            }
+            offset += length;
+        }
+
+        if(hooks.hasListener && className != null)
+            hooks.listener.classProcessed(className.replace('.', '/'), result != null);
+        return result != null ? result : source;
+    }
+
+    private int skipAttributes(int offset) {
+        int attributeCount = readUnsignedShort(source, offset);
+        offset += 2;
+        for(int i = 0; i < attributeCount; i++)
+            offset += 6 + readInt(source, offset + 2);
+        return offset;
+    }
+
+    private void writeAccess(int offset, int newAccess, @NonNull String className, @Nullable String memberName,
+                             @Nullable String memberDesc) {
+        int access = readUnsignedShort(source, offset);
+        if((newAccess & 0xFFFF) == access)
+            return;
+
+        if(result == null)
+            result = source.clone();
+        ConstantPool.writeShort(result, offset, newAccess);
+
+        if(hooks.hasMetrics)
+            hooks.metrics.memberRewritten();
+        if(hooks.hasListener)
+            hooks.listener.memberChanged(className.replace('.', '/'), memberName, memberDesc, access, newAccess & 0xFFFF);
+    }
+
+    /**
+     * Holds back events of a class until it is known whether patching succeeds
+     */
+    private static class PendingEvents implements TransformMetrics, TransformListener {
+        private final TransformHooks target;
+        private final List<Runnable> events = new ArrayList<>();
+
+        private PendingEvents(@NonNull TransformHooks target) {
+            this.target = target;
+        }
+
+        @Override
+        public void classSkipped() {}
+
+        @Override
+        public void classTransformed(boolean changed, long nanos) {}
+
+        @Override
+        public void memberRewritten() {
+            events.add(target.metrics::memberRewritten);
+        }
+
+        @Override
+        public void ruleMatched(@NonNull AccessTransformEntry entry) {
+            events.add(() -> target.metrics.ruleMatched(entry));
+        }
+
+        @Override
+        public void classProcessed(@NonNull String className, boolean changed) {
+            events.add(() -> target.listener.classProcessed(className, changed));
+        }
+
+        @Override
+        public void memberChanged(@NonNull String className, @Nullable String memberName, @Nullable String memberDesc,
+                                  int oldAccess, int newAccess) {
+            events.add(() -> target.listener.memberChanged(className, memberName, memberDesc, oldAccess, newAccess));
+        }
+
+        @Override
+        public void downgradeDenied(@NonNull AccessTransformEntry entry, @Nullable String memberName,
+                                    @Nullable String memberDesc, int access) {
+            events.add(() -> target.listener.downgradeDenied(entry, memberName, memberDesc, access));
+        }
+
+        private void flush() {
+            for (Runnable event : events)
+                event.run();
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package eu.mikroskeem.orion.at;
+
+import eu.mikroskeem.orion.at.CompiledRuleset.ClassRules;
+import eu.mikroskeem.orion.at.access.AccessLevel;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Access flag rewriting logic shared between {@link AccessTransformerVisitor} and {@link AccessFlagPatcher}
+ *
+ * @author Mark Vainomaa
+ */
+final class AccessRewriter {
+    private final static int LEVEL_MASK = Opcodes.ACC_PUBLIC | Opcodes.ACC_PRIVATE | Opcodes.ACC_PROTECTED;
+
+    /**
+     * {@link AccessLevel} ordinals indexed by access level flags. Public takes precedence over protected, and
+     * protected over private, when class file has several of them set
+     */
+    private final static int[] LEVEL_RANKS = new int[LEVEL_MASK + 1];
+    private final static int PRIVATE_RANK = AccessLevel.PRIVATE.ordinal();
+
+    private AccessRewriter() {}
+
+    /**
+     * Rewrites class (or inner class) access flags
+     *
+     * @param ruleset {@link CompiledRuleset} to look rules up from
+     * @param access Original access flags
+     * @param className Class name, a'la 'foo.bar.Baz'
+     * @param hooks {@link TransformHooks} to report matched rules and denied downgrades to
+     * @return New access flags
+     */
+    static int rewriteClassAccess(@NonNull CompiledRuleset ruleset, int access, @NonNull String className,
+                                  @NonNull TransformHooks hooks) {
+        ClassRules rules = ruleset.getClassRules(className);
+        return rules != null ? rewriteClassAccess(rules, access, hooks) : access;
+    }
+
+    /**
+     * Rewrites class access flags
+     *
+     * @param classRules Rules of class, or null
+     * @param access Original access flags
+     * @param hooks {@link TransformHooks} to report matched rules and denied downgrades to
+     * @return New access flags
+     */
+    static int rewriteClassAccess(@Nullable ClassRules classRules, int access, @NonNull TransformHooks hooks) {
+        if(classRules == null)
+            return access;
+        AccessTransformEntry classTransform = classRules.getClassTransform();
+        if(classTransform != null && !hooks.isEmpty())
+            report(hooks, classTransform, null, null, null, access);
+        return overrideAccessModifier(access, classTransform);
+    }
+
+    /**
+     * Rewrites method access flags
+     *
+     * @param classRules Rules of method owner class, or null
+     * @param access Original access flags
+     * @param methodName Method name
+     * @param methodDesc Method descriptor
+     * @param hooks {@link TransformHooks} to report matched rules and denied downgrades to
+     * @return New access flags
+     */
+    static int rewriteMethodAccess(@Nullable ClassRules classRules, int access,
+                                   @NonNull String methodName, @NonNull String methodDesc,
+                                   @NonNull TransformHooks hooks) {
+        if(classRules == null)
+            return access;
+        AccessTransformEntry methodTransform = classRules.getMethodTransform(methodName, methodDesc);
+        AccessTransformEntry wildTransform = classRules.getMethodTransform("*()");
+        if((methodTransform != null || wildTransform != null) && !hooks.isEmpty())
+            report(hooks, methodTransform, wildTransform, methodName, methodDesc, access);
+        return overrideAccessModifier(access, methodTransform, wildTransform);
+    }
+
+    /**
+     * Rewrites field access flags
+     *
+     * @param classRules Rules of field owner class, or null
+     * @param access Original access flags
+     * @param fieldName Field name
+     * @param hooks {@link TransformHooks} to report matched rules and denied downgrades to
+     * @return New access flags
+     */
+    static int rewriteFieldAccess(@Nullable ClassRules classRules, int access, @NonNull String fieldName,
+                                  @NonNull TransformHooks hooks) {
+        if(classRules == null)
+            return access;
+        AccessTransformEntry fieldTransform = classRules.getFieldTransform(fieldName);
+        AccessTransformEntry wildTransform = classRules.getFieldTransform("*");
+        if((fieldTransform != null || wildTransform != null) && !hooks.isEmpty())
+            report(hooks, fieldTransform, wildTransform, fieldName, null, access);
+        return overrideAccessModifier(access, fieldTransform, wildTransform);
+    }
+
+    private static void report(@NonNull TransformHooks hooks, @Nullable AccessTransformEntry entry,
+                               @Nullable AccessTransformEntry wild, @Nullable String memberName,
+                               @Nullable String memberDesc, int access) {
+        if(hooks.hasMetrics) {
+            if(entry != null)
+                hooks.metrics.ruleMatched(entry);
+            if(wild != null)
+                hooks.metrics.ruleMatched(wild);
+        }
+
+        if(hooks.hasListener) {
+            /* Entry with higher access level decides the level, see overrideAccessModifier */
+            AccessTransformEntry level = entry == null || (wild != null && wild.levelRank > entry.levelRank) ? wild : entry;
+            if(LEVEL_RANKS[access & LEVEL_MASK] > level.levelRank)
+                hooks.listener.downgradeDenied(level, memberName, memberDesc, access);
+        }
+    }
+
+    /**
+     * Helper method to override access modifier
+     */
+    static int overrideAccessModifier(int original, @Nullable AccessTransformEntry atEntry) {
+        if(atEntry == null)
+            return original;
+        return apply(original, atEntry.levelRank, atEntry.levelBits, atEntry.modifierMask, atEntry.modifierBits);
+    }
+
+    /**
+     * Helper method to override access modifier with entry merged with wildcard one. Gives same result as
+     * applying {@code wild.merge(entry)}, without merging anything
+     */
+    static int overrideAccessModifier(int original, @Nullable AccessTransformEntry entry, @Nullable AccessTransformEntry wild) {
+        if(wild == null)
+            return overrideAccessModifier(original, entry);
+        if(entry == null)
+            return overrideAccessModifier(original, wild);
+
+        AccessTransformEntry level = entry.levelRank >= wild.levelRank ? entry : wild;
+        return apply(original, level.levelRank, level.levelBits, wild.modifierMask | entry.modifierMask,
+                (wild.modifierBits & ~entry.modifierMask) | entry.modifierBits);
+    }
+
+    private static int apply(int access, int levelRank, int levelBits, int modifierMask, int modifierBits) {
+        if(LEVEL_RANKS[access & LEVEL_MASK] < levelRank)
+            access = (access & ~LEVEL_MASK) | levelBits;
+        return (access & ~modifierMask) | modifierBits;
+    }
+
+    /**
+     * Returns whether method access change requires rewriting INVOKESPECIAL calls to it
+     *
+     * @param methodName Method name
+     * @param access Original access flags
+     * @param newAccess New access flags
+     * @return Whether method turned from private into non-private one
+     */
+    static boolean isDeprivatized(@NonNull String methodName, int access, int newAccess) {
+        return !"<init>".equals(methodName) && (access & Opcodes.ACC_PRIVATE) != 0 && (newAccess & Opcodes.ACC_PRIVATE) == 0;
+    }
+
+    /**
+     * Returns whether given rules turn any private method into non-private one
+     *
+     * @param classRules Rules of a class, or null
+     * @return Whether INVOKESPECIAL calls in given class may need rewriting
+     */
+    static boolean deprivatizesMethods(@Nullable ClassRules classRules) {
+        if(classRules == null)
+            return false;
+        for (AccessTransformEntry methodTransform : classRules.getMethodTransforms()) {
+            if(methodTransform.levelRank > PRIVATE_RANK)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether given rules turn given method into non-private one, if it was private. Lets call sites be
+     * rewritten before the called method itself is visited
+     *
+     * @param classRules Rules of method owner class
+     * @param methodName Method name
+     * @param methodDesc Method descriptor
+     * @return Whether given method would be deprivatized
+     */
+    static boolean deprivatizes(@NonNull ClassRules classRules, @NonNull String methodName, @NonNull String methodDesc) {
+        if("<init>".equals(methodName))
+            return false;
+        AccessTransformEntry methodTransform = classRules.getMethodTransform(methodName, methodDesc);
+        AccessTransformEntry wildTransform = classRules.getMethodTransform("*()");
+        return (methodTransform != null && methodTransform.levelRank > PRIVATE_RANK)
+                || (wildTransform != null && wildTransform.levelRank > PRIVATE_RANK);
+    }
+
+    static {
+        for (int flags = 0; flags <= LEVEL_MASK; flags++) {
+            AccessLevel level;
+            if((flags & Opcodes.ACC_PUBLIC) != 0)
+                level = AccessLevel.PUBLIC;
+            else if((flags & Opcodes.ACC_PROTECTED) != 0)
+                level = AccessLevel.PROTECTED;
+            else if((flags & Opcodes.ACC_PRIVATE) != 0)
+                level = AccessLevel.PRIVATE;
+            else
+                level = AccessLevel.PACKAGE_LOCAL;
+            LEVEL_RANKS[flags] = level.ordinal();
+        }
+    }
+}
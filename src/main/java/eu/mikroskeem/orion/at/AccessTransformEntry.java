@@ -6,14 +6,11 @@ import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * Parsed access transform entry
@@ -29,64 +26,57 @@ public final class AccessTransformEntry {
     private final boolean classAt;
     private final boolean fieldAt;
 
+    /* Precompiled form of this entry, see AccessRewriter */
+    final int levelRank;
+    final int levelBits;
+    final int modifierMask;
+    final int modifierBits;
+
     /**
      * Parses raw access transformer entry from string
      *
      * @param rawAtEntry Raw AT entry line
+     * @throws IllegalStateException if line is not a valid access transformer entry
      */
     public AccessTransformEntry(@NonNull String rawAtEntry) {
-        Logging.trace(AccessTransformer.class, () -> "Parsing AT line '" + rawAtEntry + "'");
-        String[] atEntry = rawAtEntry.split("\\s+");
-        String[] modifiers = atEntry[0].split("(?=[-+])");
-        classAt = atEntry.length == 2;
-        this.accessLevel = AccessLevel.BY_NAME.get(modifiers[0]);
-        this.accessModifiers = Stream.of(Arrays.copyOfRange(modifiers, 1, modifiers.length)).map(entry -> {
-            char action = entry.charAt(0);
-            AccessModifier accessModifier = AccessModifier.BY_NAME.get(entry.substring(1));
-
-            /* Validate */
-            if(accessModifier == null) throw new IllegalStateException("Invalid access modifier: " + entry.substring(1));
-            if(action != '-' && action != '+') throw new IllegalStateException("Invalid access modifier action: " + action);
-            return new AccessModifier.ModifierEntry(action == '-', accessModifier);
-        }).collect(Collectors.toList());
-        this.className = atEntry[1];
-        this.descriptor = classAt ? null : atEntry[2];
-
-        /* If it is class AT, then return */
-        if(classAt) {
-            Logging.trace(AccessTransformer.class, () -> "AT line '" + rawAtEntry + "' resulted with class AT");
-            methodAt = false;
-            fieldAt = false;
-            return;
-        }
+        this(parse(rawAtEntry));
+    }
 
-        /* Check if transform entry is for method or field */
-        int start = descriptor.indexOf('(');
-        if(start != -1) {
-            int end = descriptor.indexOf(')', start);
-            if(end != -1) {
-                Logging.trace(AccessTransformer.class, () -> "AT line '" + rawAtEntry + "' resulted with method AT");
-                methodAt = true;
-                fieldAt = false;
-            } else {
-                throw new IllegalStateException("Invalid method AT entry: " + rawAtEntry);
-            }
-        } else {
-            Logging.trace(AccessTransformer.class, () -> "AT line '" + rawAtEntry + "' resulted with field AT");
-            methodAt = false;
-            fieldAt = true;
-        }
+    private AccessTransformEntry(@NonNull AccessTransformEntry parsed) {
+        this(parsed.accessLevel, parsed.accessModifiers, parsed.className, parsed.descriptor, parsed.methodAt,
+                parsed.classAt, parsed.fieldAt);
     }
 
-    private AccessTransformEntry(@NonNull AccessLevel accessLevel, @NonNull List<AccessModifier.ModifierEntry> modifiers,
-                                 @NonNull String className, String descriptor, boolean methodAt, boolean classAt, boolean fieldAt) {
+    AccessTransformEntry(@NonNull AccessLevel accessLevel, @NonNull List<AccessModifier.ModifierEntry> modifiers,
+                         @NonNull String className, String descriptor, boolean methodAt, boolean classAt, boolean fieldAt) {
         this.accessLevel = accessLevel;
-        this.accessModifiers = modifiers;
+        this.accessModifiers = Collections.unmodifiableList(modifiers);
         this.className = className;
         this.descriptor = descriptor;
         this.methodAt = methodAt;
         this.classAt = classAt;
         this.fieldAt = fieldAt;
+
+        /* Later modifier entries override earlier ones, same as in merge() */
+        int modifierMask = 0;
+        int modifierBits = 0;
+        for (AccessModifier.ModifierEntry modifier : modifiers) {
+            int opcode = modifier.getAccessModifier().getOpcode();
+            modifierMask |= opcode;
+            modifierBits = modifier.isRemove() ? modifierBits & ~opcode : modifierBits | opcode;
+        }
+        this.levelRank = accessLevel.ordinal();
+        this.levelBits = accessLevel.getOpcode();
+        this.modifierMask = modifierMask;
+        this.modifierBits = modifierBits;
+    }
+
+    @NonNull
+    private static AccessTransformEntry parse(@NonNull String rawAtEntry) {
+        AccessTransformEntry entry = AtLineParser.parse(rawAtEntry);
+        if(entry == null)
+            throw new IllegalStateException("Invalid AT entry: " + rawAtEntry);
+        return entry;
     }
 
     /**
@@ -106,7 +96,7 @@ public final class AccessTransformEntry {
      */
     @NonNull
     public List<AccessModifier.ModifierEntry> getAccessModifiers() {
-        return Collections.unmodifiableList(accessModifiers);
+        return accessModifiers;
     }
 
     /**
@@ -190,6 +180,18 @@ public final class AccessTransformEntry {
                 this.descriptor, this.methodAt, this.classAt, this.fieldAt);
     }
 
+    /**
+     * Copies this {@link AccessTransformEntry} to target another class, used when package pattern
+     * entries are combined with entries of a class matched by the pattern
+     *
+     * @param className Class name
+     * @return New {@link AccessTransformEntry}
+     */
+    @NonNull
+    AccessTransformEntry withClassName(@NonNull String className) {
+        return new AccessTransformEntry(accessLevel, accessModifiers, className, descriptor, methodAt, classAt, fieldAt);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o)
@@ -2,28 +2,48 @@ package eu.mikroskeem.orion.at;
 
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
-import org.objectweb.asm.ClassReader;
-import org.objectweb.asm.ClassWriter;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 
 /**
- * Access transformer
+ * Access transformer. This class is not thread-safe, use {@link #freeze()} to get a snapshot which can be
+ * shared between threads.
+ *
+ * All loaders skip exact duplicates of already loaded entries, and overlapping entries are merged when compiling
  *
  * @author Mark Vainomaa
  */
 public final class AccessTransformer {
-    private final List<AccessTransformEntry> atEntries = new ArrayList<>();
+    private final List<AccessTransformEntry> atEntries = new EntryList();
+    private FrozenAccessTransformer frozen;
+    private TransformMode transformMode = TransformMode.REBUILD;
+    private TransformCache transformCache;
+    private TransformMetrics transformMetrics = TransformMetrics.NOOP;
+    private TransformListener transformListener = TransformListener.NOOP;
+    private Consumer<RuleConflict> conflictHandler = AccessTransformer::logConflict;
 
     /**
-     * Gets list of {@link AccessTransformEntry} objects
+     * Gets list of {@link AccessTransformEntry} objects. Modifications to this list are reflected in
+     * {@link #getCompiledRuleset()}
+     *
+     * Loaders add only entries not already in this list, so an entry loaded several times (e.g. from
+     * many files) is listed once. Entries added to this list directly are kept as-is
      *
      * @return List of {@link AccessTransformEntry} objects
      */
@@ -32,25 +52,220 @@ public final class AccessTransformer {
         return atEntries;
     }
 
+    /**
+     * Gets {@link CompiledRuleset} built from {@link AccessTransformEntry} objects in this access transformer.
+     * Ruleset is compiled lazily and cached until entries get modified
+     *
+     * @return Instance of {@link CompiledRuleset}
+     */
+    @NonNull
+    public CompiledRuleset getCompiledRuleset() {
+        return freeze().getRuleset();
+    }
+
+    /**
+     * Gets immutable snapshot of this access transformer. Snapshot is cached until entries, transform mode, cache,
+     * metrics or listener get modified
+     *
+     * @return Instance of {@link FrozenAccessTransformer}
+     */
+    @NonNull
+    public FrozenAccessTransformer freeze() {
+        FrozenAccessTransformer frozen = this.frozen;
+        if(frozen == null)
+            this.frozen = frozen = new FrozenAccessTransformer(CompiledRuleset.compile(atEntries, conflictHandler), transformMode,
+                    transformCache, new TransformHooks(transformMetrics, transformListener));
+        return frozen;
+    }
+
+    /**
+     * Gets {@link TransformMode} used to write transformed classes
+     *
+     * @return Instance of {@link TransformMode}
+     */
+    @NonNull
+    public TransformMode getTransformMode() {
+        return transformMode;
+    }
+
+    /**
+     * Sets {@link TransformMode} used to write transformed classes. Defaults to {@link TransformMode#REBUILD}
+     *
+     * @param transformMode Instance of {@link TransformMode}
+     */
+    public void setTransformMode(@NonNull TransformMode transformMode) {
+        this.transformMode = Objects.requireNonNull(transformMode, "transformMode must not be null");
+        this.frozen = null;
+    }
+
+    /**
+     * Gets {@link TransformCache} used to look transform results up from
+     *
+     * @return Instance of {@link TransformCache} or null
+     */
+    @Nullable
+    public TransformCache getTransformCache() {
+        return transformCache;
+    }
+
+    /**
+     * Sets {@link TransformCache} used to look transform results up from
+     *
+     * @param transformCache Instance of {@link TransformCache}, or null to disable caching
+     */
+    public void setTransformCache(@Nullable TransformCache transformCache) {
+        this.transformCache = transformCache;
+        this.frozen = null;
+    }
+
+    /**
+     * Gets {@link TransformMetrics} transformed classes are reported to
+     *
+     * @return Instance of {@link TransformMetrics}
+     */
+    @NonNull
+    public TransformMetrics getTransformMetrics() {
+        return transformMetrics;
+    }
+
+    /**
+     * Sets {@link TransformMetrics} transformed classes are reported to. Defaults to {@link TransformMetrics#NOOP}
+     *
+     * @param transformMetrics Instance of {@link TransformMetrics}, e.g. {@link TransformStatistics}
+     */
+    public void setTransformMetrics(@NonNull TransformMetrics transformMetrics) {
+        this.transformMetrics = Objects.requireNonNull(transformMetrics, "transformMetrics must not be null");
+        this.frozen = null;
+    }
+
+    /**
+     * Gets {@link TransformListener} parse and transform events are emitted to
+     *
+     * @return Instance of {@link TransformListener}
+     */
+    @NonNull
+    public TransformListener getTransformListener() {
+        return transformListener;
+    }
+
+    /**
+     * Sets {@link TransformListener} parse and transform events are emitted to. Defaults to {@link TransformListener#NOOP}
+     *
+     * @param transformListener Instance of {@link TransformListener}, e.g. {@link Slf4jTransformListener}
+     */
+    public void setTransformListener(@NonNull TransformListener transformListener) {
+        this.transformListener = Objects.requireNonNull(transformListener, "transformListener must not be null");
+        this.frozen = null;
+    }
+
+    /**
+     * Sets handler for {@link RuleConflict}s found while compiling the ruleset. By default, conflicts are logged
+     * on debug level
+     *
+     * @param conflictHandler {@link RuleConflict} handler, or null to ignore conflicts
+     */
+    public void setConflictHandler(@Nullable Consumer<RuleConflict> conflictHandler) {
+        this.conflictHandler = conflictHandler;
+        this.frozen = null;
+    }
+
     /**
      * Loads Access transformer entries from {@link BufferedReader} instance
      *
      * @param reader {@link BufferedReader} instance
      * @throws IOException if {@link BufferedReader} throws {@link IOException}
+     * @throws IllegalStateException if a line is invalid, message includes its line number
      */
     public void loadAccessTransformers(@NonNull BufferedReader reader) throws IOException {
-        reader.lines().map(this::processLine).filter(Objects::nonNull).forEach(atEntries::add);
+        String line;
+        int lineNumber = 0;
+        while((line = reader.readLine()) != null) {
+            lineNumber++;
+            AccessTransformEntry entry;
+            try {
+                entry = AtLineParser.parse(line);
+            } catch (IllegalStateException e) {
+                throw lineFailure(lineNumber, e);
+            }
+            if(entry != null)
+                addParsed(line, entry);
+        }
     }
 
     /**
-     * Loads Access transformer entries from {@link BufferedReader} instance
+     * Loads Access transformer entries from {@link InputStream} instance. Stream is read as UTF-8 and closed
      *
      * @param inputStream {@link InputStream} instance
-     * @throws IOException if {@link InputStream} throws {@link IOException}
+     * @throws IOException if {@link InputStream} throws {@link IOException}, or it is not valid UTF-8
+     * @throws IllegalStateException if a line is invalid, message includes its line number
      */
     public void loadAccessTransformers(@NonNull InputStream inputStream) throws IOException {
-        try(BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(inputStream))) {
-            loadAccessTransformers(bufferedReader);
+        try(ReadableByteChannel channel = Channels.newChannel(inputStream)) {
+            loadAccessTransformers(channel);
+        }
+    }
+
+    /**
+     * Loads Access transformer entries from {@link ReadableByteChannel} instance. Channel is read as UTF-8
+     * until its end, and is not closed
+     *
+     * @param channel {@link ReadableByteChannel} instance
+     * @throws IOException if {@link ReadableByteChannel} throws {@link IOException}, or it is not valid UTF-8
+     * @throws IllegalStateException if a line is invalid, message includes its line number
+     */
+    public void loadAccessTransformers(@NonNull ReadableByteChannel channel) throws IOException {
+        AtFileReader.forEachLine(AtFileReader.read(channel), (chars, start, end, lineNumber) -> {
+            AccessTransformEntry entry;
+            try {
+                entry = AtLineParser.parse(chars, start, end);
+            } catch (IllegalStateException e) {
+                throw lineFailure(lineNumber, e);
+            }
+            if(entry != null) {
+                if(transformListener != TransformListener.NOOP)
+                    transformListener.ruleParsed(chars.subSequence(start, end).toString(), entry);
+                addLoaded(entry);
+            }
+        });
+    }
+
+    /**
+     * Loads access transformer entries from file, see {@link #loadAccessTransformers(Collection)}
+     *
+     * @param file Access transformer file, read as UTF-8
+     * @throws IOException if reading file fails
+     */
+    public void loadAccessTransformers(@NonNull Path file) throws IOException {
+        loadAccessTransformers(Collections.singletonList(file));
+    }
+
+    /**
+     * Loads access transformer entries from many files. Files are memory-mapped and parsed in parallel, and their
+     * entries are added in given order
+     *
+     * @param files Access transformer files, read as UTF-8
+     * @throws IOException if reading any of given files fails
+     */
+    public void loadAccessTransformers(@NonNull Collection<Path> files) throws IOException {
+        /* Failures are rethrown on this thread, as fork/join may wrap exceptions thrown on workers */
+        boolean keepLines = transformListener != TransformListener.NOOP;
+        List<ParsedFile> parsed = files.parallelStream()
+                .map(file -> new ParsedFile(file, keepLines))
+                .collect(Collectors.toList());
+        for (ParsedFile file : parsed) {
+            if(file.ioFailure != null)
+                throw file.ioFailure;
+            if(file.parseFailure != null)
+                throw file.parseFailure;
+        }
+
+        for (ParsedFile file : parsed) {
+            for (int i = 0; i < file.entries.size(); i++) {
+                AccessTransformEntry entry = file.entries.get(i);
+                if(keepLines)
+                    transformListener.ruleParsed(file.lines.get(i), entry);
+                addLoaded(entry);
+            }
         }
     }
 
@@ -59,48 +274,123 @@ public final class AccessTransformer {
      * @param atLine Raw AT entry
      */
     public void loadAccessTransformer(@NonNull String atLine) {
-        atEntries.add(Objects.requireNonNull(processLine(atLine), "Invalid AT entry: " + atLine));
+        addParsed(atLine, Objects.requireNonNull(AtLineParser.parse(atLine), "Invalid AT entry: " + atLine));
     }
 
     /**
-     * Transforms class according to entries in {@link AccessTransformer#atEntries}
+     * Transforms class according to entries in {@link AccessTransformer#getCompiledRuleset()}
      *
      * @param source Class bytes
-     * @return Transformed class bytes
+     * @return Transformed class bytes, or {@code source} itself if class was left unchanged
      */
     public byte[] transformClass(byte[] source) {
-        ClassReader classReader = new ClassReader(source);
-        ClassWriter classWriter = new ClassWriter(0);
-        AccessTransformerVisitor at = new AccessTransformerVisitor(atEntries, classWriter);
-        classReader.accept(at, 0);
-        return classWriter.toByteArray();
+        return freeze().transformClass(source);
+    }
+
+    private void addParsed(@NonNull String line, @NonNull AccessTransformEntry entry) {
+        if(transformListener != TransformListener.NOOP)
+            transformListener.ruleParsed(line, entry);
+        addLoaded(entry);
+    }
+
+    /* Exact duplicates are skipped, overlapping entries are merged when compiling */
+    private void addLoaded(@NonNull AccessTransformEntry entry) {
+        if(!atEntries.contains(entry))
+            atEntries.add(entry);
+    }
+
+    @NonNull
+    private static IllegalStateException lineFailure(int lineNumber, @NonNull IllegalStateException cause) {
+        return new IllegalStateException("line " + lineNumber + ": " + cause.getMessage(), cause);
+    }
+
+    private static void logConflict(@NonNull RuleConflict conflict) {
+        Logging.debug(AccessTransformer.class, () -> (conflict.isModifierConflict() ? "Conflicting" : "Overlapping")
+                + " entries for '" + conflict.getTarget() + "': " + conflict.getExisting() + " and "
+                + conflict.getAdded() + ", merged into " + conflict.getMerged());
     }
 
     /**
-     * Processes Access transformer line
-     *
-     * @param rawAtEntry Access transformer file line
-     * @return Parsed line or null, either if it was blank line or comment line
+     * Entries parsed from a single file, or failure
      */
-    @Nullable
-    private AccessTransformEntry processLine(@NonNull String rawAtEntry) {
-        /* It is a comment! */
-        if(rawAtEntry.startsWith("#"))
-            return null;
+    private static class ParsedFile {
+        private final List<AccessTransformEntry> entries = new ArrayList<>();
+        private final List<String> lines = new ArrayList<>();
+        private IOException ioFailure;
+        private IllegalStateException parseFailure;
 
-        /* It has a comment! */
-        int hashPos = rawAtEntry.indexOf('#');
-        if(hashPos != -1)
-            rawAtEntry = rawAtEntry.substring(0, hashPos);
+        private int lineNumber;
 
-        /* It must be trimmed! */
-        rawAtEntry = rawAtEntry.trim();
+        private ParsedFile(@NonNull Path file, boolean keepLines) {
+            try {
+                AtFileReader.forEachLine(AtFileReader.read(file), (chars, start, end, lineNumber) -> {
+                    this.lineNumber = lineNumber;
+                    AccessTransformEntry entry = AtLineParser.parse(chars, start, end);
+                    if(entry != null) {
+                        entries.add(entry);
+                        if(keepLines)
+                            lines.add(chars.subSequence(start, end).toString());
+                    }
+                });
+            } catch (IOException e) {
+                ioFailure = e;
+            } catch (IllegalStateException e) {
+                parseFailure = new IllegalStateException(file + ":" + lineNumber + ": " + e.getMessage(), e);
+            }
+        }
+    }
 
-        /* It must not be empty! */
-        if(rawAtEntry.isEmpty())
-            return null;
+    /**
+     * {@link AccessTransformEntry} list, which drops cached snapshot on every modification. Entries are counted
+     * for constant time {@link #contains(Object)}
+     */
+    private final class EntryList extends AbstractList<AccessTransformEntry> {
+        private final List<AccessTransformEntry> entries = new ArrayList<>();
+        private final Map<AccessTransformEntry, Integer> counts = new HashMap<>();
 
-        /* Parse line */
-        return new AccessTransformEntry(rawAtEntry);
+        @Override
+        public AccessTransformEntry get(int index) {
+            return entries.get(index);
+        }
+
+        @Override
+        public int size() {
+            return entries.size();
+        }
+
+        @Override
+        public AccessTransformEntry set(int index, AccessTransformEntry element) {
+            AccessTransformEntry old = entries.set(index, Objects.requireNonNull(element, "element must not be null"));
+            count(old, -1);
+            count(element, 1);
+            frozen = null;
+            return old;
+        }
+
+        @Override
+        public void add(int index, AccessTransformEntry element) {
+            entries.add(index, Objects.requireNonNull(element, "element must not be null"));
+            count(element, 1);
+            frozen = null;
+            modCount++;
+        }
+
+        @Override
+        public AccessTransformEntry remove(int index) {
+            AccessTransformEntry old = entries.remove(index);
+            count(old, -1);
+            frozen = null;
+            modCount++;
+            return old;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return counts.containsKey(o);
+        }
+
+        private void count(@NonNull AccessTransformEntry entry, int delta) {
+            counts.merge(entry, delta, (a, b) -> a + b == 0 ? null : a + b);
+        }
     }
 }
@@ -1,7 +1,5 @@
 package eu.mikroskeem.orion.at;
 
-import eu.mikroskeem.orion.at.access.AccessLevel;
-import eu.mikroskeem.orion.at.access.AccessModifier;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.objectweb.asm.ClassVisitor;
@@ -9,10 +7,6 @@ import org.objectweb.asm.FieldVisitor;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 
-import java.lang.reflect.Modifier;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -21,132 +15,108 @@ import java.util.Objects;
  * @author Mark Vainomaa
  */
 final class AccessTransformerVisitor extends ClassVisitor {
-    private final List<AccessTransformEntry> accessTransforms;
-    private Map<String, AccessTransformEntry> methodTransforms = new HashMap<>();
-    private Map<String, AccessTransformEntry> fieldTransforms = new HashMap<>();
-    private String currentClass;
+    private final CompiledRuleset ruleset;
+    private final TransformHooks hooks;
+    private CompiledRuleset.ClassRules classRules;
     private String currentClassRaw;
+    private boolean rewritesCalls;
+    private boolean changed;
 
-    AccessTransformerVisitor(@NonNull List<AccessTransformEntry> accessTransforms, @NonNull ClassVisitor classVisitor) {
+    AccessTransformerVisitor(@NonNull CompiledRuleset ruleset, @NonNull ClassVisitor classVisitor,
+                             @NonNull TransformHooks hooks) {
         super(Opcodes.ASM5, classVisitor);
-        this.accessTransforms = Objects.requireNonNull(accessTransforms, "accessTransforms must not be null");
+        this.ruleset = Objects.requireNonNull(ruleset, "ruleset must not be null");
+        this.hooks = Objects.requireNonNull(hooks, "hooks must not be null");
     }
 
     @Override
     public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
         currentClassRaw = name;
-        currentClass = name.replace('/', '.');
-        int newAccess = replaceClassAccess(access, currentClass);
-
-        Logging.debug(AccessTransformerVisitor.class,
-                () -> "Processing class '" + currentClass + "'");
-
-        if(access != newAccess) {
-            Logging.debug(AccessTransformerVisitor.class,
-                    () -> "Processed class '" + currentClass + "': " + access + " -> " + newAccess);
-        }
-
-        /* Build method and field transformer maps */
-        for (AccessTransformEntry accessTransform : accessTransforms) {
-            if(!accessTransform.getClassName().equals(currentClass))
-                continue;
-
-            if(accessTransform.isMethodAt()) {
-                methodTransforms.put(accessTransform.getDescriptor(), accessTransform);
-            } else if(accessTransform.isFieldAt()) {
-                fieldTransforms.put(accessTransform.getDescriptor(), accessTransform);
-            }
-        }
+        classRules = ruleset.getClassRulesByInternalName(name);
+        rewritesCalls = AccessRewriter.deprivatizesMethods(classRules);
+        int newAccess = AccessRewriter.rewriteClassAccess(classRules, access, hooks);
+        if(access != newAccess)
+            changed(name, null, null, access, newAccess);
 
         super.visit(version, newAccess, name, signature, superName, interfaces);
     }
 
     @Override
     public void visitInnerClass(String name, String outerName, String innerName, int access) {
-        int newAccess = replaceFieldAccess(access, name);
-        if(access != newAccess) {
-            Logging.debug(AccessTransformerVisitor.class,
-                    () -> "Processed inner class '" + name + "': " + access + " -> " + newAccess);
-        }
-        super.visitInnerClass(name, outerName, innerName, replaceClassAccess(access, name.replace('/', '.')));
+        int newAccess = AccessRewriter.rewriteClassAccess(ruleset.getClassRulesByInternalName(name), access, hooks);
+        if(access != newAccess)
+            changed(name, null, null, access, newAccess);
+
+        super.visitInnerClass(name, outerName, innerName, newAccess);
     }
 
     @Override
     public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
-        int newAccess = replaceFieldAccess(access, name);
-        if(access != newAccess) {
-            Logging.debug(AccessTransformerVisitor.class,
-                    () -> "Processed field '" + currentClass + "/" + name + "': " + access + " -> " + newAccess);
-        }
+        int newAccess = AccessRewriter.rewriteFieldAccess(classRules, access, name, hooks);
+        if(access != newAccess)
+            changed(currentClassRaw, name, null, access, newAccess);
+
         return super.visitField(newAccess, name, desc, signature, value);
     }
 
     @Override
     public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
         /* Do not attempt to process static initializers */
-        if("<clinit>".equals(name))
-            return super.visitMethod(access, name, desc, signature, exceptions);
-
-        /* Get new access level */
-        int newAccess = replaceMethodAccess(access, name, desc);
-
-        if(access != newAccess) {
-            Logging.debug(AccessTransformerVisitor.class,
-                    () -> "Processed method '" + currentClass + "/" + name + desc + "': " + access + " -> " + newAccess);
-        }
-
-        /* Apply opcode change, if given method was private and is normal method */
-        if(!"<init>".equals(desc) && (access & Opcodes.ACC_PRIVATE) != 0 && (newAccess & Opcodes.ACC_PRIVATE) == 0) {
-            return new AccessTransformingMethodAdapter(
-                    super.visitMethod(newAccess, name, desc, signature, exceptions),
-                    currentClassRaw,
-                    name,
-                    desc
-            );
+        int newAccess = access;
+        if(!"<clinit>".equals(name)) {
+            newAccess = AccessRewriter.rewriteMethodAccess(classRules, access, name, desc, hooks);
+            if(access != newAccess)
+                changed(currentClassRaw, name, desc, access, newAccess);
         }
 
-        return super.visitMethod(newAccess, name, desc, signature, exceptions);
+        /*
+         * Methods turned non-private may be called from any method of this class, including ones visited
+         * before them, so call sites are rewritten in every method based on the rules alone
+         */
+        MethodVisitor mv = super.visitMethod(newAccess, name, desc, signature, exceptions);
+        if(rewritesCalls && mv != null)
+            return new AccessTransformingMethodAdapter(mv, currentClassRaw, classRules);
+        return mv;
     }
 
     @Override
     public void visitEnd() {
-        Logging.debug(AccessTransformerVisitor.class, () -> "Processing of class '" + currentClass + "' ended");
+        if(hooks.hasListener)
+            hooks.listener.classProcessed(currentClassRaw, changed);
         super.visitEnd();
     }
 
-    private int replaceClassAccess(int access, @NonNull String className) {
-        AccessTransformEntry entry = accessTransforms
-                .stream()
-                .filter(AccessTransformEntry::isClassAt)
-                .filter(ate -> ate.getClassName().equals(className))
-                .findFirst()
-                .orElse(null);
-
-        return overrideAccessModifier(access, entry);
+    private void changed(@NonNull String className, @Nullable String memberName, @Nullable String memberDesc,
+                         int access, int newAccess) {
+        changed = true;
+        if(hooks.hasMetrics)
+            hooks.metrics.memberRewritten();
+        if(hooks.hasListener)
+            hooks.listener.memberChanged(className, memberName, memberDesc, access, newAccess);
     }
 
-    private int replaceMethodAccess(int access, @NonNull String methodName, @NonNull String methodDesc) {
-        return overrideAccessModifier(access, applyWild(methodTransforms.get(methodName + methodDesc), methodTransforms.get("*()")));
-    }
-
-    private int replaceFieldAccess(int access, @NonNull String fieldName) {
-        return overrideAccessModifier(access, applyWild(fieldTransforms.get(fieldName), fieldTransforms.get("*")));
+    /**
+     * Returns whether any access flags were changed in visited class
+     *
+     * @return Whether visited class was changed
+     */
+    boolean isChanged() {
+        return changed;
     }
 
     /**
-     * Access transforming method adapter
+     * Access transforming method adapter, replaces INVOKESPECIAL calls to methods of owner class which are turned
+     * non-private with INVOKEVIRTUAL. Compilers emit INVOKESPECIAL calls to own methods other than constructors
+     * only for private methods
      */
     private static class AccessTransformingMethodAdapter extends MethodVisitor {
         private final String ownerClass; // Note: raw class name, a'la 'foo/bar/Baz'
-        private final String methodName;
-        private final String methodDesc;
+        private final CompiledRuleset.ClassRules classRules;
 
-        public AccessTransformingMethodAdapter(MethodVisitor mv, String ownerClass, String methodName,
-                                               String methodDesc) {
+        AccessTransformingMethodAdapter(MethodVisitor mv, String ownerClass, CompiledRuleset.ClassRules classRules) {
             super(Opcodes.ASM5, mv);
             this.ownerClass = Objects.requireNonNull(ownerClass, "ownerClass must not be null");
-            this.methodName = Objects.requireNonNull(methodName, "methodName must not be null");
-            this.methodDesc = Objects.requireNonNull(methodDesc, "methodDesc must not be null");
+            this.classRules = Objects.requireNonNull(classRules, "classRules must not be null");
         }
 
         @Override
@@ -154,75 +124,10 @@ final class AccessTransformerVisitor extends ClassVisitor {
             /* Replace INVOKESPECIAL with INVOKEVIRTUAL */
             if(!itf && opcode == Opcodes.INVOKESPECIAL
                     && ownerClass.equals(owner)
-                    && methodName.equals(name)
-                    && methodDesc.equals(desc)) {
+                    && AccessRewriter.deprivatizes(classRules, name, desc)) {
                 opcode = Opcodes.INVOKEVIRTUAL;
             }
             super.visitMethodInsn(opcode, owner, name, desc, itf);
         }
     }
-
-    /**
-     * Helper method to override access modifier
-     */
-    private static int overrideAccessModifier(int original, @Nullable AccessTransformEntry atEntry) {
-        if(atEntry == null)
-            return original;
-
-        int newAccess = overrideAccessLevel(original, atEntry.getAccessLevel());
-        for (AccessModifier.ModifierEntry entry : atEntry.getAccessModifiers()) {
-            int opcode = entry.getAccessModifier().getOpcode();
-            newAccess = entry.isRemove() ? newAccess & ~opcode : newAccess | opcode;
-        }
-
-        return newAccess;
-    }
-
-    /**
-     * Overrides class/method/field access level by {@link AccessLevel}
-     *
-     * @param accessLevel Original class/method/field access level
-     * @param newAccessLevel {@link AccessLevel} to apply on given class/method/field access level
-     * @return New class/method/field access level
-     */
-    private static int overrideAccessLevel(int accessLevel, AccessLevel newAccessLevel) {
-        /* Do not allow downgrades */
-        if(Modifier.isPublic(accessLevel) && newAccessLevel.ordinal() <= AccessLevel.PUBLIC.ordinal()) {
-            if(newAccessLevel != AccessLevel.PUBLIC)
-                Logging.debug(AccessTransformerVisitor.class, () -> "Denying access level downgrade from PUBLIC to " + newAccessLevel.name());
-            return accessLevel;
-        }
-
-        if(Modifier.isProtected(accessLevel) && newAccessLevel.ordinal() <= AccessLevel.PROTECTED.ordinal()) {
-            if(newAccessLevel != AccessLevel.PROTECTED)
-                Logging.debug(AccessTransformerVisitor.class, () -> "Denying access level downgrade from PROTECTED to " + newAccessLevel.name());
-            return accessLevel;
-        }
-
-        if(Modifier.isPrivate(accessLevel) && newAccessLevel.ordinal() <= AccessLevel.PRIVATE.ordinal()) {
-            if(newAccessLevel != AccessLevel.PRIVATE)
-                Logging.debug(AccessTransformerVisitor.class, () -> "Denying access level downgrade from PRIVATE to " + newAccessLevel.name());
-            return accessLevel;
-        }
-
-        if(!Modifier.isPrivate(accessLevel) && newAccessLevel.ordinal() <= AccessLevel.PACKAGE_LOCAL.ordinal()) {
-            if(newAccessLevel != AccessLevel.PACKAGE_LOCAL)
-                Logging.debug(AccessTransformerVisitor.class, () -> "Denying access level downgrade from PACKAGE_LOCAL to " + newAccessLevel.name());
-            return accessLevel;
-        }
-
-        /* Replace all access levels with desired one */
-        int mask = Opcodes.ACC_PUBLIC | Opcodes.ACC_PROTECTED | Opcodes.ACC_PRIVATE;
-        accessLevel &= ~mask;
-        accessLevel |= newAccessLevel.getOpcode();
-        return accessLevel;
-    }
-
-    /**
-     * Helper method to merge access modifier with wildcard one if present
-     */
-    @Nullable
-    private static AccessTransformEntry applyWild(@Nullable AccessTransformEntry original, @Nullable AccessTransformEntry wild) {
-        return original != null ? (wild != null ? wild.merge(original) : original) : wild;
-    }
 }
@@ -0,0 +1,167 @@
+package eu.mikroskeem.orion.at;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads access transformer files as UTF-8 through NIO buffers. Files are memory-mapped, and channels are read
+ * into a heap buffer. Pure ASCII content, which nearly all access transformer files are, is handed to the
+ * parser as a view over the buffer without decoding anything, other content is decoded in one go.
+ *
+ * Lines are never turned into {@link String}s here, callers get character ranges instead
+ *
+ * @author Mark Vainomaa
+ */
+final class AtFileReader {
+    private final static int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    private AtFileReader() {}
+
+    /**
+     * Reads access transformer file
+     *
+     * @param file File to read
+     * @return File contents
+     * @throws IOException if reading file fails, or it is not valid UTF-8
+     */
+    @NonNull
+    static CharSequence read(@NonNull Path file) throws IOException {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if(size > Integer.MAX_VALUE)
+                throw new IOException("Access transformer file " + file + " is too large");
+            if(size == 0)
+                return "";
+            return decode(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    /**
+     * Reads access transformer file from channel until its end. Channel is not closed
+     *
+     * @param channel Channel to read
+     * @return File contents
+     * @throws IOException if reading channel fails, or contents are not valid UTF-8
+     */
+    @NonNull
+    static CharSequence read(@NonNull ReadableByteChannel channel) throws IOException {
+        /* Heap buffer, as direct memory of outgrown buffers would be released only on GC */
+        byte[] bytes = new byte[INITIAL_BUFFER_SIZE];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while(channel.read(buffer) != -1) {
+            if(!buffer.hasRemaining()) {
+                int position = buffer.position();
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+                buffer = ByteBuffer.wrap(bytes);
+                buffer.position(position);
+            }
+        }
+        buffer.flip();
+        return decode(buffer);
+    }
+
+    /**
+     * Splits contents into lines. Both '\n' and '\r\n' line endings are accepted
+     *
+     * @param chars Contents to split
+     * @param handler Handler receiving each line
+     */
+    static void forEachLine(@NonNull CharSequence chars, @NonNull LineHandler handler) {
+        int length = chars.length();
+        int lineNumber = 0;
+        int start = 0;
+        while(start < length) {
+            int end = start;
+            while(end < length && chars.charAt(end) != '\n')
+                end++;
+
+            int next = end + 1;
+            if(end > start && chars.charAt(end - 1) == '\r')
+                end--;
+            handler.line(chars, start, end, ++lineNumber);
+            start = next;
+        }
+    }
+
+    @NonNull
+    private static CharSequence decode(@NonNull ByteBuffer bytes) throws CharacterCodingException {
+        /* Skip UTF-8 byte order mark */
+        int position = bytes.position();
+        if(bytes.remaining() >= 3 && bytes.get(position) == (byte) 0xEF && bytes.get(position + 1) == (byte) 0xBB
+                && bytes.get(position + 2) == (byte) 0xBF)
+            bytes.position(position + 3);
+
+        for (int i = bytes.position(); i < bytes.limit(); i++) {
+            if(bytes.get(i) < 0) {
+                return StandardCharsets.UTF_8.newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPORT)
+                        .onUnmappableCharacter(CodingErrorAction.REPORT)
+                        .decode(bytes);
+            }
+        }
+        return new AsciiSequence(bytes.slice());
+    }
+
+    /**
+     * Receives lines as character ranges
+     */
+    @FunctionalInterface
+    interface LineHandler {
+        /**
+         * Handles a line
+         *
+         * @param chars Contents line is in
+         * @param start Start of line, inclusive
+         * @param end End of line, exclusive, line ending excluded
+         * @param lineNumber Line number, starting from 1
+         */
+        void line(@NonNull CharSequence chars, int start, int end, int lineNumber);
+    }
+
+    /**
+     * ASCII characters backed by a byte buffer
+     */
+    private static final class AsciiSequence implements CharSequence {
+        private final ByteBuffer bytes;
+
+        private AsciiSequence(@NonNull ByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int length() {
+            return bytes.limit();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) bytes.get(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if(start < 0 || end > length() || start > end)
+                throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length());
+            ByteBuffer slice = bytes.duplicate();
+            slice.position(start).limit(end);
+            return new AsciiSequence(slice.slice());
+        }
+
+        @Override
+        public String toString() {
+            byte[] chars = new byte[bytes.limit()];
+            bytes.duplicate().get(chars);
+            return new String(chars, StandardCharsets.ISO_8859_1);
+        }
+    }
+}
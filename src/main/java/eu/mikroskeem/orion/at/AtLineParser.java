@@ -0,0 +1,201 @@
+package eu.mikroskeem.orion.at;
+
+import eu.mikroskeem.orion.at.access.AccessLevel;
+import eu.mikroskeem.orion.at.access.AccessModifier;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Single pass access transformer line parser. Works on a character range directly, without regular expressions,
+ * streams or intermediate strings besides class name and descriptor
+ *
+ * <pre>access[(+|-)modifier]... class.Name [fieldName|methodName(desc)] [# comment]</pre>
+ *
+ * @author Mark Vainomaa
+ */
+final class AtLineParser {
+    private final static AccessLevel[] ACCESS_LEVELS = AccessLevel.values();
+    private final static AccessModifier[] ACCESS_MODIFIERS = AccessModifier.values();
+
+    /* Modifier entries are immutable, so they can be shared between all parsed lines */
+    private final static AccessModifier.ModifierEntry[] ADD_MODIFIERS = new AccessModifier.ModifierEntry[ACCESS_MODIFIERS.length];
+    private final static AccessModifier.ModifierEntry[] REMOVE_MODIFIERS = new AccessModifier.ModifierEntry[ACCESS_MODIFIERS.length];
+
+    private AtLineParser() {}
+
+    /**
+     * Parses access transformer line
+     *
+     * @param line Line to parse
+     * @return Parsed entry or null, either if line was blank or comment
+     * @throws IllegalStateException if line is not a valid access transformer entry
+     */
+    @Nullable
+    static AccessTransformEntry parse(@NonNull CharSequence line) {
+        return parse(line, 0, line.length());
+    }
+
+    /**
+     * Parses access transformer line from given range of characters
+     *
+     * @param chars Characters to parse from
+     * @param start Start of line, inclusive
+     * @param end End of line, exclusive
+     * @return Parsed entry or null, either if line was blank or comment
+     * @throws IllegalStateException if line is not a valid access transformer entry
+     */
+    @Nullable
+    static AccessTransformEntry parse(@NonNull CharSequence chars, int start, int end) {
+        /* Strip comment */
+        for (int i = start; i < end; i++) {
+            if(chars.charAt(i) == '#') {
+                end = i;
+                break;
+            }
+        }
+
+        /* Trim */
+        while(start < end && chars.charAt(start) <= ' ') start++;
+        while(end > start && chars.charAt(end - 1) <= ' ') end--;
+        if(start == end)
+            return null;
+
+        /* Access level and modifiers */
+        int accessEnd = skipToken(chars, start, end);
+        int levelEnd = start;
+        while(levelEnd < accessEnd && !isModifierAction(chars.charAt(levelEnd))) levelEnd++;
+        AccessLevel accessLevel = findAccessLevel(chars, start, levelEnd);
+        if(accessLevel == null)
+            throw new IllegalStateException("Invalid access level: " + chars.subSequence(start, levelEnd));
+
+        List<AccessModifier.ModifierEntry> modifiers = Collections.emptyList();
+        for (int i = levelEnd; i < accessEnd; ) {
+            boolean remove = chars.charAt(i) == '-';
+            int nameStart = ++i;
+            while(i < accessEnd && !isModifierAction(chars.charAt(i))) i++;
+            int modifier = findAccessModifier(chars, nameStart, i);
+            if(modifier == -1)
+                throw new IllegalStateException("Invalid access modifier: " + chars.subSequence(nameStart, i));
+
+            if(modifiers.isEmpty())
+                modifiers = new ArrayList<>(2);
+            modifiers.add(remove ? REMOVE_MODIFIERS[modifier] : ADD_MODIFIERS[modifier]);
+        }
+
+        /* Class name */
+        int classStart = skipWhitespace(chars, accessEnd, end);
+        int classEnd = skipToken(chars, classStart, end);
+        if(classStart == classEnd)
+            throw new IllegalStateException("Invalid AT entry: " + chars.subSequence(start, end));
+        String className = chars.subSequence(classStart, classEnd).toString();
+
+        /* Class AT has no descriptor */
+        int descStart = skipWhitespace(chars, classEnd, end);
+        if(descStart == end) {
+            return new AccessTransformEntry(accessLevel, modifiers, className, null, false, true, false);
+        }
+
+        /* Method descriptor must have both parentheses, anything after descriptor is ignored */
+        int descEnd = skipToken(chars, descStart, end);
+        int openParen = -1;
+        int closeParen = -1;
+        for (int i = descStart; i < descEnd; i++) {
+            char c = chars.charAt(i);
+            if(c == '(' && openParen == -1) {
+                openParen = i;
+            } else if(c == ')' && openParen != -1) {
+                closeParen = i;
+                break;
+            }
+        }
+
+        String descriptor = chars.subSequence(descStart, descEnd).toString();
+        if(openParen == -1) {
+            return new AccessTransformEntry(accessLevel, modifiers, className, descriptor, false, false, true);
+        }
+        if(closeParen == -1)
+            throw new IllegalStateException("Invalid method AT entry: " + chars.subSequence(start, end));
+
+        return new AccessTransformEntry(accessLevel, modifiers, className, descriptor, true, false, false);
+    }
+
+    /**
+     * Scans access transformer line only far enough to find its target class name
+     *
+     * @param line Line to scan
+     * @return Target class name, or null if line was blank or comment
+     * @throws IllegalStateException if line has no class name
+     */
+    @Nullable
+    static String scanClassName(@NonNull CharSequence line) {
+        int end = line.length();
+        for (int i = 0; i < end; i++) {
+            if(line.charAt(i) == '#') {
+                end = i;
+                break;
+            }
+        }
+
+        int start = skipWhitespace(line, 0, end);
+        if(start == end)
+            return null;
+
+        int classStart = skipWhitespace(line, skipToken(line, start, end), end);
+        int classEnd = skipToken(line, classStart, end);
+        if(classStart == classEnd)
+            throw new IllegalStateException("Invalid AT entry: " + line.subSequence(start, end).toString().trim());
+        return line.subSequence(classStart, classEnd).toString();
+    }
+
+    private static int skipToken(@NonNull CharSequence chars, int i, int end) {
+        while(i < end && chars.charAt(i) > ' ') i++;
+        return i;
+    }
+
+    private static int skipWhitespace(@NonNull CharSequence chars, int i, int end) {
+        while(i < end && chars.charAt(i) <= ' ') i++;
+        return i;
+    }
+
+    private static boolean isModifierAction(char c) {
+        return c == '-' || c == '+';
+    }
+
+    @Nullable
+    private static AccessLevel findAccessLevel(@NonNull CharSequence chars, int start, int end) {
+        for (AccessLevel accessLevel : ACCESS_LEVELS) {
+            if(regionEquals(chars, start, end, accessLevel.getName()))
+                return accessLevel;
+        }
+        return null;
+    }
+
+    private static int findAccessModifier(@NonNull CharSequence chars, int start, int end) {
+        for (int i = 0; i < ACCESS_MODIFIERS.length; i++) {
+            if(regionEquals(chars, start, end, ACCESS_MODIFIERS[i].getName()))
+                return i;
+        }
+        return -1;
+    }
+
+    private static boolean regionEquals(@NonNull CharSequence chars, int start, int end, @NonNull String name) {
+        if(end - start != name.length())
+            return false;
+        for (int i = 0; i < name.length(); i++) {
+            if(chars.charAt(start + i) != name.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    static {
+        for (int i = 0; i < ACCESS_MODIFIERS.length; i++) {
+            ADD_MODIFIERS[i] = new AccessModifier.ModifierEntry(false, ACCESS_MODIFIERS[i]);
+            REMOVE_MODIFIERS[i] = new AccessModifier.ModifierEntry(true, ACCESS_MODIFIERS[i]);
+        }
+    }
+}
@@ -0,0 +1,418 @@
+package eu.mikroskeem.orion.at;
+
+import eu.mikroskeem.orion.at.access.AccessLevel;
+import eu.mikroskeem.orion.at.access.AccessModifier;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link CompiledRuleset} backed by a memory-mapped binary file. Rules of a class are decoded only when they are
+ * looked up, and lookups go through a hash index stored in the file, so opening a ruleset costs next to nothing
+ * regardless of its size. Several JVMs opening the same file share its pages.
+ *
+ * <pre>
+ * header:   magic u4, version u2, reserved u2, fingerprint u1[32], string count u4, string table offset u4,
+ *           class count u4, rule class count u4, index size u4, index offset u4
+ * strings:  offset u4[string count], then each string as length u2 and UTF-8 bytes
+ * index:    record offset u4[index size], open addressing by {@link String#hashCode()} of class name, 0 if empty
+ * record:   name u4, name hash u4, flags u1, class entry, method count u2, (descriptor u4, entry)...,
+ *           field count u2, (name u4, entry)...
+ * entry:    access level u1 (0xFF if absent), modifier count u1, (remove flag 0x80 | modifier u1)...
+ * </pre>
+ *
+ * Strings are interned, so every class name and descriptor is stored once. Entries are stored pre-merged
+ *
+ * @author Mark Vainomaa
+ */
+public final class BinaryRuleset extends CompiledRuleset {
+    private final static int MAGIC = 0x4F415452; // 'OATR'
+    private final static int VERSION = 1;
+    private final static int HEADER_SIZE = 64;
+    private final static int FLAG_HAS_RULES = 1;
+    private final static int NO_ENTRY = 0xFF;
+    private final static int REMOVE = 0x80;
+    private final static AccessLevel[] ACCESS_LEVELS = AccessLevel.values();
+    private final static AccessModifier[] ACCESS_MODIFIERS = AccessModifier.values();
+
+    private final ByteBuffer buffer;
+    private final byte[] fingerprint;
+    private final int stringTableOffset;
+    private final int ruleClassCount;
+    private final int indexMask;
+    private final int indexOffset;
+    private final Map<String, ClassRules> decoded = new ConcurrentHashMap<>();
+    private final Map<String, ClassRules> decodedByInternalName = new ConcurrentHashMap<>();
+    private volatile List<String> classNames;
+
+    private BinaryRuleset(@NonNull ByteBuffer buffer) throws IOException {
+        if(buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+            throw new IOException("Not a binary ruleset");
+        if(buffer.getShort(4) != VERSION)
+            throw new IOException("Unsupported binary ruleset version: " + buffer.getShort(4));
+
+        this.buffer = buffer;
+        this.fingerprint = new byte[32];
+        for (int i = 0; i < fingerprint.length; i++)
+            fingerprint[i] = buffer.get(8 + i);
+        int stringCount = buffer.getInt(40);
+        this.stringTableOffset = buffer.getInt(44);
+        this.ruleClassCount = buffer.getInt(52);
+        int indexSize = buffer.getInt(56);
+        this.indexMask = indexSize - 1;
+        this.indexOffset = buffer.getInt(60);
+
+        if(Integer.bitCount(indexSize) != 1 || indexOffset < HEADER_SIZE || stringTableOffset < HEADER_SIZE
+                || (long) indexOffset + 4L * indexSize > buffer.limit()
+                || (long) stringTableOffset + 4L * stringCount > buffer.limit())
+            throw new IOException("Corrupt binary ruleset");
+    }
+
+    /**
+     * Opens binary ruleset file
+     *
+     * @param path Binary ruleset file path
+     * @return Instance of {@link BinaryRuleset}
+     * @throws IOException if file cannot be read, or is not a binary ruleset of supported version
+     */
+    @NonNull
+    public static BinaryRuleset open(@NonNull Path path) throws IOException {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if(channel.size() > Integer.MAX_VALUE)
+                throw new IOException("Binary ruleset is too large");
+            return new BinaryRuleset(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Writes ruleset into a binary ruleset file. File is written into a temporary file first and moved into place
+     * atomically, so JVMs having the previous file open are not disturbed
+     *
+     * @param ruleset {@link CompiledRuleset} to write
+     * @param path Binary ruleset file path
+     * @throws IOException if writing file fails
+     * @throws IllegalArgumentException if ruleset has package patterns, which binary rulesets do not support
+     */
+    public static void write(@NonNull CompiledRuleset ruleset, @NonNull Path path) throws IOException {
+        Objects.requireNonNull(ruleset, "ruleset must not be null");
+        if(!ruleset.getPatterns().isEmpty())
+            throw new IllegalArgumentException("Binary rulesets do not support package patterns: " + ruleset.getPatterns());
+        Path directory = path.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            try(OutputStream out = Files.newOutputStream(temp)) {
+                out.write(encode(ruleset));
+            }
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @NonNull
+    static byte[] encode(@NonNull CompiledRuleset ruleset) throws IOException {
+        Collection<String> ruleClasses = new TreeSet<>(ruleset.getClassNames());
+        Set<String> enclosingClasses = getEnclosingClasses(ruleClasses);
+        enclosingClasses.removeAll(ruleClasses);
+        List<String> classes = new ArrayList<>(ruleClasses);
+        classes.addAll(new TreeSet<>(enclosingClasses));
+
+        /* Class records, referring to interned strings by index */
+        Map<String, Integer> strings = new HashMap<>();
+        List<String> stringList = new ArrayList<>();
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        DataOutputStream recordsOut = new DataOutputStream(records);
+        int[] recordOffsets = new int[classes.size()];
+        for (int i = 0; i < classes.size(); i++) {
+            String className = classes.get(i);
+            ClassRules rules = ruleset.getClassRules(className);
+            recordOffsets[i] = recordsOut.size();
+            recordsOut.writeInt(intern(strings, stringList, className));
+            recordsOut.writeInt(className.hashCode());
+            recordsOut.writeByte(rules != null ? FLAG_HAS_RULES : 0);
+            writeEntry(recordsOut, rules != null ? rules.getClassTransform() : null);
+
+            Collection<AccessTransformEntry> methods = rules != null ? rules.getMethodTransforms() : Collections.emptyList();
+            Collection<AccessTransformEntry> fields = rules != null ? rules.getFieldTransforms() : Collections.emptyList();
+            if(methods.size() > 0xFFFF || fields.size() > 0xFFFF)
+                throw new IOException("Too many entries for class " + className);
+
+            recordsOut.writeShort(methods.size());
+            for (AccessTransformEntry method : methods) {
+                recordsOut.writeInt(intern(strings, stringList, Objects.requireNonNull(method.getDescriptor())));
+                writeEntry(recordsOut, method);
+            }
+
+            recordsOut.writeShort(fields.size());
+            for (AccessTransformEntry field : fields) {
+                recordsOut.writeInt(intern(strings, stringList, Objects.requireNonNull(field.getDescriptor())));
+                writeEntry(recordsOut, field);
+            }
+        }
+
+        ByteArrayOutputStream stringData = new ByteArrayOutputStream();
+        DataOutputStream stringOut = new DataOutputStream(stringData);
+        int[] stringOffsets = new int[stringList.size()];
+        for (int i = 0; i < stringList.size(); i++) {
+            byte[] bytes = stringList.get(i).getBytes(StandardCharsets.UTF_8);
+            if(bytes.length > 0xFFFF)
+                throw new IOException("String is too long: " + stringList.get(i));
+            stringOffsets[i] = stringOut.size();
+            stringOut.writeShort(bytes.length);
+            stringOut.write(bytes);
+        }
+
+        /* Index twice as large as class count keeps probe sequences short */
+        int indexSize = Integer.highestOneBit(Math.max(1, classes.size() * 2 - 1)) << 1;
+        int stringTableOffset = HEADER_SIZE;
+        int stringDataOffset = stringTableOffset + 4 * stringOffsets.length;
+        int indexOffset = stringDataOffset + stringData.size();
+        int recordsOffset = indexOffset + 4 * indexSize;
+
+        int[] index = new int[indexSize];
+        for (int i = 0; i < classes.size(); i++) {
+            int slot = classes.get(i).hashCode() & (indexSize - 1);
+            while(index[slot] != 0)
+                slot = (slot + 1) & (indexSize - 1);
+            index[slot] = recordsOffset + recordOffsets[i];
+        }
+
+        ByteArrayOutputStream result = new ByteArrayOutputStream(recordsOffset + records.size());
+        DataOutputStream out = new DataOutputStream(result);
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeShort(0);
+        out.write(ruleset.getFingerprint());
+        out.writeInt(stringOffsets.length);
+        out.writeInt(stringTableOffset);
+        out.writeInt(classes.size());
+        out.writeInt(ruleClasses.size());
+        out.writeInt(indexSize);
+        out.writeInt(indexOffset);
+        for (int stringOffset : stringOffsets)
+            out.writeInt(stringDataOffset + stringOffset);
+        stringData.writeTo(out);
+        for (int offset : index)
+            out.writeInt(offset);
+        records.writeTo(out);
+        return result.toByteArray();
+    }
+
+    private static int intern(@NonNull Map<String, Integer> strings, @NonNull List<String> stringList, @NonNull String string) {
+        return strings.computeIfAbsent(string, k -> {
+            stringList.add(k);
+            return stringList.size() - 1;
+        });
+    }
+
+    private static void writeEntry(@NonNull DataOutputStream out, @Nullable AccessTransformEntry entry) throws IOException {
+        if(entry == null) {
+            out.writeByte(NO_ENTRY);
+            out.writeByte(0);
+            return;
+        }
+
+        out.writeByte(entry.getAccessLevel().ordinal());
+        out.writeByte(entry.getAccessModifiers().size());
+        for (AccessModifier.ModifierEntry modifier : entry.getAccessModifiers())
+            out.writeByte((modifier.isRemove() ? REMOVE : 0) | modifier.getAccessModifier().ordinal());
+    }
+
+    @Nullable
+    @Override
+    public ClassRules getClassRules(@NonNull String className) {
+        ClassRules rules = decoded.get(className);
+        if(rules == null) {
+            int record = findRecord(className, false);
+            if(record == 0 || (buffer.get(record + 8) & FLAG_HAS_RULES) == 0)
+                return null;
+
+            rules = decode(className, record);
+            ClassRules existing = decoded.putIfAbsent(className, rules);
+            if(existing != null)
+                rules = existing;
+        }
+        return rules;
+    }
+
+    @Nullable
+    @Override
+    public ClassRules getClassRulesByInternalName(@NonNull String internalName) {
+        ClassRules rules = decodedByInternalName.get(internalName);
+        if(rules == null) {
+            int record = findRecord(internalName, true);
+            if(record == 0 || (buffer.get(record + 8) & FLAG_HAS_RULES) == 0)
+                return null;
+
+            rules = Objects.requireNonNull(getClassRules(readString(buffer.getInt(record))));
+            decodedByInternalName.putIfAbsent(internalName, rules);
+        }
+        return rules;
+    }
+
+    @Override
+    public boolean hasRules(@NonNull String className) {
+        int record = findRecord(className, false);
+        return record != 0 && (buffer.get(record + 8) & FLAG_HAS_RULES) != 0;
+    }
+
+    @Override
+    public boolean affectsClass(@NonNull String className) {
+        return findRecord(className, false) != 0;
+    }
+
+    @Override
+    public boolean affectsInternalName(@NonNull String internalName) {
+        return findRecord(internalName, true) != 0;
+    }
+
+    @Override
+    boolean hasExactRules(@NonNull String className) {
+        /* Package patterns are never stored */
+        return hasRules(className);
+    }
+
+    @Override
+    boolean mayHaveRules(int classNameHash) {
+        /* Index is keyed by the same hash, so names need no decoding */
+        for (int slot = classNameHash & indexMask; ; slot = (slot + 1) & indexMask) {
+            int record = buffer.getInt(indexOffset + 4 * slot);
+            if(record == 0)
+                return false;
+            if(buffer.getInt(record + 4) == classNameHash && (buffer.get(record + 8) & FLAG_HAS_RULES) != 0)
+                return true;
+        }
+    }
+
+    @NonNull
+    @Override
+    public Collection<String> getClassNames() {
+        List<String> classNames = this.classNames;
+        if(classNames == null) {
+            classNames = new ArrayList<>(ruleClassCount);
+            for (int i = 0; i <= indexMask; i++) {
+                int record = buffer.getInt(indexOffset + 4 * i);
+                if(record != 0 && (buffer.get(record + 8) & FLAG_HAS_RULES) != 0)
+                    classNames.add(readString(buffer.getInt(record)));
+            }
+            this.classNames = classNames = Collections.unmodifiableList(classNames);
+        }
+        return classNames;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return ruleClassCount == 0;
+    }
+
+    @NonNull
+    @Override
+    byte[] computeFingerprint() {
+        return fingerprint.clone();
+    }
+
+    private int findRecord(@NonNull String name, boolean internal) {
+        int hash = 0;
+        for (int i = 0; i < name.length(); i++)
+            hash = 31 * hash + toDotted(name.charAt(i), internal);
+
+        for (int slot = hash & indexMask; ; slot = (slot + 1) & indexMask) {
+            int record = buffer.getInt(indexOffset + 4 * slot);
+            if(record == 0)
+                return 0;
+            if(buffer.getInt(record + 4) == hash && nameEquals(buffer.getInt(record), name, internal))
+                return record;
+        }
+    }
+
+    private boolean nameEquals(int stringIndex, @NonNull String name, boolean internal) {
+        int offset = buffer.getInt(stringTableOffset + 4 * stringIndex);
+        int length = buffer.getShort(offset) & 0xFFFF;
+        for (int i = 0; i < name.length(); i++) {
+            char c = toDotted(name.charAt(i), internal);
+
+            /* Compare non-ASCII names as strings */
+            if(c >= 0x80)
+                return readString(stringIndex).equals(internal ? name.replace('/', '.') : name);
+            if(i >= length || buffer.get(offset + 2 + i) != c)
+                return false;
+        }
+        return length == name.length();
+    }
+
+    private static char toDotted(char c, boolean internal) {
+        return internal && c == '/' ? '.' : c;
+    }
+
+    @NonNull
+    private String readString(int stringIndex) {
+        int offset = buffer.getInt(stringTableOffset + 4 * stringIndex);
+        byte[] bytes = new byte[buffer.getShort(offset) & 0xFFFF];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = buffer.get(offset + 2 + i);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @NonNull
+    private ClassRules decode(@NonNull String className, int record) {
+        /* Duplicate has its own position, so concurrent lookups do not interfere */
+        ByteBuffer in = buffer.duplicate();
+        in.position(record + 9);
+
+        ClassRules rules = new ClassRules();
+        AccessTransformEntry classTransform = readEntry(in, className, null, false, true, false);
+        if(classTransform != null)
+            rules.add(classTransform, null);
+
+        int methodCount = in.getShort() & 0xFFFF;
+        for (int i = 0; i < methodCount; i++) {
+            String descriptor = readString(in.getInt());
+            rules.add(Objects.requireNonNull(readEntry(in, className, descriptor, true, false, false)), null);
+        }
+
+        int fieldCount = in.getShort() & 0xFFFF;
+        for (int i = 0; i < fieldCount; i++) {
+            String fieldName = readString(in.getInt());
+            rules.add(Objects.requireNonNull(readEntry(in, className, fieldName, false, false, true)), null);
+        }
+        return rules;
+    }
+
+    @Nullable
+    private static AccessTransformEntry readEntry(@NonNull ByteBuffer in, @NonNull String className,
+                                                  @Nullable String descriptor, boolean methodAt, boolean classAt,
+                                                  boolean fieldAt) {
+        int level = in.get() & 0xFF;
+        int modifierCount = in.get() & 0xFF;
+        if(level == NO_ENTRY)
+            return null;
+
+        List<AccessModifier.ModifierEntry> modifiers = new ArrayList<>(modifierCount);
+        for (int i = 0; i < modifierCount; i++) {
+            int modifier = in.get() & 0xFF;
+            modifiers.add(new AccessModifier.ModifierEntry((modifier & REMOVE) != 0, ACCESS_MODIFIERS[modifier & ~REMOVE]));
+        }
+        return new AccessTransformEntry(ACCESS_LEVELS[level], modifiers, className, descriptor, methodAt, classAt, fieldAt);
+    }
+}
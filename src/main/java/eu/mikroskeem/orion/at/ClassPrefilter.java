@@ -0,0 +1,105 @@
+package eu.mikroskeem.orion.at;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.util.Collection;
+
+/**
+ * Cheap class file prefilter, which reads only the constant pool to decide whether a class needs to go through
+ * the access transformer at all.
+ *
+ * Every class the transformer can touch (the class itself and classes in its InnerClasses attribute) is
+ * referenced by a CONSTANT_Class entry, so if none of those have rules, the class can be passed through as-is.
+ * Entries are hashed straight from their bytes and checked with {@link CompiledRuleset#mayHaveRules(int)},
+ * so names are decoded only for hash hits, or for package pattern matching when the ruleset has patterns
+ *
+ * @author Mark Vainomaa
+ */
+final class ClassPrefilter {
+    private ClassPrefilter() {}
+
+    /**
+     * Returns whether given class may be affected by given ruleset. False positives are possible
+     * (e.g. class only referencing a class with rules), false negatives are not.
+     *
+     * @param classFile Class bytes
+     * @param ruleset {@link CompiledRuleset} to check against
+     * @return Whether class may be affected by given ruleset
+     */
+    static boolean mayBeAffected(@NonNull byte[] classFile, @NonNull CompiledRuleset ruleset) {
+        if(ruleset.isEmpty())
+            return false;
+
+        try {
+            ConstantPool constantPool = ConstantPool.read(classFile);
+            PackagePatterns patterns = ruleset.getPackagePatterns();
+
+            /* Check whether any referenced class has rules */
+            for(int i = 1; i < constantPool.getCount(); i++) {
+                if(constantPool.getTag(i) != ConstantPool.CLASS)
+                    continue;
+
+                if(ruleset.mayHaveRules(constantPool.getClassNameHash(i))) {
+                    String className = constantPool.getClassName(i);
+                    if(className != null && ruleset.hasRules(className))
+                        return true;
+                } else if(!patterns.isEmpty()) {
+                    String internalName = constantPool.getInternalName(i);
+                    if(internalName != null && patterns.matches(internalName, '/'))
+                        return true;
+                }
+            }
+            return false;
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            /* Let ClassReader deal with invalid classes */
+            return true;
+        }
+    }
+
+    /**
+     * Hash set of names of classes having exact rules. Only hashes are kept, so hits must be confirmed
+     */
+    static final class NameFilter {
+        private final int[] hashes;
+        private final boolean[] used;
+
+        /**
+         * Constructs name filter
+         *
+         * @param classNames Class names, a'la 'foo.bar.Baz'
+         */
+        NameFilter(@NonNull Collection<String> classNames) {
+            int capacity = 4;
+            while(capacity < classNames.size() * 2)
+                capacity <<= 1;
+
+            this.hashes = new int[capacity];
+            this.used = new boolean[capacity];
+            for (String className : classNames) {
+                int hash = className.hashCode();
+                int slot = probe(hash);
+                hashes[slot] = hash;
+                used[slot] = true;
+            }
+        }
+
+        /**
+         * Returns whether a class with given name hash may have exact rules
+         *
+         * @param hash {@link String#hashCode()} of class name, a'la 'foo.bar.Baz'
+         * @return Whether class may have exact rules
+         */
+        boolean mayContain(int hash) {
+            return used[probe(hash)];
+        }
+
+        /* Finds slot holding given hash, or the empty slot where it would be */
+        private int probe(int hash) {
+            int mask = hashes.length - 1;
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while(used[slot] && hashes[slot] != hash)
+                slot = (slot + 1) & mask;
+            return slot;
+        }
+    }
+}
@@ -0,0 +1,423 @@
+package eu.mikroskeem.orion.at;
+
+import eu.mikroskeem.orion.at.access.AccessModifier;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+/**
+ * Immutable set of {@link AccessTransformEntry} objects, indexed by target class name.
+ * Looking up rules for a class costs a single hash lookup, no matter how many entries were compiled in.
+ *
+ * Entries may also target whole packages with class name patterns, such as {@code foo.bar.*} for classes in
+ * package {@code foo.bar}, and {@code foo.bar.**} for classes in it and its subpackages. Rules of matching
+ * patterns are combined with exact rules of a class, exact rules taking precedence on modifiers
+ *
+ * Rulesets are either compiled from entries in memory, backed by a binary file, see {@link BinaryRuleset}, or
+ * layered from other rulesets, see {@link CompositeRuleset}
+ *
+ * @author Mark Vainomaa
+ */
+public abstract class CompiledRuleset {
+    /** Ruleset without any entries */
+    public final static CompiledRuleset EMPTY = new MapRuleset(Collections.emptyMap());
+
+    /* Stable sort keeps order of entries for the same modifier, as later ones override earlier */
+    private final static Comparator<AccessModifier.ModifierEntry> MODIFIER_ORDER =
+            Comparator.comparingInt(modifierEntry -> modifierEntry.getAccessModifier().ordinal());
+
+    private byte[] fingerprint;
+    private ClassPrefilter.NameFilter nameFilter;
+
+    CompiledRuleset() {}
+
+    /**
+     * Compiles given {@link AccessTransformEntry} objects into a ruleset. Entries targeting the same class, method
+     * or field are merged into one
+     *
+     * @param entries {@link AccessTransformEntry} objects to compile
+     * @return Compiled ruleset
+     */
+    @NonNull
+    public static CompiledRuleset compile(@NonNull Collection<AccessTransformEntry> entries) {
+        return compile(entries, null);
+    }
+
+    /**
+     * Compiles given {@link AccessTransformEntry} objects into a ruleset. Entries targeting the same class, method
+     * or field are merged into one, and differing entries are reported to given conflict handler
+     *
+     * @param entries {@link AccessTransformEntry} objects to compile
+     * @param conflictHandler {@link RuleConflict} handler, or null
+     * @return Compiled ruleset
+     */
+    @NonNull
+    public static CompiledRuleset compile(@NonNull Collection<AccessTransformEntry> entries,
+                                          @Nullable Consumer<RuleConflict> conflictHandler) {
+        if(entries.isEmpty())
+            return EMPTY;
+
+        Map<String, ClassRules> classRules = new HashMap<>();
+        for (AccessTransformEntry entry : entries) {
+            Objects.requireNonNull(entry, "entry must not be null");
+            classRules.computeIfAbsent(entry.getClassName(), k -> new ClassRules()).add(entry, conflictHandler);
+        }
+        return new MapRuleset(classRules);
+    }
+
+    /**
+     * Gets rules targeting given class
+     *
+     * @param className Class name, a'la 'foo.bar.Baz'
+     * @return Instance of {@link ClassRules} or null, if given class has no rules
+     */
+    @Nullable
+    public abstract ClassRules getClassRules(@NonNull String className);
+
+    /**
+     * Gets rules targeting given class. Lets class loading hooks and visitors look rules up by JVM-supplied names
+     * without converting them
+     *
+     * @param internalName Internal class name, a'la 'foo/bar/Baz'
+     * @return Instance of {@link ClassRules} or null, if given class has no rules
+     */
+    @Nullable
+    public abstract ClassRules getClassRulesByInternalName(@NonNull String internalName);
+
+    /**
+     * Returns whether given class has any rules
+     *
+     * @param className Class name, a'la 'foo.bar.Baz'
+     * @return Whether given class has any rules
+     */
+    public abstract boolean hasRules(@NonNull String className);
+
+    /**
+     * Returns whether given class has rules or encloses a nested class with rules, in other words whether
+     * transforming given class may change it. This looks only at the class name, so InnerClasses entries of
+     * unrelated classes referring to a nested class with rules are not considered
+     *
+     * @param className Class name, a'la 'foo.bar.Baz'
+     * @return Whether given class may be affected by this ruleset
+     */
+    public abstract boolean affectsClass(@NonNull String className);
+
+    /**
+     * Same as {@link #affectsClass(String)}, but takes internal class name
+     *
+     * @param internalName Internal class name, a'la 'foo/bar/Baz'
+     * @return Whether given class may be affected by this ruleset
+     */
+    public abstract boolean affectsInternalName(@NonNull String internalName);
+
+    /**
+     * Gets names of all classes having exact rules. Classes matched by package patterns are not included,
+     * see {@link #getPatterns()}
+     *
+     * @return Class names, a'la 'foo.bar.Baz'
+     */
+    @NonNull
+    public abstract Collection<String> getClassNames();
+
+    /**
+     * Gets package patterns having rules
+     *
+     * @return Package patterns, a'la 'foo.bar.*' or 'foo.bar.**'
+     */
+    @NonNull
+    public Collection<String> getPatterns() {
+        return getPackagePatterns().getPatterns().keySet();
+    }
+
+    /**
+     * Gets rules of given package pattern
+     *
+     * @param pattern Package pattern, a'la 'foo.bar.*' or 'foo.bar.**'
+     * @return Instance of {@link ClassRules} or null, if there is no such pattern
+     */
+    @Nullable
+    public ClassRules getPatternRules(@NonNull String pattern) {
+        return getPackagePatterns().getPatterns().get(pattern);
+    }
+
+    /**
+     * Returns whether given class has exact rules, package patterns are not looked at
+     *
+     * @param className Class name, a'la 'foo.bar.Baz'
+     * @return Whether given class has exact rules
+     */
+    boolean hasExactRules(@NonNull String className) {
+        return getClassNames().contains(className);
+    }
+
+    @NonNull
+    PackagePatterns getPackagePatterns() {
+        return PackagePatterns.EMPTY;
+    }
+
+    /**
+     * Returns whether class with given name hash may have exact rules. False positives are possible, false
+     * negatives are not. Rulesets with their own hash index should answer from it
+     *
+     * @param classNameHash {@link String#hashCode()} of class name, a'la 'foo.bar.Baz'
+     * @return Whether class may have exact rules
+     */
+    boolean mayHaveRules(int classNameHash) {
+        /* Built once, ruleset never changes */
+        ClassPrefilter.NameFilter nameFilter = this.nameFilter;
+        if(nameFilter == null)
+            this.nameFilter = nameFilter = new ClassPrefilter.NameFilter(getClassNames());
+        return nameFilter.mayContain(classNameHash);
+    }
+
+    /**
+     * Returns whether this ruleset has no rules at all
+     *
+     * @return Whether this ruleset is empty
+     */
+    public boolean isEmpty() {
+        return getClassNames().isEmpty() && getPackagePatterns().isEmpty();
+    }
+
+    /**
+     * Gets SHA-256 fingerprint of this ruleset. Rulesets applying same effective rules have same fingerprint,
+     * regardless of entry order, duplicate entries and backing storage
+     *
+     * @return Ruleset fingerprint
+     */
+    @NonNull
+    public byte[] getFingerprint() {
+        byte[] fingerprint = this.fingerprint;
+        if(fingerprint == null)
+            this.fingerprint = fingerprint = computeFingerprint();
+        return fingerprint.clone();
+    }
+
+    @NonNull
+    byte[] computeFingerprint() {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (String className : new TreeSet<>(getClassNames()))
+            appendCanonical(digest, sb, className, Objects.requireNonNull(getClassRules(className)));
+        for (Map.Entry<String, ClassRules> pattern : new TreeMap<>(getPackagePatterns().getPatterns()).entrySet())
+            appendCanonical(digest, sb, pattern.getKey(), pattern.getValue());
+        return digest.digest();
+    }
+
+    private static void appendCanonical(@NonNull MessageDigest digest, @NonNull StringBuilder sb,
+                                        @NonNull String className, @NonNull ClassRules rules) {
+        sb.append(className).append('\n');
+        appendCanonical(sb, rules.classTransform);
+        for (AccessTransformEntry methodTransform : new TreeMap<>(rules.methodTransforms).values())
+            appendCanonical(sb, methodTransform);
+        for (AccessTransformEntry fieldTransform : new TreeMap<>(rules.fieldTransforms).values())
+            appendCanonical(sb, fieldTransform);
+        digest.update(sb.toString().getBytes(StandardCharsets.UTF_8));
+        sb.setLength(0);
+    }
+
+    private static void appendCanonical(@NonNull StringBuilder sb, @Nullable AccessTransformEntry entry) {
+        if(entry == null)
+            return;
+
+        /* Modifier order does not matter to transforming, so it must not matter to fingerprint either */
+        List<AccessModifier.ModifierEntry> modifiers = entry.getAccessModifiers();
+        if(modifiers.size() > 1) {
+            modifiers = new ArrayList<>(modifiers);
+            modifiers.sort(MODIFIER_ORDER);
+        }
+
+        sb.append(entry.getAccessLevel().getName());
+        for (AccessModifier.ModifierEntry modifierEntry : modifiers)
+            sb.append(modifierEntry.isRemove() ? '-' : '+').append(modifierEntry.getAccessModifier().getName());
+        sb.append(' ').append(entry.getClassName());
+        if(entry.getDescriptor() != null)
+            sb.append(' ').append(entry.getDescriptor());
+        sb.append('\n');
+    }
+
+    /**
+     * Gets names of classes enclosing given classes. Outer classes carry InnerClasses entries of their
+     * nested classes, so they are affected by rules targeting nested classes
+     *
+     * @param classNames Class names, a'la 'foo.bar.Baz$Inner'
+     * @return Enclosing class names
+     */
+    @NonNull
+    static Set<String> getEnclosingClasses(@NonNull Collection<String> classNames) {
+        Set<String> enclosingClasses = new HashSet<>();
+        for (String className : classNames) {
+            for(int i = className.indexOf('$'); i > 0; i = className.indexOf('$', i + 1))
+                enclosingClasses.add(className.substring(0, i));
+        }
+        return enclosingClasses;
+    }
+
+    /**
+     * Rules targeting a single class
+     */
+    public static final class ClassRules {
+        private AccessTransformEntry classTransform;
+        private final Map<String, AccessTransformEntry> methodTransforms = new HashMap<>();
+        private final Map<String, AccessTransformEntry> fieldTransforms = new HashMap<>();
+
+        /* Method transforms by name and descriptor, so lookups need no string concatenation */
+        private final Map<String, Map<String, AccessTransformEntry>> methodTransformsByName = new HashMap<>();
+
+        ClassRules() {}
+
+        /**
+         * Combines rules of several classes or patterns into one. Rules added later take precedence on modifiers
+         *
+         * @param rules Rules to combine
+         * @return Combined rules
+         */
+        @NonNull
+        static ClassRules combine(@NonNull List<ClassRules> rules) {
+            return combine(rules, null);
+        }
+
+        /**
+         * Combines rules of several classes, patterns or rulesets into one. Rules added later take precedence
+         * on modifiers, and differing rules are reported to given conflict handler
+         *
+         * @param rules Rules to combine
+         * @param conflictHandler {@link RuleConflict} handler, or null
+         * @return Combined rules
+         */
+        @NonNull
+        static ClassRules combine(@NonNull List<ClassRules> rules, @Nullable Consumer<RuleConflict> conflictHandler) {
+            ClassRules combined = new ClassRules();
+            for (ClassRules classRules : rules) {
+                if(classRules.classTransform != null)
+                    combined.add(classRules.classTransform, conflictHandler);
+                for (AccessTransformEntry methodTransform : classRules.methodTransforms.values())
+                    combined.add(methodTransform, conflictHandler);
+                for (AccessTransformEntry fieldTransform : classRules.fieldTransforms.values())
+                    combined.add(fieldTransform, conflictHandler);
+            }
+            return combined;
+        }
+
+        void add(@NonNull AccessTransformEntry entry, @Nullable Consumer<RuleConflict> conflictHandler) {
+            if(entry.isClassAt()) {
+                classTransform = merge(classTransform, entry, conflictHandler);
+            } else if(entry.isMethodAt()) {
+                String nameAndDesc = entry.getDescriptor();
+                AccessTransformEntry merged = merge(methodTransforms.get(nameAndDesc), entry, conflictHandler);
+                methodTransforms.put(nameAndDesc, merged);
+
+                int descStart = nameAndDesc.indexOf('(');
+                methodTransformsByName.computeIfAbsent(nameAndDesc.substring(0, descStart), k -> new HashMap<>(2))
+                        .put(nameAndDesc.substring(descStart), merged);
+            } else if(entry.isFieldAt()) {
+                fieldTransforms.put(entry.getDescriptor(),
+                        merge(fieldTransforms.get(entry.getDescriptor()), entry, conflictHandler));
+            }
+        }
+
+        @NonNull
+        private static AccessTransformEntry merge(@Nullable AccessTransformEntry existing, @NonNull AccessTransformEntry entry,
+                                                  @Nullable Consumer<RuleConflict> conflictHandler) {
+            /* Exact duplicates are common when loading many files */
+            if(existing == null || existing.equals(entry))
+                return existing != null ? existing : entry;
+
+            /* Pattern entry combined with a more specific one */
+            if(!existing.getClassName().equals(entry.getClassName()))
+                existing = existing.withClassName(entry.getClassName());
+
+            AccessTransformEntry merged = existing.merge(entry);
+            if(conflictHandler != null)
+                conflictHandler.accept(new RuleConflict(existing, entry, merged));
+            return merged;
+        }
+
+        /**
+         * Gets class access transform entry
+         *
+         * @return Class {@link AccessTransformEntry} or null
+         */
+        @Nullable
+        public AccessTransformEntry getClassTransform() {
+            return classTransform;
+        }
+
+        /**
+         * Gets method access transform entry
+         *
+         * @param methodNameAndDesc Method name and descriptor, a'la 'foo(I)V', or '*()' for wildcard entry
+         * @return Method {@link AccessTransformEntry} or null
+         */
+        @Nullable
+        public AccessTransformEntry getMethodTransform(@NonNull String methodNameAndDesc) {
+            return methodTransforms.get(methodNameAndDesc);
+        }
+
+        /**
+         * Gets method access transform entry
+         *
+         * @param methodName Method name, a'la 'foo', or '*' for wildcard entry
+         * @param methodDesc Method descriptor, a'la '(I)V', or '()' for wildcard entry
+         * @return Method {@link AccessTransformEntry} or null
+         */
+        @Nullable
+        public AccessTransformEntry getMethodTransform(@NonNull String methodName, @NonNull String methodDesc) {
+            Map<String, AccessTransformEntry> byDesc = methodTransformsByName.get(methodName);
+            return byDesc != null ? byDesc.get(methodDesc) : null;
+        }
+
+        /**
+         * Gets field access transform entry
+         *
+         * @param fieldName Field name, or '*' for wildcard entry
+         * @return Field {@link AccessTransformEntry} or null
+         */
+        @Nullable
+        public AccessTransformEntry getFieldTransform(@NonNull String fieldName) {
+            return fieldTransforms.get(fieldName);
+        }
+
+        /**
+         * Gets all method access transform entries
+         *
+         * @return Method {@link AccessTransformEntry} objects
+         */
+        @NonNull
+        public Collection<AccessTransformEntry> getMethodTransforms() {
+            return Collections.unmodifiableCollection(methodTransforms.values());
+        }
+
+        /**
+         * Gets all field access transform entries
+         *
+         * @return Field {@link AccessTransformEntry} objects
+         */
+        @NonNull
+        public Collection<AccessTransformEntry> getFieldTransforms() {
+            return Collections.unmodifiableCollection(fieldTransforms.values());
+        }
+    }
+}
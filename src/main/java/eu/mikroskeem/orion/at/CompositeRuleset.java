@@ -0,0 +1,353 @@
+package eu.mikroskeem.orion.at;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * {@link CompiledRuleset} layering several rulesets into one, so classes targeted by many of them are transformed
+ * in a single pass instead of once per ruleset.
+ *
+ * Layers are ordered by precedence, layers added later take precedence over earlier ones. Rules of all layers
+ * targeting the same class, method or field are merged same way as entries of a single ruleset, see
+ * {@link AccessTransformEntry#merge(AccessTransformEntry)}: widest access level wins, and modifiers of the layer
+ * with higher precedence win. Every layer keeps its own rules, see {@link #getProvenance(AccessTransformEntry)}
+ *
+ * @author Mark Vainomaa
+ */
+public final class CompositeRuleset extends CompiledRuleset {
+    private final List<Layer> layers;
+    private final PackagePatterns patterns;
+    private final Consumer<RuleConflict> conflictHandler;
+
+    /* Rules combined from several layers, only for classes having exact rules in at least two layers */
+    private final Map<String, ClassRules> combined = new ConcurrentHashMap<>();
+
+    /* Union of layer class names, built only when asked for */
+    private Collection<String> classNames;
+
+    private CompositeRuleset(@NonNull List<Layer> layers, @Nullable Consumer<RuleConflict> conflictHandler) {
+        this.layers = Collections.unmodifiableList(layers);
+        this.conflictHandler = conflictHandler;
+
+        Set<String> patternNames = new LinkedHashSet<>();
+        for (Layer layer : layers)
+            patternNames.addAll(layer.ruleset.getPatterns());
+
+        /* Kept only to expose combined pattern rules, layers match patterns themselves */
+        Map<String, ClassRules> patterns = new HashMap<>();
+        for (String pattern : patternNames) {
+            List<ClassRules> rules = new ArrayList<>(layers.size());
+            for (Layer layer : layers) {
+                ClassRules layerRules = layer.ruleset.getPatternRules(pattern);
+                if(layerRules != null)
+                    rules.add(layerRules);
+            }
+            patterns.put(pattern, rules.size() == 1 ? rules.get(0) : ClassRules.combine(rules, conflictHandler));
+        }
+        this.patterns = patterns.isEmpty() ? PackagePatterns.EMPTY : new PackagePatterns(patterns);
+    }
+
+    /**
+     * Creates new {@link Builder}
+     *
+     * @return Instance of {@link Builder}
+     */
+    @NonNull
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Nullable
+    @Override
+    public ClassRules getClassRules(@NonNull String className) {
+        ClassRules rules = combined.get(className);
+        if(rules != null)
+            return rules;
+
+        List<ClassRules> matched = new ArrayList<>(layers.size());
+        int exactMatches = 0;
+        for (Layer layer : layers) {
+            ClassRules layerRules = layer.ruleset.getClassRules(className);
+            if(layerRules != null) {
+                matched.add(layerRules);
+                if(layer.ruleset.hasExactRules(className))
+                    exactMatches++;
+            }
+        }
+
+        /* Rules of a single layer need no combining */
+        if(matched.size() < 2)
+            return matched.isEmpty() ? null : matched.get(0);
+
+        /* Cache is bounded by classes with exact rules, classes matched by patterns are combined on every call */
+        if(exactMatches < 2)
+            return ClassRules.combine(matched, conflictHandler);
+        return combined.computeIfAbsent(className, k -> ClassRules.combine(matched, conflictHandler));
+    }
+
+    @Nullable
+    @Override
+    public ClassRules getClassRulesByInternalName(@NonNull String internalName) {
+        ClassRules rules = null;
+        int matched = 0;
+        for (Layer layer : layers) {
+            ClassRules layerRules = layer.ruleset.getClassRulesByInternalName(internalName);
+            if(layerRules != null) {
+                rules = layerRules;
+                matched++;
+            }
+        }
+
+        /* Share combining and its cache with dotted name lookups */
+        if(matched < 2)
+            return rules;
+        return getClassRules(internalName.replace('/', '.'));
+    }
+
+    @Override
+    public boolean hasRules(@NonNull String className) {
+        for (Layer layer : layers) {
+            if(layer.ruleset.hasRules(className))
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean affectsClass(@NonNull String className) {
+        for (Layer layer : layers) {
+            if(layer.ruleset.affectsClass(className))
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean affectsInternalName(@NonNull String internalName) {
+        for (Layer layer : layers) {
+            if(layer.ruleset.affectsInternalName(internalName))
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    boolean hasExactRules(@NonNull String className) {
+        for (Layer layer : layers) {
+            if(layer.ruleset.hasExactRules(className))
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    boolean mayHaveRules(int classNameHash) {
+        for (Layer layer : layers) {
+            if(layer.ruleset.mayHaveRules(classNameHash))
+                return true;
+        }
+        return false;
+    }
+
+    @NonNull
+    @Override
+    public Collection<String> getClassNames() {
+        Collection<String> classNames = this.classNames;
+        if(classNames == null) {
+            Set<String> union = new LinkedHashSet<>();
+            for (Layer layer : layers)
+                union.addAll(layer.ruleset.getClassNames());
+            this.classNames = classNames = Collections.unmodifiableSet(union);
+        }
+        return classNames;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (Layer layer : layers) {
+            if(!layer.ruleset.isEmpty())
+                return false;
+        }
+        return true;
+    }
+
+    @NonNull
+    @Override
+    PackagePatterns getPackagePatterns() {
+        return patterns;
+    }
+
+    /**
+     * Gets layers of this ruleset, from lowest to highest precedence
+     *
+     * @return List of {@link Layer}s
+     */
+    @NonNull
+    public List<Layer> getLayers() {
+        return layers;
+    }
+
+    /**
+     * Gets layers having rules for given class, from lowest to highest precedence
+     *
+     * @param className Class name, a'la 'foo.bar.Baz'
+     * @return List of {@link Layer}s
+     */
+    @NonNull
+    public List<Layer> getLayers(@NonNull String className) {
+        List<Layer> matched = new ArrayList<>();
+        for (Layer layer : layers) {
+            if(layer.ruleset.hasRules(className))
+                matched.add(layer);
+        }
+        return matched;
+    }
+
+    /**
+     * Gets layers which contributed to given entry, from lowest to highest precedence. Entry is usually one
+     * reported by {@link TransformMetrics} or {@link TransformListener}, and may be merged from several layers
+     *
+     * @param entry {@link AccessTransformEntry} of this ruleset
+     * @return List of {@link Layer}s, empty if no layer targets the same class, method or field
+     */
+    @NonNull
+    public List<Layer> getProvenance(@NonNull AccessTransformEntry entry) {
+        String className = entry.getClassName();
+        boolean pattern = PackagePatterns.isPattern(className);
+
+        List<Layer> matched = new ArrayList<>();
+        for (Layer layer : layers) {
+            ClassRules rules = pattern ? layer.ruleset.getPatternRules(className) : layer.ruleset.getClassRules(className);
+            if(rules == null)
+                continue;
+
+            AccessTransformEntry layerEntry;
+            if(entry.isClassAt())
+                layerEntry = rules.getClassTransform();
+            else if(entry.isMethodAt())
+                layerEntry = rules.getMethodTransform(entry.getDescriptor());
+            else
+                layerEntry = rules.getFieldTransform(entry.getDescriptor());
+
+            if(layerEntry != null)
+                matched.add(layer);
+        }
+        return matched;
+    }
+
+    /**
+     * A named ruleset in {@link CompositeRuleset}
+     */
+    public static final class Layer {
+        private final String name;
+        private final CompiledRuleset ruleset;
+
+        private Layer(@NonNull String name, @NonNull CompiledRuleset ruleset) {
+            this.name = name;
+            this.ruleset = ruleset;
+        }
+
+        /**
+         * Gets layer name, a'la mod id
+         *
+         * @return Layer name
+         */
+        @NonNull
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Gets ruleset of this layer
+         *
+         * @return Instance of {@link CompiledRuleset}
+         */
+        @NonNull
+        public CompiledRuleset getRuleset() {
+            return ruleset;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * Builder for {@link CompositeRuleset}
+     */
+    public static final class Builder {
+        private final Map<String, Layer> layers = new LinkedHashMap<>();
+        private Consumer<RuleConflict> conflictHandler;
+
+        private Builder() {}
+
+        /**
+         * Adds a layer taking precedence over all layers added so far
+         *
+         * @param name Layer name, must be unique
+         * @param ruleset Layer {@link CompiledRuleset}
+         * @return This {@link Builder}
+         * @throws IllegalArgumentException if layer with given name is already added
+         */
+        @NonNull
+        public Builder addLayer(@NonNull String name, @NonNull CompiledRuleset ruleset) {
+            Objects.requireNonNull(name, "name must not be null");
+            Objects.requireNonNull(ruleset, "ruleset must not be null");
+            if(layers.containsKey(name))
+                throw new IllegalArgumentException("Layer '" + name + "' is already added");
+            layers.put(name, new Layer(name, ruleset));
+            return this;
+        }
+
+        /**
+         * Adds rules of given access transformer as a layer taking precedence over all layers added so far.
+         * Rules are snapshotted, so later changes to the access transformer are not reflected
+         *
+         * @param name Layer name, must be unique
+         * @param accessTransformer {@link AccessTransformer} to take rules from
+         * @return This {@link Builder}
+         * @throws IllegalArgumentException if layer with given name is already added
+         */
+        @NonNull
+        public Builder addLayer(@NonNull String name, @NonNull AccessTransformer accessTransformer) {
+            return addLayer(name, accessTransformer.getCompiledRuleset());
+        }
+
+        /**
+         * Sets handler for differing rules of several layers targeting the same class, method or field. Conflicts
+         * are reported when rules of a class are looked up the first time
+         *
+         * @param conflictHandler {@link RuleConflict} handler, or null
+         * @return This {@link Builder}
+         */
+        @NonNull
+        public Builder conflictHandler(@Nullable Consumer<RuleConflict> conflictHandler) {
+            this.conflictHandler = conflictHandler;
+            return this;
+        }
+
+        /**
+         * Builds {@link CompositeRuleset}. Builder can be reused afterwards
+         *
+         * @return Instance of {@link CompositeRuleset}
+         */
+        @NonNull
+        public CompositeRuleset build() {
+            return new CompositeRuleset(new ArrayList<>(layers.values()), conflictHandler);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package eu.mikroskeem.orion.at;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Minimal class file constant pool reader. Only entry offsets are computed upfront, strings are decoded on demand
+ *
+ * @author Mark Vainomaa
+ */
+final class ConstantPool {
+    private final static int CLASS_MAGIC = 0xCAFEBABE;
+
+    /* Constant pool tags, see JVMS 4.4 */
+    final static int UTF8 = 1;
+    final static int INTEGER = 3;
+    final static int FLOAT = 4;
+    final static int LONG = 5;
+    final static int DOUBLE = 6;
+    final static int CLASS = 7;
+    final static int STRING = 8;
+    final static int FIELD_REF = 9;
+    final static int METHOD_REF = 10;
+    final static int INTERFACE_METHOD_REF = 11;
+    final static int NAME_AND_TYPE = 12;
+    final static int METHOD_HANDLE = 15;
+    final static int METHOD_TYPE = 16;
+    final static int DYNAMIC = 17;
+    final static int INVOKE_DYNAMIC = 18;
+    final static int MODULE = 19;
+    final static int PACKAGE = 20;
+
+    private final byte[] classFile;
+    private final int[] offsets;
+    private final int end;
+    private char[] buf = new char[64];
+
+    private ConstantPool(@NonNull byte[] classFile, @NonNull int[] offsets, int end) {
+        this.classFile = classFile;
+        this.offsets = offsets;
+        this.end = end;
+    }
+
+    /**
+     * Reads constant pool of given class
+     *
+     * @param classFile Class bytes
+     * @return Instance of {@link ConstantPool}
+     * @throws IllegalArgumentException if given bytes do not describe a valid class file
+     */
+    @NonNull
+    static ConstantPool read(@NonNull byte[] classFile) {
+        try {
+            if(readInt(classFile, 0) != CLASS_MAGIC)
+                throw new IllegalArgumentException("Invalid class file magic");
+
+            int count = readUnsignedShort(classFile, 8);
+            int[] offsets = new int[count];
+            int offset = 10;
+            for(int i = 1; i < count; i++) {
+                offsets[i] = offset + 1;
+                switch(classFile[offset]) {
+                    case UTF8:
+                        offset += 3 + readUnsignedShort(classFile, offset + 1);
+                        break;
+                    case CLASS:
+                    case STRING:
+                    case METHOD_TYPE:
+                    case MODULE:
+                    case PACKAGE:
+                        offset += 3;
+                        break;
+                    case METHOD_HANDLE:
+                        offset += 4;
+                        break;
+                    case INTEGER:
+                    case FLOAT:
+                    case FIELD_REF:
+                    case METHOD_REF:
+                    case INTERFACE_METHOD_REF:
+                    case NAME_AND_TYPE:
+                    case DYNAMIC:
+                    case INVOKE_DYNAMIC:
+                        offset += 5;
+                        break;
+                    case LONG:
+                    case DOUBLE:
+                        offset += 9;
+                        i++;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Invalid constant pool tag " + classFile[offset] + " at " + offset);
+                }
+            }
+            return new ConstantPool(classFile, offsets, offset);
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated class file", e);
+        }
+    }
+
+    /**
+     * Gets constant pool entry count, including the unused 0th entry
+     *
+     * @return Constant pool entry count
+     */
+    int getCount() {
+        return offsets.length;
+    }
+
+    /**
+     * Gets offset of the first byte after constant pool, pointing to class access flags
+     *
+     * @return Offset of the first byte after constant pool
+     */
+    int getEnd() {
+        return end;
+    }
+
+    /**
+     * Gets tag of given constant pool entry
+     *
+     * @param index Constant pool index
+     * @return Entry tag, or 0 for unusable entries (index 0 and second halves of long/double entries)
+     */
+    int getTag(int index) {
+        int offset = offsets[index];
+        return offset != 0 ? classFile[offset - 1] : 0;
+    }
+
+    /**
+     * Decodes CONSTANT_Utf8 entry
+     *
+     * @param index Constant pool index
+     * @return Decoded string
+     */
+    @NonNull
+    String getUtf8(int index) {
+        return decode(offsets[index], false);
+    }
+
+    /**
+     * Decodes class name from CONSTANT_Class entry into binary class name, a'la 'foo/bar/Baz' -> 'foo.bar.Baz'
+     *
+     * @param index Constant pool index of CONSTANT_Class entry
+     * @return Decoded class name, or null if entry describes an array type
+     */
+    @Nullable
+    String getClassName(int index) {
+        int utf8Offset = offsets[readUnsignedShort(classFile, offsets[index])];
+
+        /* Array classes never have rules */
+        if(readUnsignedShort(classFile, utf8Offset) > 0 && classFile[utf8Offset + 2] == '[')
+            return null;
+
+        return decode(utf8Offset, true);
+    }
+
+    /**
+     * Decodes internal class name from CONSTANT_Class entry as-is, a'la 'foo/bar/Baz'
+     *
+     * @param index Constant pool index of CONSTANT_Class entry
+     * @return Decoded internal class name, or null if entry describes an array type
+     */
+    @Nullable
+    String getInternalName(int index) {
+        int utf8Offset = offsets[readUnsignedShort(classFile, offsets[index])];
+        if(readUnsignedShort(classFile, utf8Offset) > 0 && classFile[utf8Offset + 2] == '[')
+            return null;
+
+        return decode(utf8Offset, false);
+    }
+
+    /**
+     * Hashes class name of CONSTANT_Class entry without decoding it into a string. Hash equals
+     * {@link String#hashCode()} of the class name with '/' replaced by '.', a'la 'foo.bar.Baz'
+     *
+     * @param index Constant pool index of CONSTANT_Class entry
+     * @return Class name hash
+     */
+    int getClassNameHash(int index) {
+        int utf8Offset = offsets[readUnsignedShort(classFile, offsets[index])];
+        int offset = utf8Offset + 2;
+        int end = offset + readUnsignedShort(classFile, utf8Offset);
+
+        int hash = 0;
+        while(offset < end) {
+            int c = classFile[offset++];
+            if((c & 0x80) == 0) {
+                hash = 31 * hash + (c == '/' ? '.' : c);
+            } else if((c & 0xE0) == 0xC0) {
+                hash = 31 * hash + (((c & 0x1F) << 6) + (classFile[offset++] & 0x3F));
+            } else {
+                hash = 31 * hash + (((c & 0x0F) << 12) + ((classFile[offset++] & 0x3F) << 6)
+                        + (classFile[offset++] & 0x3F));
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Decodes modified UTF-8 string
+     */
+    @NonNull
+    private String decode(int utf8Offset, boolean dotted) {
+        int length = readUnsignedShort(classFile, utf8Offset);
+        int offset = utf8Offset + 2;
+        int end = offset + length;
+
+        char[] buf = this.buf;
+        if(buf.length < length)
+            this.buf = buf = new char[length];
+
+        int charCount = 0;
+        while(offset < end) {
+            int c = classFile[offset++];
+            if((c & 0x80) == 0) {
+                buf[charCount++] = dotted && c == '/' ? '.' : (char) c;
+            } else if((c & 0xE0) == 0xC0) {
+                buf[charCount++] = (char) (((c & 0x1F) << 6) + (classFile[offset++] & 0x3F));
+            } else {
+                buf[charCount++] = (char) (((c & 0x0F) << 12) + ((classFile[offset++] & 0x3F) << 6)
+                        + (classFile[offset++] & 0x3F));
+            }
+        }
+        return new String(buf, 0, charCount);
+    }
+
+    static int readUnsignedShort(byte[] b, int offset) {
+        return ((b[offset] & 0xFF) << 8) | (b[offset + 1] & 0xFF);
+    }
+
+    static int readInt(byte[] b, int offset) {
+        return ((b[offset] & 0xFF) << 24) | ((b[offset + 1] & 0xFF) << 16) | ((b[offset + 2] & 0xFF) << 8)
+                | (b[offset + 3] & 0xFF);
+    }
+
+    static void writeShort(byte[] b, int offset, int value) {
+        b[offset] = (byte) (value >>> 8);
+        b[offset + 1] = (byte) value;
+    }
+}
@@ -0,0 +1,242 @@
+package eu.mikroskeem.orion.at;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link TransformCache} storing transform results in a directory, so they survive JVM restarts.
+ *
+ * Entries are written into a temporary file first and atomically moved into place, so several JVMs may share the
+ * same directory. When total size of entries exceeds the limit, least recently used entries are evicted
+ * based on their modification time, which is updated on every hit
+ *
+ * @author Mark Vainomaa
+ */
+public final class DiskTransformCache implements TransformCache {
+    private final static int MAGIC = 0x4F415443; // 'OATC'
+    private final static int FORMAT_VERSION = 1;
+    private final static int HEADER_SIZE = 16;
+    private final static String ENTRY_SUFFIX = ".atc";
+    private final static String TEMP_SUFFIX = ".tmp";
+    private final static long STALE_TEMP_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final Path directory;
+    private final long maxBytes;
+    private final AtomicLong size = new AtomicLong();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    /**
+     * Constructs disk transform cache
+     *
+     * @param directory Cache directory, created if it does not exist
+     * @param maxBytes Limit for total size of cache entries
+     * @throws IOException if cache directory cannot be created or read
+     */
+    public DiskTransformCache(@NonNull Path directory, long maxBytes) throws IOException {
+        if(maxBytes <= 0)
+            throw new IllegalArgumentException("maxBytes must be positive");
+
+        this.directory = Files.createDirectories(Objects.requireNonNull(directory, "directory must not be null"));
+        this.maxBytes = maxBytes;
+        this.size.set(scan(new ArrayList<>()));
+    }
+
+    /**
+     * Gets cache directory
+     *
+     * @return Cache directory
+     */
+    @NonNull
+    public Path getDirectory() {
+        return directory;
+    }
+
+    @Nullable
+    @Override
+    public byte[] get(@NonNull Key key) {
+        Path path = resolve(key);
+        byte[] data;
+        try {
+            data = Files.readAllBytes(path);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            Logging.debug(DiskTransformCache.class, () -> "Failed to read cache entry " + path + ": " + e);
+            return null;
+        }
+
+        if(data.length < HEADER_SIZE || ConstantPool.readInt(data, 0) != MAGIC
+                || ConstantPool.readInt(data, 4) != FORMAT_VERSION
+                || ConstantPool.readInt(data, 8) != TransformCache.ENGINE_VERSION
+                || ConstantPool.readInt(data, 12) != data.length - HEADER_SIZE) {
+            Logging.debug(DiskTransformCache.class, () -> "Discarding corrupt or outdated cache entry " + path);
+            try {
+                if(Files.deleteIfExists(path))
+                    size.addAndGet(-data.length);
+            } catch (IOException ignored) {}
+            return null;
+        }
+
+        /* Mark entry as recently used */
+        try {
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ignored) {}
+
+        byte[] value = new byte[data.length - HEADER_SIZE];
+        System.arraycopy(data, HEADER_SIZE, value, 0, value.length);
+        return value;
+    }
+
+    @Override
+    public void put(@NonNull Key key, @NonNull byte[] value) {
+        Path path = resolve(key);
+        Path temp = null;
+        long replaced;
+        try {
+            Files.createDirectories(path.getParent());
+            temp = Files.createTempFile(path.getParent(), path.getFileName().toString(), TEMP_SUFFIX);
+
+            byte[] header = new byte[HEADER_SIZE];
+            writeInt(header, 0, MAGIC);
+            writeInt(header, 4, FORMAT_VERSION);
+            writeInt(header, 8, TransformCache.ENGINE_VERSION);
+            writeInt(header, 12, value.length);
+            try(OutputStream out = Files.newOutputStream(temp)) {
+                out.write(header);
+                out.write(value);
+            }
+
+            /* Other JVMs write identical contents for the same key, so replacing is harmless */
+            replaced = sizeOf(path);
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            temp = null;
+        } catch (AtomicMoveNotSupportedException e) {
+            Logging.debug(DiskTransformCache.class, () -> "Atomic moves are not supported in " + directory);
+            return;
+        } catch (IOException e) {
+            Logging.debug(DiskTransformCache.class, () -> "Failed to write cache entry " + path + ": " + e);
+            return;
+        } finally {
+            if(temp != null)
+                delete(temp);
+        }
+
+        /* Replaced entry is already accounted for */
+        if(size.addAndGet(HEADER_SIZE + value.length - replaced) > maxBytes)
+            evict();
+    }
+
+    private void evict() {
+        if(!evicting.compareAndSet(false, true))
+            return;
+
+        try {
+            /* Rescan to account for entries written and evicted by other JVMs */
+            List<Entry> entries = new ArrayList<>();
+            long total = scan(entries);
+            entries.sort((a, b) -> Long.compare(a.lastModified, b.lastModified));
+
+            long target = maxBytes - maxBytes / 10;
+            for (Entry entry : entries) {
+                if(total <= target)
+                    break;
+                delete(entry.path);
+                total -= entry.size;
+            }
+            size.set(total);
+        } catch (IOException e) {
+            Logging.debug(DiskTransformCache.class, () -> "Failed to evict cache entries: " + e);
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private long scan(@NonNull List<Entry> entries) throws IOException {
+        long total = 0;
+        long staleBefore = System.currentTimeMillis() - STALE_TEMP_MILLIS;
+        try(DirectoryStream<Path> buckets = Files.newDirectoryStream(directory, Files::isDirectory)) {
+            for (Path bucket : buckets) {
+                try(DirectoryStream<Path> files = Files.newDirectoryStream(bucket)) {
+                    for (Path file : files) {
+                        BasicFileAttributes attributes;
+                        try {
+                            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                        } catch (NoSuchFileException e) {
+                            continue;
+                        }
+
+                        String name = file.getFileName().toString();
+                        long lastModified = attributes.lastModifiedTime().toMillis();
+                        if(name.endsWith(ENTRY_SUFFIX)) {
+                            entries.add(new Entry(file, attributes.size(), lastModified));
+                            total += attributes.size();
+                        } else if(name.endsWith(TEMP_SUFFIX) && lastModified < staleBefore) {
+                            /* Left behind by a crashed JVM */
+                            delete(file);
+                        }
+                    }
+                } catch (NoSuchFileException ignored) {}
+            }
+        }
+        return total;
+    }
+
+    @NonNull
+    private Path resolve(@NonNull Key key) {
+        String hex = key.toHexString();
+        return directory.resolve(hex.substring(0, 2)).resolve(hex.substring(2) + ENTRY_SUFFIX);
+    }
+
+    private static long sizeOf(@NonNull Path path) throws IOException {
+        try {
+            return Files.size(path);
+        } catch (NoSuchFileException e) {
+            return 0;
+        }
+    }
+
+    private static void delete(@NonNull Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {}
+    }
+
+    private static void writeInt(@NonNull byte[] b, int offset, int value) {
+        b[offset] = (byte) (value >>> 24);
+        b[offset + 1] = (byte) (value >>> 16);
+        b[offset + 2] = (byte) (value >>> 8);
+        b[offset + 3] = (byte) value;
+    }
+
+    /**
+     * Cache entry found while scanning cache directory
+     */
+    private static class Entry {
+        private final Path path;
+        private final long size;
+        private final long lastModified;
+
+        private Entry(@NonNull Path path, long size, long lastModified) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package eu.mikroskeem.orion.at;
+
+import eu.mikroskeem.orion.at.TransformCache.Key;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Objects;
+
+/**
+ * Immutable access transformer snapshot. Safe to use from any number of threads without locking
+ *
+ * @author Mark Vainomaa
+ * @see AccessTransformer#freeze()
+ * @see ReloadableAccessTransformer
+ */
+public final class FrozenAccessTransformer {
+    /** Cached value for classes left unchanged, never a valid class file */
+    private final static byte[] UNCHANGED = new byte[0];
+
+    private final CompiledRuleset ruleset;
+    private final TransformMode transformMode;
+    private final TransformCache cache;
+    private final TransformHooks hooks;
+    private final MessageDigest keyDigest;
+
+    /**
+     * Constructs frozen access transformer
+     *
+     * @param ruleset {@link CompiledRuleset} to apply
+     * @param transformMode {@link TransformMode} used to write transformed classes
+     */
+    public FrozenAccessTransformer(@NonNull CompiledRuleset ruleset, @NonNull TransformMode transformMode) {
+        this(ruleset, transformMode, null);
+    }
+
+    /**
+     * Constructs frozen access transformer
+     *
+     * @param ruleset {@link CompiledRuleset} to apply
+     * @param transformMode {@link TransformMode} used to write transformed classes
+     * @param cache {@link TransformCache} to look transform results up from, or null
+     */
+    public FrozenAccessTransformer(@NonNull CompiledRuleset ruleset, @NonNull TransformMode transformMode,
+                                   @Nullable TransformCache cache) {
+        this(ruleset, transformMode, cache, TransformHooks.NONE);
+    }
+
+    FrozenAccessTransformer(@NonNull CompiledRuleset ruleset, @NonNull TransformMode transformMode,
+                            @Nullable TransformCache cache, @NonNull TransformHooks hooks) {
+        this.ruleset = Objects.requireNonNull(ruleset, "ruleset must not be null");
+        this.transformMode = Objects.requireNonNull(transformMode, "transformMode must not be null");
+        this.cache = cache;
+        this.hooks = hooks;
+        this.keyDigest = cache != null ? newKeyDigest(ruleset, transformMode) : null;
+    }
+
+    /**
+     * Returns copy of this access transformer using given cache
+     *
+     * @param cache {@link TransformCache} to look transform results up from, or null
+     * @return Instance of {@link FrozenAccessTransformer}
+     */
+    @NonNull
+    public FrozenAccessTransformer withCache(@Nullable TransformCache cache) {
+        return new FrozenAccessTransformer(ruleset, transformMode, cache, hooks);
+    }
+
+    /**
+     * Returns copy of this access transformer reporting to given metrics
+     *
+     * @param metrics {@link TransformMetrics} to report to, or {@link TransformMetrics#NOOP} to disable metrics
+     * @return Instance of {@link FrozenAccessTransformer}
+     */
+    @NonNull
+    public FrozenAccessTransformer withMetrics(@NonNull TransformMetrics metrics) {
+        return new FrozenAccessTransformer(ruleset, transformMode, cache, new TransformHooks(metrics, hooks.listener));
+    }
+
+    /**
+     * Returns copy of this access transformer emitting events to given listener
+     *
+     * @param listener {@link TransformListener} to emit events to, or {@link TransformListener#NOOP} to disable events
+     * @return Instance of {@link FrozenAccessTransformer}
+     */
+    @NonNull
+    public FrozenAccessTransformer withListener(@NonNull TransformListener listener) {
+        return new FrozenAccessTransformer(ruleset, transformMode, cache, new TransformHooks(hooks.metrics, listener));
+    }
+
+    /**
+     * Gets {@link CompiledRuleset} applied by this access transformer
+     *
+     * @return Instance of {@link CompiledRuleset}
+     */
+    @NonNull
+    public CompiledRuleset getRuleset() {
+        return ruleset;
+    }
+
+    /**
+     * Gets {@link TransformMode} used to write transformed classes
+     *
+     * @return Instance of {@link TransformMode}
+     */
+    @NonNull
+    public TransformMode getTransformMode() {
+        return transformMode;
+    }
+
+    /**
+     * Gets {@link TransformCache} used by this access transformer
+     *
+     * @return Instance of {@link TransformCache} or null
+     */
+    @Nullable
+    public TransformCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Gets {@link TransformMetrics} this access transformer reports to
+     *
+     * @return Instance of {@link TransformMetrics}
+     */
+    @NonNull
+    public TransformMetrics getMetrics() {
+        return hooks.metrics;
+    }
+
+    /**
+     * Gets {@link TransformListener} this access transformer emits events to
+     *
+     * @return Instance of {@link TransformListener}
+     */
+    @NonNull
+    public TransformListener getListener() {
+        return hooks.listener;
+    }
+
+    /**
+     * Transforms class according to entries in {@link FrozenAccessTransformer#getRuleset()}. If a {@link TransformCache}
+     * is set, classes which may be affected by the ruleset are looked up from it first
+     *
+     * @param source Class bytes
+     * @return Transformed class bytes, or {@code source} itself if class was left unchanged
+     */
+    public byte[] transformClass(byte[] source) {
+        boolean measure = hooks.hasMetrics;
+        long start = measure ? System.nanoTime() : 0;
+        if(!ClassPrefilter.mayBeAffected(source, ruleset)) {
+            if(measure)
+                hooks.metrics.classSkipped();
+            return source;
+        }
+
+        byte[] transformed = cache != null ? transformCached(source) : transform(source);
+        if(measure)
+            hooks.metrics.classTransformed(transformed != source, System.nanoTime() - start);
+        return transformed;
+    }
+
+    private byte[] transformCached(byte[] source) {
+        Key key = getCacheKey(source);
+        byte[] cached = cache.get(key);
+        if(cached != null)
+            return cached.length == 0 ? source : cached;
+
+        byte[] transformed = transform(source);
+        cache.put(key, transformed == source ? UNCHANGED : transformed);
+        return transformed;
+    }
+
+    /**
+     * Computes {@link TransformCache} key for given class
+     *
+     * @param source Class bytes
+     * @return Cache key
+     */
+    @NonNull
+    public Key getCacheKey(@NonNull byte[] source) {
+        MessageDigest digest = keyDigest != null ? cloneDigest(keyDigest) : null;
+        if(digest == null)
+            digest = newKeyDigest(ruleset, transformMode);
+        digest.update(source);
+        return new Key(digest.digest());
+    }
+
+    private byte[] transform(byte[] source) {
+        if(transformMode == TransformMode.PATCH_ACCESS_FLAGS) {
+            byte[] patched = AccessFlagPatcher.patch(source, ruleset, hooks);
+            if(patched != null)
+                return patched;
+        }
+
+        ClassReader classReader = new ClassReader(source);
+        ClassWriter classWriter = transformMode != TransformMode.REBUILD
+                ? new ClassWriter(classReader, 0) : new ClassWriter(0);
+        AccessTransformerVisitor at = new AccessTransformerVisitor(ruleset, classWriter, hooks);
+        classReader.accept(at, 0);
+        return at.isChanged() ? classWriter.toByteArray() : source;
+    }
+
+    @NonNull
+    private static MessageDigest newKeyDigest(@NonNull CompiledRuleset ruleset, @NonNull TransformMode transformMode) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+        digest.update(new byte[] {
+                (byte) (TransformCache.ENGINE_VERSION >>> 24), (byte) (TransformCache.ENGINE_VERSION >>> 16),
+                (byte) (TransformCache.ENGINE_VERSION >>> 8), (byte) TransformCache.ENGINE_VERSION
+        });
+        digest.update(ruleset.getFingerprint());
+        digest.update(transformMode.name().getBytes(StandardCharsets.UTF_8));
+        return digest;
+    }
+
+    /* Cloning skips hashing ruleset fingerprint for every class */
+    @Nullable
+    private static MessageDigest cloneDigest(@NonNull MessageDigest digest) {
+        try {
+            return (MessageDigest) digest.clone();
+        } catch (CloneNotSupportedException e) {
+            return null;
+        }
+    }
+}
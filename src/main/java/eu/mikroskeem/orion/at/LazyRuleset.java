@@ -0,0 +1,450 @@
+package eu.mikroskeem.orion.at;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+
+/**
+ * {@link CompiledRuleset} which parses access transformer lines only when rules of their target class are looked up.
+ * Loading merely scans each line for its class name, so lines targeting classes which never get loaded cost
+ * next to nothing.
+ *
+ * Malformed lines do not fail loading or transforming. They are skipped and collected, see {@link #getErrors()}
+ * and {@link #validate()}. Fingerprint is computed from raw lines, so it differs from fingerprint of
+ * an eagerly compiled ruleset with same rules.
+ *
+ * Lines targeting package patterns are few, and every class lookup needs them, so they are parsed while building
+ *
+ * @author Mark Vainomaa
+ */
+public final class LazyRuleset extends CompiledRuleset {
+    private final Map<String, List<RawLine>> lines;
+    private final Map<String, List<RawLine>> patternLines;
+    private final PackagePatterns patterns;
+    private final Map<String, String> classNamesByInternalName;
+    private final Set<String> enclosingClasses;
+    private final Set<String> affectedInternalNames;
+    private final Map<String, ClassRules> resolved = new ConcurrentHashMap<>();
+    private final Collection<ParseError> errors = new ConcurrentLinkedQueue<>();
+
+    private LazyRuleset(@NonNull Map<String, List<RawLine>> lines, @NonNull List<ParseError> loadErrors) {
+        this.errors.addAll(loadErrors);
+
+        Map<String, List<RawLine>> patternLines = new HashMap<>();
+        Map<String, ClassRules> patterns = new HashMap<>();
+        for (Map.Entry<String, List<RawLine>> entry : lines.entrySet()) {
+            if(PackagePatterns.isPattern(entry.getKey())) {
+                patternLines.put(entry.getKey(), entry.getValue());
+                patterns.put(entry.getKey(), resolve(entry.getValue()));
+            }
+        }
+        lines.keySet().removeAll(patternLines.keySet());
+        this.patternLines = Collections.unmodifiableMap(patternLines);
+        this.patterns = patterns.isEmpty() ? PackagePatterns.EMPTY : new PackagePatterns(patterns);
+
+        this.lines = Collections.unmodifiableMap(lines);
+        this.enclosingClasses = Collections.unmodifiableSet(getEnclosingClasses(lines.keySet()));
+
+        Map<String, String> classNamesByInternalName = new HashMap<>();
+        for (String className : lines.keySet())
+            classNamesByInternalName.put(className.replace('.', '/'), className);
+        this.classNamesByInternalName = Collections.unmodifiableMap(classNamesByInternalName);
+
+        Set<String> affectedInternalNames = new HashSet<>(classNamesByInternalName.keySet());
+        for (String className : enclosingClasses)
+            affectedInternalNames.add(className.replace('.', '/'));
+        this.affectedInternalNames = Collections.unmodifiableSet(affectedInternalNames);
+    }
+
+    /**
+     * Creates new {@link Builder}
+     *
+     * @return Instance of {@link Builder}
+     */
+    @NonNull
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Nullable
+    @Override
+    public ClassRules getClassRules(@NonNull String className) {
+        ClassRules rules = getExactRules(className);
+        return patterns.isEmpty() ? rules : patterns.getClassRules(className, '.', rules);
+    }
+
+    @Nullable
+    @Override
+    public ClassRules getClassRulesByInternalName(@NonNull String internalName) {
+        String className = classNamesByInternalName.get(internalName);
+        ClassRules rules = className != null ? getExactRules(className) : null;
+        return patterns.isEmpty() ? rules : patterns.getClassRules(internalName, '/', rules);
+    }
+
+    @Nullable
+    private ClassRules getExactRules(@NonNull String className) {
+        ClassRules rules = resolved.get(className);
+        if(rules == null) {
+            List<RawLine> classLines = lines.get(className);
+            if(classLines == null)
+                return null;
+            rules = resolved.computeIfAbsent(className, k -> resolve(classLines));
+        }
+        return rules;
+    }
+
+    @Override
+    public boolean hasRules(@NonNull String className) {
+        return lines.containsKey(className) || patterns.matches(className, '.');
+    }
+
+    @Override
+    public boolean affectsClass(@NonNull String className) {
+        return lines.containsKey(className) || enclosingClasses.contains(className)
+                || patterns.matches(className, '.');
+    }
+
+    @Override
+    public boolean affectsInternalName(@NonNull String internalName) {
+        return affectedInternalNames.contains(internalName) || patterns.matches(internalName, '/');
+    }
+
+    @NonNull
+    @Override
+    public Collection<String> getClassNames() {
+        return lines.keySet();
+    }
+
+    @Override
+    boolean hasExactRules(@NonNull String className) {
+        return lines.containsKey(className);
+    }
+
+    @NonNull
+    @Override
+    PackagePatterns getPackagePatterns() {
+        return patterns;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return lines.isEmpty() && patterns.isEmpty();
+    }
+
+    /**
+     * Gets errors found so far, while loading and while parsing lines of classes looked up so far
+     *
+     * @return Collection of {@link ParseError}s
+     */
+    @NonNull
+    public Collection<ParseError> getErrors() {
+        return Collections.unmodifiableCollection(errors);
+    }
+
+    /**
+     * Parses lines of all classes which have not been looked up yet, and returns all errors found
+     *
+     * @return Collection of {@link ParseError}s
+     */
+    @NonNull
+    public Collection<ParseError> validate() {
+        for (String className : lines.keySet())
+            getExactRules(className);
+        return getErrors();
+    }
+
+    /**
+     * Gets amount of classes whose lines have been parsed so far
+     *
+     * @return Amount of parsed classes
+     */
+    public int getResolvedClassCount() {
+        return resolved.size();
+    }
+
+    @NonNull
+    @Override
+    byte[] computeFingerprint() {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+
+        Map<String, List<RawLine>> allLines = new TreeMap<>(lines);
+        allLines.putAll(patternLines);
+        for (Map.Entry<String, List<RawLine>> entry : allLines.entrySet()) {
+            for (RawLine line : entry.getValue()) {
+                digest.update(line.line.trim().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '\n');
+            }
+        }
+        return digest.digest();
+    }
+
+    @NonNull
+    private ClassRules resolve(@NonNull List<RawLine> classLines) {
+        ClassRules rules = new ClassRules();
+        for (RawLine line : classLines) {
+            try {
+                AccessTransformEntry entry = AtLineParser.parse(line.line);
+                if(entry != null)
+                    rules.add(entry, null);
+            } catch (IllegalStateException e) {
+                ParseError error = new ParseError(line.source, line.lineNumber, line.line, e.getMessage());
+                Logging.debug(LazyRuleset.class, error::toString);
+                errors.add(error);
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * Line indexed by its target class
+     */
+    private static class RawLine {
+        private final String source;
+        private final int lineNumber;
+        private final String line;
+
+        private RawLine(@NonNull String source, int lineNumber, @NonNull String line) {
+            this.source = source;
+            this.lineNumber = lineNumber;
+            this.line = line;
+        }
+    }
+
+    /**
+     * Malformed access transformer line
+     */
+    public static final class ParseError {
+        private final String source;
+        private final int lineNumber;
+        private final String line;
+        private final String message;
+
+        private ParseError(@NonNull String source, int lineNumber, @NonNull String line, @NonNull String message) {
+            this.source = source;
+            this.lineNumber = lineNumber;
+            this.line = line;
+            this.message = message;
+        }
+
+        /**
+         * Gets source the line was loaded from, a file path or {@code <input>}
+         *
+         * @return Line source
+         */
+        @NonNull
+        public String getSource() {
+            return source;
+        }
+
+        /**
+         * Gets line number, starting from 1
+         *
+         * @return Line number
+         */
+        public int getLineNumber() {
+            return lineNumber;
+        }
+
+        /**
+         * Gets malformed line
+         *
+         * @return Malformed line
+         */
+        @NonNull
+        public String getLine() {
+            return line;
+        }
+
+        /**
+         * Gets error message
+         *
+         * @return Error message
+         */
+        @NonNull
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return source + ":" + lineNumber + ": " + message;
+        }
+    }
+
+    /**
+     * Builder for {@link LazyRuleset}
+     */
+    public static final class Builder {
+        private final static String UNKNOWN_SOURCE = "<input>";
+
+        private final Map<String, List<RawLine>> lines = new HashMap<>();
+        private final List<ParseError> errors = new ArrayList<>();
+
+        private Builder() {}
+
+        /**
+         * Loads access transformer lines from {@link BufferedReader} instance
+         *
+         * @param reader {@link BufferedReader} instance
+         * @return This {@link Builder}
+         * @throws IOException if {@link BufferedReader} throws {@link IOException}
+         */
+        @NonNull
+        public Builder loadAccessTransformers(@NonNull BufferedReader reader) throws IOException {
+            return load(UNKNOWN_SOURCE, reader);
+        }
+
+        /**
+         * Loads access transformer lines from {@link InputStream} instance. Stream is read as UTF-8 and closed
+         *
+         * @param inputStream {@link InputStream} instance
+         * @return This {@link Builder}
+         * @throws IOException if {@link InputStream} throws {@link IOException}, or it is not valid UTF-8
+         */
+        @NonNull
+        public Builder loadAccessTransformers(@NonNull InputStream inputStream) throws IOException {
+            try(ReadableByteChannel channel = Channels.newChannel(inputStream)) {
+                return loadAccessTransformers(channel);
+            }
+        }
+
+        /**
+         * Loads access transformer lines from {@link ReadableByteChannel} instance. Channel is read as UTF-8
+         * until its end, and is not closed
+         *
+         * @param channel {@link ReadableByteChannel} instance
+         * @return This {@link Builder}
+         * @throws IOException if {@link ReadableByteChannel} throws {@link IOException}, or it is not valid UTF-8
+         */
+        @NonNull
+        public Builder loadAccessTransformers(@NonNull ReadableByteChannel channel) throws IOException {
+            return load(UNKNOWN_SOURCE, AtFileReader.read(channel));
+        }
+
+        /**
+         * Loads access transformer lines from file
+         *
+         * @param file Access transformer file, read as UTF-8
+         * @return This {@link Builder}
+         * @throws IOException if reading file fails
+         */
+        @NonNull
+        public Builder loadAccessTransformers(@NonNull Path file) throws IOException {
+            return load(file.toString(), AtFileReader.read(file));
+        }
+
+        /**
+         * Loads access transformer lines from many files. Files are memory-mapped and read in parallel, and their
+         * lines are added in given order
+         *
+         * @param files Access transformer files, read as UTF-8
+         * @return This {@link Builder}
+         * @throws IOException if reading any of given files fails
+         */
+        @NonNull
+        public Builder loadAccessTransformers(@NonNull Collection<Path> files) throws IOException {
+            List<CharSequence> contents;
+            try {
+                contents = files.parallelStream().map(file -> {
+                    try {
+                        return AtFileReader.read(file);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }).collect(Collectors.toList());
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            int i = 0;
+            for (Path file : files)
+                load(file.toString(), contents.get(i++));
+            return this;
+        }
+
+        /**
+         * Loads access transformer line
+         *
+         * @param atLine Raw AT line
+         * @return This {@link Builder}
+         */
+        @NonNull
+        public Builder loadAccessTransformer(@NonNull String atLine) {
+            add(UNKNOWN_SOURCE, 1, Objects.requireNonNull(atLine, "atLine must not be null"));
+            return this;
+        }
+
+        /**
+         * Builds {@link LazyRuleset}. Builder can be reused afterwards
+         *
+         * @return Instance of {@link LazyRuleset}
+         */
+        @NonNull
+        public LazyRuleset build() {
+            Map<String, List<RawLine>> lines = new HashMap<>();
+            for (Map.Entry<String, List<RawLine>> entry : this.lines.entrySet())
+                lines.put(entry.getKey(), Collections.unmodifiableList(new ArrayList<>(entry.getValue())));
+            return new LazyRuleset(lines, errors);
+        }
+
+        @NonNull
+        private Builder load(@NonNull String source, @NonNull BufferedReader reader) throws IOException {
+            String line;
+            int lineNumber = 0;
+            while((line = reader.readLine()) != null)
+                add(source, ++lineNumber, line);
+            return this;
+        }
+
+        @NonNull
+        private Builder load(@NonNull String source, @NonNull CharSequence chars) {
+            AtFileReader.forEachLine(chars, (c, start, end, lineNumber) ->
+                    add(source, lineNumber, c.subSequence(start, end)));
+            return this;
+        }
+
+        /* Line is turned into a String only if it is kept */
+        private void add(@NonNull String source, int lineNumber, @NonNull CharSequence line) {
+            String className;
+            try {
+                className = AtLineParser.scanClassName(line);
+            } catch (IllegalStateException e) {
+                errors.add(new ParseError(source, lineNumber, line.toString(), e.getMessage()));
+                return;
+            }
+
+            if(className != null) {
+                lines.computeIfAbsent(className, k -> new ArrayList<>(1))
+                        .add(new RawLine(source, lineNumber, line.toString()));
+            }
+        }
+    }
+}
@@ -3,8 +3,6 @@ package eu.mikroskeem.orion.at;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Map;
-import java.util.WeakHashMap;
 import java.util.function.Supplier;
 
 /**
@@ -12,17 +10,16 @@ import java.util.function.Supplier;
  */
 final class Logging {
     private final static boolean hasLogger;
-    private final static Map<Class<?>, Object> loggers = new WeakHashMap<>();
-
-    static void trace(Class<?> clz, Supplier<String> message) {
-        if(!hasLogger) return;
-        Logger logger = (Logger) loggers.computeIfAbsent(clz, LoggerFactory::getLogger);
-        if(logger.isDebugEnabled()) logger.trace(message.get());
-    }
+    private final static ClassValue<Object> loggers = new ClassValue<Object>() {
+        @Override
+        protected Object computeValue(Class<?> type) {
+            return LoggerFactory.getLogger(type);
+        }
+    };
 
     static void debug(Class<?> clz, Supplier<String> message) {
         if(!hasLogger) return;
-        Logger logger = (Logger) loggers.computeIfAbsent(clz, LoggerFactory::getLogger);
+        Logger logger = (Logger) loggers.get(clz);
         if(logger.isDebugEnabled()) logger.debug(message.get());
     }
 
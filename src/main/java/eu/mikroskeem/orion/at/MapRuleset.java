@@ -0,0 +1,104 @@
+package eu.mikroskeem.orion.at;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@link CompiledRuleset} compiled from entries in memory
+ *
+ * @author Mark Vainomaa
+ */
+final class MapRuleset extends CompiledRuleset {
+    private final Map<String, ClassRules> classRules;
+    private final Map<String, ClassRules> classRulesByInternalName;
+    private final Set<String> enclosingClasses;
+    private final Set<String> affectedInternalNames;
+    private final PackagePatterns patterns;
+
+    MapRuleset(@NonNull Map<String, ClassRules> classRules) {
+        /* Package patterns go to their own trie */
+        Map<String, ClassRules> patterns = new HashMap<>();
+        for (Map.Entry<String, ClassRules> entry : classRules.entrySet()) {
+            if(PackagePatterns.isPattern(entry.getKey()))
+                patterns.put(entry.getKey(), entry.getValue());
+        }
+        if(!patterns.isEmpty()) {
+            classRules = new HashMap<>(classRules);
+            classRules.keySet().removeAll(patterns.keySet());
+        }
+        this.patterns = patterns.isEmpty() ? PackagePatterns.EMPTY : new PackagePatterns(patterns);
+
+        this.classRules = Collections.unmodifiableMap(classRules);
+        this.enclosingClasses = Collections.unmodifiableSet(getEnclosingClasses(classRules.keySet()));
+
+        /* Lets class loading hooks check JVM-supplied names without converting them */
+        Map<String, ClassRules> classRulesByInternalName = new HashMap<>();
+        for (Map.Entry<String, ClassRules> entry : classRules.entrySet())
+            classRulesByInternalName.put(entry.getKey().replace('.', '/'), entry.getValue());
+        this.classRulesByInternalName = Collections.unmodifiableMap(classRulesByInternalName);
+
+        Set<String> affectedInternalNames = new HashSet<>(classRulesByInternalName.keySet());
+        for (String className : enclosingClasses)
+            affectedInternalNames.add(className.replace('.', '/'));
+        this.affectedInternalNames = Collections.unmodifiableSet(affectedInternalNames);
+    }
+
+    @Nullable
+    @Override
+    public ClassRules getClassRules(@NonNull String className) {
+        ClassRules rules = classRules.get(className);
+        return patterns.isEmpty() ? rules : patterns.getClassRules(className, '.', rules);
+    }
+
+    @Nullable
+    @Override
+    public ClassRules getClassRulesByInternalName(@NonNull String internalName) {
+        ClassRules rules = classRulesByInternalName.get(internalName);
+        return patterns.isEmpty() ? rules : patterns.getClassRules(internalName, '/', rules);
+    }
+
+    @Override
+    public boolean hasRules(@NonNull String className) {
+        return classRules.containsKey(className) || patterns.matches(className, '.');
+    }
+
+    @Override
+    public boolean affectsClass(@NonNull String className) {
+        return classRules.containsKey(className) || enclosingClasses.contains(className)
+                || patterns.matches(className, '.');
+    }
+
+    @Override
+    public boolean affectsInternalName(@NonNull String internalName) {
+        return affectedInternalNames.contains(internalName) || patterns.matches(internalName, '/');
+    }
+
+    @NonNull
+    @Override
+    public Collection<String> getClassNames() {
+        return classRules.keySet();
+    }
+
+    @Override
+    boolean hasExactRules(@NonNull String className) {
+        return classRules.containsKey(className);
+    }
+
+    @NonNull
+    @Override
+    PackagePatterns getPackagePatterns() {
+        return patterns;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return classRules.isEmpty() && patterns.isEmpty();
+    }
+}
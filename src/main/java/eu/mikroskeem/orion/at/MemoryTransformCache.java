@@ -0,0 +1,223 @@
+package eu.mikroskeem.orion.at;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link TransformCache} keeping transform results in memory, bounded by their total size and evicting least
+ * recently used entries first. Misses can fall through to another cache, e.g. {@link DiskTransformCache}
+ *
+ * Entries are spread over up to 16 independently locked segments by their key, each holding an equal share of
+ * the size limit, so classes loaded in parallel rarely contend. Recency is tracked per segment, which makes
+ * eviction order approximate
+ *
+ * @author Mark Vainomaa
+ */
+public final class MemoryTransformCache implements TransformCache {
+    /** Approximate memory used by a single entry besides its value */
+    private final static int ENTRY_OVERHEAD = 128;
+    private final static int MAX_SEGMENTS = 16;
+    private final static long MIN_SEGMENT_BYTES = 64 * 1024;
+
+    private final TransformCache next;
+    private final Segment[] segments;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Constructs memory transform cache
+     *
+     * @param maxBytes Limit for total size of cache entries
+     */
+    public MemoryTransformCache(long maxBytes) {
+        this(maxBytes, null);
+    }
+
+    /**
+     * Constructs memory transform cache
+     *
+     * @param maxBytes Limit for total size of cache entries
+     * @param next {@link TransformCache} to consult on misses and to store results into, or null
+     */
+    public MemoryTransformCache(long maxBytes, @Nullable TransformCache next) {
+        if(maxBytes <= 0)
+            throw new IllegalArgumentException("maxBytes must be positive");
+
+        /* Small caches get less segments, so that entries still fit into them */
+        int segmentCount = 1;
+        while(segmentCount < MAX_SEGMENTS && maxBytes / (segmentCount * 2) >= MIN_SEGMENT_BYTES)
+            segmentCount *= 2;
+
+        this.next = next;
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++)
+            segments[i] = new Segment(maxBytes / segmentCount);
+    }
+
+    @Nullable
+    @Override
+    public byte[] get(@NonNull Key key) {
+        byte[] value = getSegment(key).get(key);
+        if(value != null) {
+            hits.increment();
+            return value.clone();
+        }
+
+        misses.increment();
+        if(next != null && (value = next.get(key)) != null) {
+            store(key, value.clone());
+            return value;
+        }
+        return null;
+    }
+
+    @Override
+    public void put(@NonNull Key key, @NonNull byte[] value) {
+        store(key, value.clone());
+        if(next != null)
+            next.put(key, value);
+    }
+
+    private void store(@NonNull Key key, @NonNull byte[] value) {
+        int evicted = getSegment(key).store(key, value);
+        if(evicted > 0)
+            evictions.add(evicted);
+    }
+
+    @NonNull
+    private Segment getSegment(@NonNull Key key) {
+        int hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (segments.length - 1)];
+    }
+
+    /**
+     * Removes all entries from this cache. Next cache is left untouched
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.entries.clear();
+                segment.size = 0;
+            }
+        }
+    }
+
+    /**
+     * Gets amount of lookups which found a result in this cache
+     *
+     * @return Hit count
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Gets amount of lookups which did not find a result in this cache, including ones answered by next cache
+     *
+     * @return Miss count
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Gets ratio of hits to all lookups
+     *
+     * @return Hit rate between 0 and 1, or 0 if there have been no lookups
+     */
+    public double getHitRate() {
+        long hits = getHitCount();
+        long total = hits + getMissCount();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Gets amount of entries evicted to stay within size limit
+     *
+     * @return Eviction count
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Gets amount of entries in this cache
+     *
+     * @return Entry count
+     */
+    public int getEntryCount() {
+        int count = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                count += segment.entries.size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Gets approximate memory used by entries in this cache
+     *
+     * @return Size in bytes
+     */
+    public long getSize() {
+        long size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "MemoryTransformCache{hits=" + getHitCount() + ", misses=" + getMissCount()
+                + ", evictions=" + getEvictionCount() + ", entries=" + getEntryCount() + ", size=" + getSize() + "}";
+    }
+
+    /**
+     * Least recently used entries of a single segment
+     */
+    private static final class Segment {
+        private final long maxBytes;
+        private final LinkedHashMap<Key, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private long size;
+
+        private Segment(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        @Nullable
+        private synchronized byte[] get(@NonNull Key key) {
+            return entries.get(key);
+        }
+
+        /* Returns amount of evicted entries */
+        private synchronized int store(@NonNull Key key, @NonNull byte[] value) {
+            long entrySize = ENTRY_OVERHEAD + value.length;
+            if(entrySize > maxBytes)
+                return 0;
+
+            byte[] previous = entries.put(key, value);
+            if(previous != null)
+                size -= ENTRY_OVERHEAD + previous.length;
+            size += entrySize;
+
+            int evicted = 0;
+            Iterator<byte[]> iterator = entries.values().iterator();
+            while(size > maxBytes && iterator.hasNext()) {
+                size -= ENTRY_OVERHEAD + iterator.next().length;
+                iterator.remove();
+                evicted++;
+            }
+            return evicted;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package eu.mikroskeem.orion.at;
+
+import eu.mikroskeem.orion.at.CompiledRuleset.ClassRules;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Rules targeting whole packages, matched through a trie of package name segments. Matching a class costs
+ * a lookup per package segment of its name, no matter how many patterns there are.
+ *
+ * <ul>
+ *     <li>{@code foo.bar.*} matches classes in package {@code foo.bar}</li>
+ *     <li>{@code foo.bar.**} matches classes in package {@code foo.bar} and all of its subpackages</li>
+ *     <li>{@code *} and {@code **} match classes in the default package, and all classes respectively</li>
+ * </ul>
+ *
+ * Nested classes belong to the package of their outer class
+ *
+ * @author Mark Vainomaa
+ */
+final class PackagePatterns {
+    /** Patterns without any rules */
+    final static PackagePatterns EMPTY = new PackagePatterns(Collections.emptyMap());
+
+    private final Map<String, ClassRules> patterns;
+    private final Node root = new Node();
+
+    /* Pattern rules combined with exact rules, by exact rules. ClassRules compare by identity, and there are
+       only as many of them as classes with exact rules */
+    private final Map<ClassRules, ClassRules> combined = new ConcurrentHashMap<>();
+
+    PackagePatterns(@NonNull Map<String, ClassRules> patterns) {
+        this.patterns = Collections.unmodifiableMap(patterns);
+        for (Map.Entry<String, ClassRules> entry : patterns.entrySet()) {
+            String pattern = entry.getKey();
+            boolean recursive = pattern.endsWith("**");
+            int packageEnd = pattern.length() - (recursive ? 3 : 2);
+
+            Node node = root;
+            for (int start = 0; start < packageEnd; ) {
+                int end = pattern.indexOf('.', start);
+                if(end == -1 || end > packageEnd)
+                    end = packageEnd;
+                node = node.getOrCreate(pattern.substring(start, end));
+                start = end + 1;
+            }
+
+            if(recursive)
+                node.recursive = entry.getValue();
+            else
+                node.direct = entry.getValue();
+        }
+    }
+
+    /**
+     * Returns whether given class name is a package pattern
+     *
+     * @param className Class name from access transformer entry
+     * @return Whether given class name is a package pattern
+     */
+    static boolean isPattern(@NonNull String className) {
+        return className.equals("*") || className.equals("**") || className.endsWith(".*") || className.endsWith(".**");
+    }
+
+    /**
+     * Returns whether there are no patterns
+     *
+     * @return Whether there are no patterns
+     */
+    boolean isEmpty() {
+        return patterns.isEmpty();
+    }
+
+    /**
+     * Gets patterns and their rules
+     *
+     * @return Map of patterns to their rules
+     */
+    @NonNull
+    Map<String, ClassRules> getPatterns() {
+        return patterns;
+    }
+
+    /**
+     * Returns whether any pattern matches given class
+     *
+     * @param name Class name
+     * @param separator Package separator used in given name, '.' or '/'
+     * @return Whether any pattern matches given class
+     */
+    boolean matches(@NonNull String name, char separator) {
+        Node node = root;
+        for (int start = 0; ; ) {
+            if(node.recursive != null)
+                return true;
+
+            int end = name.indexOf(separator, start);
+            if(end == -1)
+                return node.direct != null;
+
+            if((node = node.get(name, start, end)) == null)
+                return false;
+            start = end + 1;
+        }
+    }
+
+    /**
+     * Gets rules of matching patterns combined with exact rules of given class. Broader patterns are applied first,
+     * and exact rules last. Only results involving exact rules are cached, classes matched by patterns alone
+     * get their rules combined on every call, or the matching pattern's rules as-is
+     *
+     * @param name Class name
+     * @param separator Package separator used in given name, '.' or '/'
+     * @param exact Exact rules of given class, or null
+     * @return Combined rules, or {@code exact} if no patterns match
+     */
+    @Nullable
+    ClassRules getClassRules(@NonNull String name, char separator, @Nullable ClassRules exact) {
+        ClassRules rules = exact != null ? combined.get(exact) : null;
+        if(rules != null)
+            return rules;
+
+        List<ClassRules> matched = collect(name, separator);
+        if(matched.isEmpty())
+            return exact;
+        if(exact == null)
+            return matched.size() == 1 ? matched.get(0) : ClassRules.combine(matched);
+
+        matched.add(exact);
+        rules = ClassRules.combine(matched);
+        ClassRules existing = combined.putIfAbsent(exact, rules);
+        return existing != null ? existing : rules;
+    }
+
+    @NonNull
+    private List<ClassRules> collect(@NonNull String name, char separator) {
+        List<ClassRules> matched = new ArrayList<>(2);
+        Node node = root;
+        for (int start = 0; ; ) {
+            if(node.recursive != null)
+                matched.add(node.recursive);
+
+            int end = name.indexOf(separator, start);
+            if(end == -1) {
+                if(node.direct != null)
+                    matched.add(node.direct);
+                return matched;
+            }
+
+            if((node = node.get(name, start, end)) == null)
+                return matched;
+            start = end + 1;
+        }
+    }
+
+    /**
+     * Package trie node. Children are kept in an open addressing table keyed by segment hash, so they can be
+     * looked up by a range of characters without creating substrings
+     */
+    private static class Node {
+        private String[] keys = new String[0];
+        private Node[] children = new Node[0];
+        private int size;
+        private ClassRules direct;
+        private ClassRules recursive;
+
+        @Nullable
+        private Node get(@NonNull String name, int start, int end) {
+            if(size == 0)
+                return null;
+
+            int mask = keys.length - 1;
+            for (int slot = hash(name, start, end) & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+                String key = keys[slot];
+                if(key.length() == end - start && name.regionMatches(start, key, 0, key.length()))
+                    return children[slot];
+            }
+            return null;
+        }
+
+        @NonNull
+        private Node getOrCreate(@NonNull String segment) {
+            Node child = get(segment, 0, segment.length());
+            if(child == null) {
+                if((size + 1) * 2 > keys.length)
+                    grow();
+                put(segment, child = new Node());
+                size++;
+            }
+            return child;
+        }
+
+        private void grow() {
+            String[] oldKeys = keys;
+            Node[] oldChildren = children;
+            keys = new String[Math.max(4, oldKeys.length * 2)];
+            children = new Node[keys.length];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if(oldKeys[i] != null)
+                    put(oldKeys[i], oldChildren[i]);
+            }
+        }
+
+        private void put(@NonNull String segment, @NonNull Node child) {
+            int mask = keys.length - 1;
+            int slot = hash(segment, 0, segment.length()) & mask;
+            while(keys[slot] != null)
+                slot = (slot + 1) & mask;
+            keys[slot] = segment;
+            children[slot] = child;
+        }
+
+        private static int hash(@NonNull String name, int start, int end) {
+            int hash = 0;
+            for (int i = start; i < end; i++)
+                hash = 31 * hash + name.charAt(i);
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package eu.mikroskeem.orion.at;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Thread-safe access transformer, which allows replacing its {@link FrozenAccessTransformer} snapshot atomically
+ * at runtime. Transforms already in progress finish using the snapshot they started with
+ *
+ * @author Mark Vainomaa
+ */
+public final class ReloadableAccessTransformer {
+    private final AtomicReference<FrozenAccessTransformer> current;
+
+    /**
+     * Constructs reloadable access transformer
+     *
+     * @param initial Initial {@link FrozenAccessTransformer} snapshot
+     */
+    public ReloadableAccessTransformer(@NonNull FrozenAccessTransformer initial) {
+        this.current = new AtomicReference<>(Objects.requireNonNull(initial, "initial must not be null"));
+    }
+
+    /**
+     * Gets current {@link FrozenAccessTransformer} snapshot
+     *
+     * @return Current {@link FrozenAccessTransformer} snapshot
+     */
+    @NonNull
+    public FrozenAccessTransformer get() {
+        return current.get();
+    }
+
+    /**
+     * Replaces current {@link FrozenAccessTransformer} snapshot
+     *
+     * @param snapshot New {@link FrozenAccessTransformer} snapshot
+     * @return Previous {@link FrozenAccessTransformer} snapshot
+     */
+    @NonNull
+    public FrozenAccessTransformer reload(@NonNull FrozenAccessTransformer snapshot) {
+        return current.getAndSet(Objects.requireNonNull(snapshot, "snapshot must not be null"));
+    }
+
+    /**
+     * Transforms class according to current {@link FrozenAccessTransformer} snapshot
+     *
+     * @param source Class bytes
+     * @return Transformed class bytes, or {@code source} itself if class was left unchanged
+     * @see FrozenAccessTransformer#transformClass(byte[])
+     */
+    public byte[] transformClass(byte[] source) {
+        return current.get().transformClass(source);
+    }
+}
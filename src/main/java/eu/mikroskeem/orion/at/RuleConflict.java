@@ -0,0 +1,89 @@
+package eu.mikroskeem.orion.at;
+
+import eu.mikroskeem.orion.at.access.AccessModifier;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.util.Objects;
+
+/**
+ * Two different {@link AccessTransformEntry} objects targeting the same class, method or field, found while
+ * compiling a ruleset. Such entries are merged into one, see {@link AccessTransformEntry#merge(AccessTransformEntry)}
+ *
+ * @author Mark Vainomaa
+ * @see CompiledRuleset#compile(java.util.Collection, java.util.function.Consumer)
+ */
+public final class RuleConflict {
+    private final AccessTransformEntry existing;
+    private final AccessTransformEntry added;
+    private final AccessTransformEntry merged;
+
+    RuleConflict(@NonNull AccessTransformEntry existing, @NonNull AccessTransformEntry added,
+                 @NonNull AccessTransformEntry merged) {
+        this.existing = Objects.requireNonNull(existing, "existing must not be null");
+        this.added = Objects.requireNonNull(added, "added must not be null");
+        this.merged = Objects.requireNonNull(merged, "merged must not be null");
+    }
+
+    /**
+     * Gets entry compiled so far for the target
+     *
+     * @return Existing {@link AccessTransformEntry}
+     */
+    @NonNull
+    public AccessTransformEntry getExisting() {
+        return existing;
+    }
+
+    /**
+     * Gets entry which was added for the same target
+     *
+     * @return Added {@link AccessTransformEntry}
+     */
+    @NonNull
+    public AccessTransformEntry getAdded() {
+        return added;
+    }
+
+    /**
+     * Gets entry the conflicting entries were merged into
+     *
+     * @return Merged {@link AccessTransformEntry}
+     */
+    @NonNull
+    public AccessTransformEntry getMerged() {
+        return merged;
+    }
+
+    /**
+     * Gets conflict target, a'la 'foo.bar.Baz' or 'foo.bar.Baz a(I)V'
+     *
+     * @return Conflict target
+     */
+    @NonNull
+    public String getTarget() {
+        return merged.getDescriptor() != null ? merged.getClassName() + " " + merged.getDescriptor() : merged.getClassName();
+    }
+
+    /**
+     * Returns whether entries disagree on adding or removing a modifier. Only one of them is honored in that case,
+     * unlike differing access levels, where the widest one is used
+     *
+     * @return Whether entries have contradicting modifiers
+     */
+    public boolean isModifierConflict() {
+        for (AccessModifier.ModifierEntry existingModifier : existing.getAccessModifiers()) {
+            for (AccessModifier.ModifierEntry addedModifier : added.getAccessModifiers()) {
+                if(existingModifier.getAccessModifier() == addedModifier.getAccessModifier()
+                        && existingModifier.isRemove() != addedModifier.isRemove())
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "RuleConflict{target='" + getTarget() + "', existing=" + existing + ", added=" + added
+                + ", merged=" + merged + '}';
+    }
+}
@@ -0,0 +1,154 @@
+package eu.mikroskeem.orion.at;
+
+import eu.mikroskeem.orion.at.CompiledRuleset.ClassRules;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Classes whose effective rules differ between two rulesets. Classes not affected by the difference are
+ * transformed into same access flags by both rulesets, so their previous transform output can be reused.
+ *
+ * Rules are compared by their effect, so reordered, duplicate or merged entries do not count as changes
+ *
+ * @author Mark Vainomaa
+ */
+public final class RulesetDiff {
+    private final Set<String> changedClasses;
+    private final Set<String> enclosingClasses;
+    private final Set<String> changedPatterns;
+    private final PackagePatterns patternMatcher;
+
+    private RulesetDiff(@NonNull Set<String> changedClasses, @NonNull Set<String> changedPatterns) {
+        this.changedClasses = Collections.unmodifiableSet(changedClasses);
+        this.enclosingClasses = Collections.unmodifiableSet(CompiledRuleset.getEnclosingClasses(changedClasses));
+        this.changedPatterns = Collections.unmodifiableSet(changedPatterns);
+
+        /* Only used for matching, so rules of the patterns do not matter */
+        Map<String, ClassRules> patterns = new HashMap<>();
+        for (String pattern : changedPatterns)
+            patterns.put(pattern, new ClassRules());
+        this.patternMatcher = patterns.isEmpty() ? PackagePatterns.EMPTY : new PackagePatterns(patterns);
+    }
+
+    /**
+     * Computes difference between given rulesets
+     *
+     * @param previous Previous {@link CompiledRuleset}
+     * @param current Current {@link CompiledRuleset}
+     * @return Instance of {@link RulesetDiff}
+     */
+    @NonNull
+    public static RulesetDiff compute(@NonNull CompiledRuleset previous, @NonNull CompiledRuleset current) {
+        Objects.requireNonNull(previous, "previous must not be null");
+        Objects.requireNonNull(current, "current must not be null");
+
+        /* Patterns first, as classes they match have changed no matter what */
+        Set<String> changedPatterns = new HashSet<>();
+        for (String pattern : union(previous.getPatterns(), current.getPatterns())) {
+            if(!hasSameEffect(previous.getPatternRules(pattern), current.getPatternRules(pattern)))
+                changedPatterns.add(pattern);
+        }
+
+        Set<String> changedClasses = new HashSet<>();
+        for (String className : union(previous.getClassNames(), current.getClassNames())) {
+            if(!hasSameEffect(previous.getClassRules(className), current.getClassRules(className)))
+                changedClasses.add(className);
+        }
+        return new RulesetDiff(changedClasses, changedPatterns);
+    }
+
+    /**
+     * Returns whether transforming given class with current ruleset may give different result than transforming
+     * it with previous ruleset. Outer classes are affected by changes to their nested classes, as they carry
+     * InnerClasses entries of them
+     *
+     * @param className Class name, a'la 'foo.bar.Baz'
+     * @return Whether given class is affected by the difference
+     */
+    public boolean affectsClass(@NonNull String className) {
+        return changedClasses.contains(className) || enclosingClasses.contains(className)
+                || patternMatcher.matches(className, '.');
+    }
+
+    /**
+     * Gets classes having exact rules whose effect differs
+     *
+     * @return Class names, a'la 'foo.bar.Baz'
+     */
+    @NonNull
+    public Set<String> getChangedClasses() {
+        return changedClasses;
+    }
+
+    /**
+     * Gets package patterns whose effect differs
+     *
+     * @return Package patterns, a'la 'foo.bar.*' or 'foo.bar.**'
+     */
+    @NonNull
+    public Set<String> getChangedPatterns() {
+        return changedPatterns;
+    }
+
+    /**
+     * Returns whether rulesets have same effect on all classes
+     *
+     * @return Whether there is no difference
+     */
+    public boolean isEmpty() {
+        return changedClasses.isEmpty() && changedPatterns.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "RulesetDiff{changedClasses=" + changedClasses.size() + ", changedPatterns=" + changedPatterns + "}";
+    }
+
+    @NonNull
+    private static Set<String> union(@NonNull Collection<String> a, @NonNull Collection<String> b) {
+        Set<String> union = new HashSet<>(a);
+        union.addAll(b);
+        return union;
+    }
+
+    private static boolean hasSameEffect(@Nullable ClassRules a, @Nullable ClassRules b) {
+        if(a == b)
+            return true;
+        if(a == null || b == null)
+            return false;
+
+        return hasSameEffect(a.getClassTransform(), b.getClassTransform())
+                && hasSameEffect(a.getMethodTransforms(), b, true)
+                && hasSameEffect(b.getMethodTransforms(), a, true)
+                && hasSameEffect(a.getFieldTransforms(), b, false)
+                && hasSameEffect(b.getFieldTransforms(), a, false);
+    }
+
+    private static boolean hasSameEffect(@NonNull Collection<AccessTransformEntry> entries, @NonNull ClassRules other,
+                                         boolean methods) {
+        for (AccessTransformEntry entry : entries) {
+            AccessTransformEntry otherEntry = methods
+                    ? other.getMethodTransform(entry.getDescriptor())
+                    : other.getFieldTransform(entry.getDescriptor());
+            if(!hasSameEffect(entry, otherEntry))
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean hasSameEffect(@Nullable AccessTransformEntry a, @Nullable AccessTransformEntry b) {
+        if(a == b)
+            return true;
+        if(a == null || b == null)
+            return false;
+        return a.levelRank == b.levelRank && a.modifierMask == b.modifierMask && a.modifierBits == b.modifierBits;
+    }
+}
@@ -0,0 +1,284 @@
+package eu.mikroskeem.orion.at;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Validates a ruleset against a classpath without transforming anything. Only classes having rules are read,
+ * picked by their entry names, and only their headers and member tables are parsed, method bodies are skipped.
+ * Classes are scanned in parallel on a {@link ForkJoinPool}.
+ *
+ * Rules are matched the same way they are when transforming, so the report also tells how many access flags
+ * transforming would change. When a class is found several times on classpath, only the first copy in classpath
+ * order is scanned, as it is the one which gets loaded
+ *
+ * @author Mark Vainomaa
+ */
+public final class RulesetValidator {
+    private final CompiledRuleset ruleset;
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructs ruleset validator using common {@link ForkJoinPool}
+     *
+     * @param ruleset {@link CompiledRuleset} to validate
+     */
+    public RulesetValidator(@NonNull CompiledRuleset ruleset) {
+        this(ruleset, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs ruleset validator
+     *
+     * @param ruleset {@link CompiledRuleset} to validate
+     * @param pool {@link ForkJoinPool} to scan classes on
+     */
+    public RulesetValidator(@NonNull CompiledRuleset ruleset, @NonNull ForkJoinPool pool) {
+        this.ruleset = Objects.requireNonNull(ruleset, "ruleset must not be null");
+        this.pool = Objects.requireNonNull(pool, "pool must not be null");
+    }
+
+    /**
+     * Validates ruleset against given classpath
+     *
+     * @param classpath JAR files and class directories
+     * @return Instance of {@link ValidationReport}
+     * @throws IOException if reading classpath fails, or it contains malformed classes
+     */
+    @NonNull
+    public ValidationReport validate(@NonNull Collection<Path> classpath) throws IOException {
+        Scan scan = new Scan();
+        List<ZipFile> zipFiles = new ArrayList<>();
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (Path path : classpath) {
+                if(Files.isDirectory(path)) {
+                    collectDirectory(scan, path, tasks);
+                } else {
+                    ZipFile zipFile = new ZipFile(path.toFile());
+                    zipFiles.add(zipFile);
+                    collectZip(scan, path, zipFile, tasks);
+                }
+            }
+
+            for (Future<Void> future : pool.invokeAll(tasks))
+                future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Validation was interrupted");
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            if(e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IOException(e.getCause());
+        } finally {
+            for (ZipFile zipFile : zipFiles)
+                zipFile.close();
+        }
+        return scan.report();
+    }
+
+    private void collectDirectory(@NonNull Scan scan, @NonNull Path directory, @NonNull List<Callable<Void>> tasks)
+            throws IOException {
+        try(Stream<Path> files = Files.walk(directory)) {
+            files.forEach(file -> {
+                String internalName = getInternalName(directory.relativize(file).toString().replace(File.separatorChar, '/'));
+                if(internalName != null && Files.isRegularFile(file) && scan.seen.add(internalName)) {
+                    tasks.add(() -> {
+                        scan.scan(Files.readAllBytes(file), file.toString());
+                        return null;
+                    });
+                }
+            });
+        }
+    }
+
+    private void collectZip(@NonNull Scan scan, @NonNull Path path, @NonNull ZipFile zipFile,
+                            @NonNull List<Callable<Void>> tasks) {
+        Enumeration<? extends ZipEntry> entries = zipFile.entries();
+        while(entries.hasMoreElements()) {
+            ZipEntry entry = entries.nextElement();
+            String internalName = getInternalName(entry.getName());
+            if(internalName == null || entry.isDirectory() || !scan.seen.add(internalName))
+                continue;
+
+            tasks.add(() -> {
+                try(InputStream is = zipFile.getInputStream(entry)) {
+                    scan.scan(readAll(is, entry.getSize()), path + "!/" + entry.getName());
+                }
+                return null;
+            });
+        }
+    }
+
+    /* Gets internal name of class file having rules, without reading it */
+    @Nullable
+    private String getInternalName(@NonNull String fileName) {
+        if(!fileName.endsWith(".class"))
+            return null;
+        String internalName = fileName.substring(0, fileName.length() - 6);
+        return ruleset.hasRules(internalName.replace('/', '.')) ? internalName : null;
+    }
+
+    @NonNull
+    private static byte[] readAll(@NonNull InputStream is, long size) throws IOException {
+        byte[] buf = new byte[size > 0 && size < Integer.MAX_VALUE ? (int) size : 8192];
+        int length = 0;
+        int read;
+        while((read = is.read(buf, length, buf.length - length)) != -1) {
+            length += read;
+            if(length == buf.length) {
+                int next = is.read();
+                if(next == -1)
+                    break;
+                buf = Arrays.copyOf(buf, buf.length * 2);
+                buf[length++] = (byte) next;
+            }
+        }
+        return length == buf.length ? buf : Arrays.copyOf(buf, length);
+    }
+
+    /**
+     * State of a single validation run
+     */
+    private class Scan {
+        /* Filled while collecting tasks in classpath order */
+        private final Set<String> seen = new HashSet<>();
+        private final TransformStatistics statistics = new TransformStatistics();
+        private final AtomicInteger classesScanned = new AtomicInteger();
+        private final AtomicInteger membersChanged = new AtomicInteger();
+        private final Map<String, Map<String, List<String>>> methodsByClass = new ConcurrentHashMap<>();
+        private final Queue<ValidationReport.DeniedDowngrade> deniedDowngrades = new ConcurrentLinkedQueue<>();
+
+        private void scan(@NonNull byte[] classBytes, @NonNull String source) throws IOException {
+            try {
+                new ClassReader(classBytes).accept(new HeaderVisitor(this),
+                        ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+            } catch (RuntimeException e) {
+                throw new IOException("Failed to read class " + source, e);
+            }
+        }
+
+        @NonNull
+        private ValidationReport report() {
+            List<AccessTransformEntry> unmatched = statistics.getUnmatchedRules(ruleset);
+
+            Set<String> missingClasses = new TreeSet<>();
+            for (String className : ruleset.getClassNames()) {
+                if(!seen.contains(className.replace('.', '/')))
+                    missingClasses.add(className);
+            }
+
+            /* Unmatched method rules whose method exists under other descriptors */
+            List<ValidationReport.DescriptorMismatch> descriptorMismatches = new ArrayList<>();
+            for (AccessTransformEntry entry : unmatched) {
+                Map<String, List<String>> methods = entry.isMethodAt() ? methodsByClass.get(entry.getClassName()) : null;
+                if(methods == null)
+                    continue;
+
+                String descriptor = entry.getDescriptor();
+                List<String> found = methods.get(descriptor.substring(0, descriptor.indexOf('(')));
+                if(found != null)
+                    descriptorMismatches.add(new ValidationReport.DescriptorMismatch(entry, found));
+            }
+
+            return new ValidationReport(classesScanned.get(), membersChanged.get(), unmatched, missingClasses,
+                    descriptorMismatches, new ArrayList<>(deniedDowngrades));
+        }
+    }
+
+    /**
+     * Matches rules against class header and member tables
+     */
+    private class HeaderVisitor extends ClassVisitor implements TransformListener {
+        private final Scan scan;
+        private final TransformHooks hooks;
+        private final Map<String, List<String>> methods = new HashMap<>();
+        private CompiledRuleset.ClassRules classRules;
+        private String className;
+
+        private HeaderVisitor(@NonNull Scan scan) {
+            super(Opcodes.ASM5);
+            this.scan = scan;
+            this.hooks = new TransformHooks(scan.statistics, this);
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+            className = name;
+            classRules = ruleset.getClassRulesByInternalName(name);
+            if(classRules != null) {
+                scan.classesScanned.incrementAndGet();
+                check(access, AccessRewriter.rewriteClassAccess(classRules, access, hooks));
+            }
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+            if(classRules != null)
+                check(access, AccessRewriter.rewriteFieldAccess(classRules, access, name, hooks));
+            return null;
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+            if(classRules != null && !"<clinit>".equals(name)) {
+                check(access, AccessRewriter.rewriteMethodAccess(classRules, access, name, desc, hooks));
+                methods.computeIfAbsent(name, k -> new ArrayList<>(1)).add(desc);
+            }
+            return null;
+        }
+
+        @Override
+        public void visitEnd() {
+            if(classRules != null && !classRules.getMethodTransforms().isEmpty())
+                scan.methodsByClass.put(className.replace('/', '.'), methods);
+        }
+
+        @Override
+        public void downgradeDenied(@NonNull AccessTransformEntry entry, @Nullable String memberName,
+                                    @Nullable String memberDesc, int access) {
+            scan.deniedDowngrades.add(new ValidationReport.DeniedDowngrade(entry, className, memberName, memberDesc, access));
+        }
+
+        private void check(int access, int newAccess) {
+            if(access != newAccess)
+                scan.membersChanged.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package eu.mikroskeem.orion.at;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Objects;
+
+/**
+ * {@link TransformListener} logging events using SLF4J. Parsed rules are logged on trace level, failed classes
+ * on warn level and everything else on debug level. Requires SLF4J to be present at runtime
+ *
+ * @author Mark Vainomaa
+ */
+public final class Slf4jTransformListener implements TransformListener {
+    private final Logger logger;
+
+    /**
+     * Constructs SLF4J transform listener logging to {@link AccessTransformer}'s logger
+     */
+    public Slf4jTransformListener() {
+        this(LoggerFactory.getLogger(AccessTransformer.class));
+    }
+
+    /**
+     * Constructs SLF4J transform listener
+     *
+     * @param logger {@link Logger} to log to
+     */
+    public Slf4jTransformListener(@NonNull Logger logger) {
+        this.logger = Objects.requireNonNull(logger, "logger must not be null");
+    }
+
+    @Override
+    public void ruleParsed(@NonNull String line, @NonNull AccessTransformEntry entry) {
+        if(logger.isTraceEnabled()) {
+            String kind = entry.isClassAt() ? "class" : entry.isMethodAt() ? "method" : "field";
+            logger.trace("AT line '{}' resulted with {} AT", line.trim(), kind);
+        }
+    }
+
+    @Override
+    public void classProcessed(@NonNull String className, boolean changed) {
+        if(logger.isDebugEnabled())
+            logger.debug("Processed class '{}', changed: {}", className.replace('/', '.'), changed);
+    }
+
+    @Override
+    public void memberChanged(@NonNull String className, @Nullable String memberName, @Nullable String memberDesc,
+                              int oldAccess, int newAccess) {
+        if(logger.isDebugEnabled()) {
+            logger.debug("Processed {} '{}': {} -> {}", memberDesc != null ? "method" : memberName != null ? "field" : "class",
+                    describe(className, memberName, memberDesc), oldAccess, newAccess);
+        }
+    }
+
+    @Override
+    public void downgradeDenied(@NonNull AccessTransformEntry entry, @Nullable String memberName,
+                                @Nullable String memberDesc, int access) {
+        if(logger.isDebugEnabled()) {
+            logger.debug("Denying access level downgrade of '{}' to {}",
+                    describe(entry.getClassName(), memberName, memberDesc), entry.getAccessLevel().name());
+        }
+    }
+
+    @Override
+    public void classFailed(@Nullable String className, @NonNull RuntimeException cause) {
+        logger.warn("Failed to transform class '{}'", className != null ? className.replace('/', '.') : "<unknown>", cause);
+    }
+
+    @NonNull
+    private static String describe(@NonNull String className, @Nullable String memberName, @Nullable String memberDesc) {
+        String name = className.replace('/', '.');
+        if(memberName != null)
+            name += "/" + memberName + (memberDesc != null ? memberDesc : "");
+        return name;
+    }
+}
@@ -0,0 +1,101 @@
+package eu.mikroskeem.orion.at;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Cache of transformed class bytes, consulted by {@link FrozenAccessTransformer} for classes which may be affected
+ * by its ruleset. Implementations must be thread-safe
+ *
+ * @author Mark Vainomaa
+ * @see FrozenAccessTransformer#withCache(TransformCache)
+ */
+public interface TransformCache {
+    /**
+     * Version of transform output, hashed into every cache key. It is bumped whenever same class bytes and ruleset
+     * start being transformed differently, so results cached by older versions are not served
+     */
+    int ENGINE_VERSION = 2;
+
+    /**
+     * Gets cached transform result
+     *
+     * @param key Cache key
+     * @return Cached transform result, or null if there is none
+     */
+    @Nullable
+    byte[] get(@NonNull Key key);
+
+    /**
+     * Stores transform result. Failing to store the result must not throw
+     *
+     * @param key Cache key
+     * @param value Transform result. Empty array means that class was left unchanged
+     */
+    void put(@NonNull Key key, @NonNull byte[] value);
+
+    /**
+     * Content-addressed cache key, a SHA-256 hash of {@link #ENGINE_VERSION}, ruleset fingerprint,
+     * transform mode and input class bytes
+     */
+    final class Key {
+        private final static char[] HEX = "0123456789abcdef".toCharArray();
+        private final byte[] digest;
+        private final int hashCode;
+
+        /**
+         * Constructs cache key
+         *
+         * @param digest Key digest
+         */
+        public Key(@NonNull byte[] digest) {
+            this.digest = Objects.requireNonNull(digest, "digest must not be null").clone();
+            this.hashCode = Arrays.hashCode(this.digest);
+        }
+
+        /**
+         * Gets key digest
+         *
+         * @return Key digest
+         */
+        @NonNull
+        public byte[] getDigest() {
+            return digest.clone();
+        }
+
+        /**
+         * Gets key digest as lowercase hexadecimal string
+         *
+         * @return Key digest as hexadecimal string
+         */
+        @NonNull
+        public String toHexString() {
+            char[] chars = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                chars[i * 2] = HEX[(digest[i] >> 4) & 0xF];
+                chars[i * 2 + 1] = HEX[digest[i] & 0xF];
+            }
+            return new String(chars);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o) return true;
+            if(!(o instanceof Key)) return false;
+            return Arrays.equals(digest, ((Key) o).digest);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public String toString() {
+            return "Key{" + toHexString() + "}";
+        }
+    }
+}
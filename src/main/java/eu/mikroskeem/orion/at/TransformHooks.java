@@ -0,0 +1,36 @@
+package eu.mikroskeem.orion.at;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.util.Objects;
+
+/**
+ * {@link TransformMetrics} and {@link TransformListener} of a transformer, passed around as one
+ *
+ * @author Mark Vainomaa
+ */
+final class TransformHooks {
+    /** Hooks which ignore everything */
+    final static TransformHooks NONE = new TransformHooks(TransformMetrics.NOOP, TransformListener.NOOP);
+
+    final TransformMetrics metrics;
+    final TransformListener listener;
+    final boolean hasMetrics;
+    final boolean hasListener;
+
+    TransformHooks(@NonNull TransformMetrics metrics, @NonNull TransformListener listener) {
+        this.metrics = Objects.requireNonNull(metrics, "metrics must not be null");
+        this.listener = Objects.requireNonNull(listener, "listener must not be null");
+        this.hasMetrics = metrics != TransformMetrics.NOOP;
+        this.hasListener = listener != TransformListener.NOOP;
+    }
+
+    /**
+     * Returns whether these hooks ignore everything
+     *
+     * @return Whether these hooks ignore everything
+     */
+    boolean isEmpty() {
+        return !hasMetrics && !hasListener;
+    }
+}
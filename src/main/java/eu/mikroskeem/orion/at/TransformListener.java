@@ -0,0 +1,68 @@
+package eu.mikroskeem.orion.at;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Receives events about parsed rules and transformed classes, e.g. for logging or debugging purposes.
+ * Implementations must be thread-safe, and should override only the events they are interested in
+ *
+ * Transformers using {@link #NOOP} do not emit events at all
+ *
+ * @author Mark Vainomaa
+ * @see FrozenAccessTransformer#withListener(TransformListener)
+ * @see AccessTransformer#setTransformListener(TransformListener)
+ * @see Slf4jTransformListener
+ */
+public interface TransformListener {
+    /** Listener which ignores everything */
+    TransformListener NOOP = new TransformListener() {};
+
+    /**
+     * Called when an access transformer line was parsed
+     *
+     * @param line Raw AT line
+     * @param entry Parsed entry
+     */
+    default void ruleParsed(@NonNull String line, @NonNull AccessTransformEntry entry) {}
+
+    /**
+     * Called when a class went through the transformer. Classes skipped without parsing are not reported
+     *
+     * @param className Internal class name, a'la 'foo/bar/Baz'
+     * @param changed Whether class was changed
+     */
+    default void classProcessed(@NonNull String className, boolean changed) {}
+
+    /**
+     * Called when access flags of a class, an InnerClasses entry, a field or a method were changed
+     *
+     * @param className Internal class name, a'la 'foo/bar/Baz'. For InnerClasses entries, name of the inner class
+     * @param memberName Field or method name, or null if class access flags were changed
+     * @param memberDesc Method descriptor, or null if field or class access flags were changed
+     * @param oldAccess Original access flags
+     * @param newAccess New access flags
+     */
+    default void memberChanged(@NonNull String className, @Nullable String memberName, @Nullable String memberDesc,
+                               int oldAccess, int newAccess) {}
+
+    /**
+     * Called when a rule would have lowered access level of a class, a field or a method, and the access level
+     * was left as is
+     *
+     * @param entry Rule which was applied. If member had both exact and wildcard rule, the one with higher access level
+     * @param memberName Field or method name, or null if rule targets a class
+     * @param memberDesc Method descriptor, or null if rule targets a field or a class
+     * @param access Access flags of the member
+     */
+    default void downgradeDenied(@NonNull AccessTransformEntry entry, @Nullable String memberName,
+                                 @Nullable String memberDesc, int access) {}
+
+    /**
+     * Called when a class could not be transformed, e.g. because it is malformed, and was left unchanged
+     *
+     * @param className Internal class name, a'la 'foo/bar/Baz', or null if it is not known
+     * @param cause Failure cause
+     */
+    default void classFailed(@Nullable String className, @NonNull RuntimeException cause) {}
+}
@@ -0,0 +1,57 @@
+package eu.mikroskeem.orion.at;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+/**
+ * Receives metrics of classes going through {@link FrozenAccessTransformer}. Implementations must be thread-safe
+ * and cheap, as they are called from class loading paths
+ *
+ * Transformers using {@link #NOOP} skip collecting metrics altogether, including timing
+ *
+ * @author Mark Vainomaa
+ * @see FrozenAccessTransformer#withMetrics(TransformMetrics)
+ * @see TransformStatistics
+ */
+public interface TransformMetrics {
+    /** Metrics sink which ignores everything */
+    TransformMetrics NOOP = new TransformMetrics() {
+        @Override
+        public void classSkipped() {}
+
+        @Override
+        public void classTransformed(boolean changed, long nanos) {}
+
+        @Override
+        public void memberRewritten() {}
+
+        @Override
+        public void ruleMatched(@NonNull AccessTransformEntry entry) {}
+    };
+
+    /**
+     * Called when class was skipped without parsing, as no rules could affect it
+     */
+    void classSkipped();
+
+    /**
+     * Called when class was processed, either transformed or looked up from {@link TransformCache}
+     *
+     * @param changed Whether class bytes were changed
+     * @param nanos Time spent on processing class, in nanoseconds
+     */
+    void classTransformed(boolean changed, long nanos);
+
+    /**
+     * Called when access flags of a class, inner class entry, field or method were changed
+     */
+    void memberRewritten();
+
+    /**
+     * Called when a rule was applied on an existing class, field or method, whether it changed access flags or not.
+     * Rules are ones found in {@link CompiledRuleset}, wildcard rules are reported separately from exact rules.
+     * Not called for classes looked up from {@link TransformCache}
+     *
+     * @param entry Matched rule
+     */
+    void ruleMatched(@NonNull AccessTransformEntry entry);
+}
@@ -0,0 +1,26 @@
+package eu.mikroskeem.orion.at;
+
+/**
+ * Describes how transformed classes are written
+ *
+ * @author Mark Vainomaa
+ */
+public enum TransformMode {
+    /**
+     * Rebuilds class from scratch, including its constant pool and all method bodies
+     */
+    REBUILD,
+
+    /**
+     * Builds writer from the original class, sharing its constant pool. Method bodies which do not need
+     * rewriting are copied as-is without being re-serialized
+     */
+    SHARE_CONSTANT_POOL,
+
+    /**
+     * Patches access flags directly in a copy of the original class bytes, without going through ASM at all.
+     * Classes where a private method becomes non-private need their INVOKESPECIAL calls rewritten, and are
+     * written using {@link #SHARE_CONSTANT_POOL} instead
+     */
+    PATCH_ACCESS_FLAGS
+}
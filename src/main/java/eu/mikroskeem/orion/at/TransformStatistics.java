@@ -0,0 +1,189 @@
+package eu.mikroskeem.orion.at;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link TransformMetrics} implementation collecting counters, safe to update from many threads at once
+ *
+ * @author Mark Vainomaa
+ */
+public final class TransformStatistics implements TransformMetrics {
+    private final LongAdder classesSkipped = new LongAdder();
+    private final LongAdder classesProcessed = new LongAdder();
+    private final LongAdder classesModified = new LongAdder();
+    private final LongAdder nanosSpent = new LongAdder();
+    private final LongAdder membersRewritten = new LongAdder();
+    private final Map<AccessTransformEntry, LongAdder> ruleHits = new ConcurrentHashMap<>();
+
+    @Override
+    public void classSkipped() {
+        classesSkipped.increment();
+    }
+
+    @Override
+    public void classTransformed(boolean changed, long nanos) {
+        classesProcessed.increment();
+        if(changed)
+            classesModified.increment();
+        nanosSpent.add(nanos);
+    }
+
+    @Override
+    public void memberRewritten() {
+        membersRewritten.increment();
+    }
+
+    @Override
+    public void ruleMatched(@NonNull AccessTransformEntry entry) {
+        LongAdder hits = ruleHits.get(entry);
+        if(hits == null)
+            hits = ruleHits.computeIfAbsent(entry, k -> new LongAdder());
+        hits.increment();
+    }
+
+    /**
+     * Gets amount of classes seen, both skipped and processed ones
+     *
+     * @return Amount of classes seen
+     */
+    public long getClassesSeen() {
+        return classesSkipped.sum() + classesProcessed.sum();
+    }
+
+    /**
+     * Gets amount of classes skipped without parsing
+     *
+     * @return Amount of skipped classes
+     */
+    public long getClassesSkipped() {
+        return classesSkipped.sum();
+    }
+
+    /**
+     * Gets amount of classes which were processed
+     *
+     * @return Amount of processed classes
+     */
+    public long getClassesProcessed() {
+        return classesProcessed.sum();
+    }
+
+    /**
+     * Gets amount of classes which were changed
+     *
+     * @return Amount of changed classes
+     */
+    public long getClassesModified() {
+        return classesModified.sum();
+    }
+
+    /**
+     * Gets total time spent on processing classes
+     *
+     * @return Time spent, in nanoseconds
+     */
+    public long getNanosSpent() {
+        return nanosSpent.sum();
+    }
+
+    /**
+     * Gets amount of classes, inner class entries, fields and methods whose access flags were changed
+     *
+     * @return Amount of rewritten members
+     */
+    public long getMembersRewritten() {
+        return membersRewritten.sum();
+    }
+
+    /**
+     * Gets amount of times given rule was matched
+     *
+     * @param entry Rule from {@link CompiledRuleset}
+     * @return Amount of matches
+     */
+    public long getRuleHits(@NonNull AccessTransformEntry entry) {
+        LongAdder hits = ruleHits.get(entry);
+        return hits != null ? hits.sum() : 0;
+    }
+
+    /**
+     * Gets snapshot of all matched rules and their hit counts
+     *
+     * @return Map of rules to hit counts
+     */
+    @NonNull
+    public Map<AccessTransformEntry, Long> getRuleHits() {
+        Map<AccessTransformEntry, Long> snapshot = new HashMap<>();
+        for (Map.Entry<AccessTransformEntry, LongAdder> entry : ruleHits.entrySet())
+            snapshot.put(entry.getKey(), entry.getValue().sum());
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    /**
+     * Gets rules in given ruleset which have not matched anything so far
+     *
+     * @param ruleset {@link CompiledRuleset} the metrics were collected for
+     * @return List of unmatched rules
+     */
+    @NonNull
+    public List<AccessTransformEntry> getUnmatchedRules(@NonNull CompiledRuleset ruleset) {
+        List<AccessTransformEntry> unmatched = new ArrayList<>();
+        for (String className : ruleset.getClassNames())
+            addUnmatched(unmatched, className, ruleset.getClassRules(className));
+        for (String pattern : ruleset.getPatterns())
+            addUnmatched(unmatched, pattern, ruleset.getPatternRules(pattern));
+        return unmatched;
+    }
+
+    private void addUnmatched(@NonNull List<AccessTransformEntry> unmatched, @NonNull String className,
+                              CompiledRuleset.@Nullable ClassRules rules) {
+        if(rules == null)
+            return;
+
+        /* Rules of a class may include entries of matching package patterns, those are listed with their pattern */
+        if(rules.getClassTransform() != null)
+            addUnmatched(unmatched, className, rules.getClassTransform());
+        for (AccessTransformEntry entry : rules.getMethodTransforms())
+            addUnmatched(unmatched, className, entry);
+        for (AccessTransformEntry entry : rules.getFieldTransforms())
+            addUnmatched(unmatched, className, entry);
+    }
+
+    private void addUnmatched(@NonNull List<AccessTransformEntry> unmatched, @NonNull String className,
+                              @NonNull AccessTransformEntry entry) {
+        if(entry.getClassName().equals(className) && !ruleHits.containsKey(entry))
+            unmatched.add(entry);
+    }
+
+    /**
+     * Resets all counters
+     */
+    public void reset() {
+        classesSkipped.reset();
+        classesProcessed.reset();
+        classesModified.reset();
+        nanosSpent.reset();
+        membersRewritten.reset();
+        ruleHits.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "TransformStatistics{" +
+                "classesSeen=" + getClassesSeen() +
+                ", classesModified=" + getClassesModified() +
+                ", membersRewritten=" + getMembersRewritten() +
+                ", millisSpent=" + getNanosSpent() / 1000000 +
+                ", rulesMatched=" + ruleHits.size() +
+                '}';
+    }
+}
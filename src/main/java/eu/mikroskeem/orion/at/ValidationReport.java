@@ -0,0 +1,221 @@
+package eu.mikroskeem.orion.at;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Result of validating a ruleset against a classpath, see {@link RulesetValidator}
+ *
+ * @author Mark Vainomaa
+ */
+public final class ValidationReport {
+    private final int classesScanned;
+    private final int membersChanged;
+    private final List<AccessTransformEntry> unmatchedRules;
+    private final Set<String> missingClasses;
+    private final List<DescriptorMismatch> descriptorMismatches;
+    private final List<DeniedDowngrade> deniedDowngrades;
+
+    ValidationReport(int classesScanned, int membersChanged, @NonNull List<AccessTransformEntry> unmatchedRules,
+                     @NonNull Set<String> missingClasses, @NonNull List<DescriptorMismatch> descriptorMismatches,
+                     @NonNull List<DeniedDowngrade> deniedDowngrades) {
+        this.classesScanned = classesScanned;
+        this.membersChanged = membersChanged;
+        this.unmatchedRules = Collections.unmodifiableList(unmatchedRules);
+        this.missingClasses = Collections.unmodifiableSet(missingClasses);
+        this.descriptorMismatches = Collections.unmodifiableList(descriptorMismatches);
+        this.deniedDowngrades = Collections.unmodifiableList(deniedDowngrades);
+    }
+
+    /**
+     * Gets amount of classes having rules which were found on classpath
+     *
+     * @return Amount of scanned classes
+     */
+    public int getClassesScanned() {
+        return classesScanned;
+    }
+
+    /**
+     * Gets amount of classes, fields and methods whose access flags would be changed by transforming
+     *
+     * @return Amount of changed members
+     */
+    public int getMembersChanged() {
+        return membersChanged;
+    }
+
+    /**
+     * Gets rules which did not match any class, method or field on classpath
+     *
+     * @return List of unmatched rules
+     */
+    @NonNull
+    public List<AccessTransformEntry> getUnmatchedRules() {
+        return unmatchedRules;
+    }
+
+    /**
+     * Gets classes which have rules, but were not found on classpath
+     *
+     * @return Class names, a'la 'foo.bar.Baz'
+     */
+    @NonNull
+    public Set<String> getMissingClasses() {
+        return missingClasses;
+    }
+
+    /**
+     * Gets method rules whose method exists with other descriptors only
+     *
+     * @return List of {@link DescriptorMismatch}es
+     */
+    @NonNull
+    public List<DescriptorMismatch> getDescriptorMismatches() {
+        return descriptorMismatches;
+    }
+
+    /**
+     * Gets rules which would narrow access of their target, and are ignored when transforming
+     *
+     * @return List of {@link DeniedDowngrade}s
+     */
+    @NonNull
+    public List<DeniedDowngrade> getDeniedDowngrades() {
+        return deniedDowngrades;
+    }
+
+    /**
+     * Returns whether every rule matched something, and nothing would be downgraded
+     *
+     * @return Whether ruleset is valid for validated classpath
+     */
+    public boolean isValid() {
+        return unmatchedRules.isEmpty() && deniedDowngrades.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "ValidationReport{classesScanned=" + classesScanned + ", membersChanged=" + membersChanged
+                + ", unmatchedRules=" + unmatchedRules.size() + ", missingClasses=" + missingClasses.size()
+                + ", descriptorMismatches=" + descriptorMismatches.size()
+                + ", deniedDowngrades=" + deniedDowngrades.size() + "}";
+    }
+
+    /**
+     * Method rule whose method exists with other descriptors only, usually because of a typo or changed signature
+     */
+    public static final class DescriptorMismatch {
+        private final AccessTransformEntry entry;
+        private final List<String> foundDescriptors;
+
+        DescriptorMismatch(@NonNull AccessTransformEntry entry, @NonNull List<String> foundDescriptors) {
+            this.entry = entry;
+            this.foundDescriptors = Collections.unmodifiableList(foundDescriptors);
+        }
+
+        /**
+         * Gets mismatching rule
+         *
+         * @return Instance of {@link AccessTransformEntry}
+         */
+        @NonNull
+        public AccessTransformEntry getEntry() {
+            return entry;
+        }
+
+        /**
+         * Gets descriptors of methods with same name found in target class
+         *
+         * @return Method descriptors, a'la '(I)V'
+         */
+        @NonNull
+        public List<String> getFoundDescriptors() {
+            return foundDescriptors;
+        }
+
+        @Override
+        public String toString() {
+            return entry.getClassName() + " " + entry.getDescriptor() + ": found " + foundDescriptors;
+        }
+    }
+
+    /**
+     * Rule which would narrow access of its target, see {@link TransformListener#downgradeDenied}
+     */
+    public static final class DeniedDowngrade {
+        private final AccessTransformEntry entry;
+        private final String className;
+        private final String memberName;
+        private final String memberDesc;
+        private final int access;
+
+        DeniedDowngrade(@NonNull AccessTransformEntry entry, @NonNull String className, @Nullable String memberName,
+                        @Nullable String memberDesc, int access) {
+            this.entry = entry;
+            this.className = className;
+            this.memberName = memberName;
+            this.memberDesc = memberDesc;
+            this.access = access;
+        }
+
+        /**
+         * Gets rule which was denied
+         *
+         * @return Instance of {@link AccessTransformEntry}
+         */
+        @NonNull
+        public AccessTransformEntry getEntry() {
+            return entry;
+        }
+
+        /**
+         * Gets internal name of target class, a'la 'foo/bar/Baz'
+         *
+         * @return Class internal name
+         */
+        @NonNull
+        public String getClassName() {
+            return className;
+        }
+
+        /**
+         * Gets target member name
+         *
+         * @return Member name, or null if rule targets a class
+         */
+        @Nullable
+        public String getMemberName() {
+            return memberName;
+        }
+
+        /**
+         * Gets target method descriptor
+         *
+         * @return Method descriptor, or null if rule does not target a method
+         */
+        @Nullable
+        public String getMemberDesc() {
+            return memberDesc;
+        }
+
+        /**
+         * Gets current access flags of target
+         *
+         * @return Access flags
+         */
+        public int getAccess() {
+            return access;
+        }
+
+        @Override
+        public String toString() {
+            return className + (memberName != null ? " " + memberName + (memberDesc != null ? memberDesc : "") : "")
+                    + ": " + entry.getAccessLevel().getName() + " would narrow access " + access;
+        }
+    }
+}
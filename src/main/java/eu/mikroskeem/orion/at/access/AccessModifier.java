@@ -111,5 +111,26 @@ public enum AccessModifier {
         public AccessModifier getAccessModifier() {
             return accessModifier;
         }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (o == null || getClass() != o.getClass())
+                return false;
+
+            ModifierEntry that = (ModifierEntry) o;
+            return remove == that.remove && accessModifier == that.accessModifier;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * accessModifier.hashCode() + (remove ? 1 : 0);
+        }
+
+        @Override
+        public String toString() {
+            return (remove ? "-" : "+") + accessModifier.getName();
+        }
     }
 }
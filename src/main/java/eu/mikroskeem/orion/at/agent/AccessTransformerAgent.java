@@ -0,0 +1,100 @@
+package eu.mikroskeem.orion.at.agent;
+
+import eu.mikroskeem.orion.at.AccessTransformer;
+import eu.mikroskeem.orion.at.DiskTransformCache;
+import eu.mikroskeem.orion.at.ReloadableAccessTransformer;
+import eu.mikroskeem.orion.at.TransformMode;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.instrument.Instrumentation;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Java agent applying access transformers to classes being loaded.
+ *
+ * Agent arguments are a list of AT files separated by {@link File#pathSeparator}, optionally mixed with
+ * {@code mode=MODE} to select {@link TransformMode} and {@code cache=DIRECTORY} to enable {@link DiskTransformCache}:
+ *
+ * <pre>-javaagent:orion.at-VERSION-agent.jar=first_at.cfg:second_at.cfg:mode=PATCH_ACCESS_FLAGS</pre>
+ *
+ * The 'agent' jar bundles ASM relocated into its own package, so it needs nothing else on the class path. When
+ * attached at runtime, only classes loaded afterwards are transformed, as the JVM does not allow changing
+ * modifiers of already loaded classes
+ *
+ * @author Mark Vainomaa
+ */
+public final class AccessTransformerAgent {
+    private final static String MODE_OPTION = "mode=";
+    private final static String CACHE_OPTION = "cache=";
+    private final static long DEFAULT_CACHE_SIZE = 256L * 1024 * 1024;
+
+    private static volatile AccessTransformerClassFileTransformer classFileTransformer;
+
+    private AccessTransformerAgent() {}
+
+    /**
+     * Agent entry point used when agent is specified on the command line
+     *
+     * @param args Agent arguments
+     * @param instrumentation {@link Instrumentation} instance
+     * @throws IOException if reading AT files fails
+     */
+    public static void premain(String args, Instrumentation instrumentation) throws IOException {
+        install(args, instrumentation);
+    }
+
+    /**
+     * Agent entry point used when agent is attached to running JVM
+     *
+     * @param args Agent arguments
+     * @param instrumentation {@link Instrumentation} instance
+     * @throws IOException if reading AT files fails
+     */
+    public static void agentmain(String args, Instrumentation instrumentation) throws IOException {
+        install(args, instrumentation);
+    }
+
+    /**
+     * Gets {@link ReloadableAccessTransformer} used by installed agent, allowing to reload rules at runtime
+     *
+     * @return Instance of {@link ReloadableAccessTransformer}, or null if agent is not installed
+     */
+    @Nullable
+    public static ReloadableAccessTransformer getAccessTransformer() {
+        AccessTransformerClassFileTransformer classFileTransformer = AccessTransformerAgent.classFileTransformer;
+        return classFileTransformer != null ? classFileTransformer.getTransformer() : null;
+    }
+
+    private static synchronized void install(@Nullable String args, @NonNull Instrumentation instrumentation)
+            throws IOException {
+        if(classFileTransformer != null)
+            throw new IllegalStateException("Access transformer agent is already installed");
+
+        AccessTransformer at = new AccessTransformer();
+        if(args != null && !args.isEmpty()) {
+            for (String arg : args.split(File.pathSeparator)) {
+                if(arg.isEmpty())
+                    continue;
+
+                if(arg.startsWith(MODE_OPTION)) {
+                    at.setTransformMode(TransformMode.valueOf(arg.substring(MODE_OPTION.length())));
+                } else if(arg.startsWith(CACHE_OPTION)) {
+                    at.setTransformCache(new DiskTransformCache(Paths.get(arg.substring(CACHE_OPTION.length())),
+                            DEFAULT_CACHE_SIZE));
+                } else {
+                    try(InputStream in = Files.newInputStream(Paths.get(arg))) {
+                        at.loadAccessTransformers(in);
+                    }
+                }
+            }
+        }
+
+        classFileTransformer = new AccessTransformerClassFileTransformer(new ReloadableAccessTransformer(at.freeze()));
+        instrumentation.addTransformer(classFileTransformer);
+    }
+}
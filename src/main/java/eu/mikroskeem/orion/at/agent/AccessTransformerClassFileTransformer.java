@@ -0,0 +1,66 @@
+package eu.mikroskeem.orion.at.agent;
+
+import eu.mikroskeem.orion.at.FrozenAccessTransformer;
+import eu.mikroskeem.orion.at.ReloadableAccessTransformer;
+import eu.mikroskeem.orion.at.TransformListener;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.security.ProtectionDomain;
+import java.util.Objects;
+
+/**
+ * {@link ClassFileTransformer} applying access transformers to classes being loaded.
+ *
+ * Classes are rejected by their JVM-supplied internal name before any work is done, so classes without rules
+ * cost a single hash lookup. Null is returned for classes which were left unchanged, sparing the JVM
+ * from parsing them again. Classes failing to transform are left unchanged and reported to
+ * {@link TransformListener#classFailed(String, RuntimeException)} of the transformer
+ *
+ * @author Mark Vainomaa
+ */
+public final class AccessTransformerClassFileTransformer implements ClassFileTransformer {
+    private final ReloadableAccessTransformer transformer;
+
+    /**
+     * Constructs class file transformer
+     *
+     * @param transformer {@link ReloadableAccessTransformer} to transform classes with
+     */
+    public AccessTransformerClassFileTransformer(@NonNull ReloadableAccessTransformer transformer) {
+        this.transformer = Objects.requireNonNull(transformer, "transformer must not be null");
+    }
+
+    /**
+     * Gets {@link ReloadableAccessTransformer} used to transform classes
+     *
+     * @return Instance of {@link ReloadableAccessTransformer}
+     */
+    @NonNull
+    public ReloadableAccessTransformer getTransformer() {
+        return transformer;
+    }
+
+    @Nullable
+    @Override
+    public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined,
+                            ProtectionDomain protectionDomain, byte[] classfileBuffer) {
+        /* Retransformation must not change modifiers */
+        if(classBeingRedefined != null)
+            return null;
+
+        FrozenAccessTransformer at = transformer.get();
+        if(className != null && !at.getRuleset().affectsInternalName(className))
+            return null;
+
+        try {
+            byte[] transformed = at.transformClass(classfileBuffer);
+            return transformed != classfileBuffer ? transformed : null;
+        } catch (RuntimeException e) {
+            /* JVM silently ignores exceptions thrown by transformers */
+            at.getListener().classFailed(className, e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package eu.mikroskeem.orion.at.jar;
+
+import eu.mikroskeem.orion.at.AccessTransformer;
+import eu.mikroskeem.orion.at.CompiledRuleset;
+import eu.mikroskeem.orion.at.FrozenAccessTransformer;
+import eu.mikroskeem.orion.at.RulesetDiff;
+import eu.mikroskeem.orion.at.TransformMode;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Transforms whole JAR files. Class entries are transformed in parallel on a {@link ForkJoinPool}, while entry order,
+ * timestamps and non-class resources are kept as-is. Only a bounded amount of entries is held in memory at once.
+ *
+ * When transforming files, entries which are not affected by the ruleset are copied over without inflating
+ * and deflating them again
+ *
+ * @author Mark Vainomaa
+ */
+public final class JarTransformer {
+    /** Default limit for bytes of entries held in memory at once */
+    public final static long DEFAULT_MAX_PENDING_BYTES = 64L * 1024 * 1024;
+
+    private final FrozenAccessTransformer transformer;
+    private final ForkJoinPool pool;
+    private final long maxPendingBytes;
+
+    /**
+     * Constructs JAR transformer using common {@link ForkJoinPool}
+     *
+     * @param transformer {@link FrozenAccessTransformer} to transform classes with
+     */
+    public JarTransformer(@NonNull FrozenAccessTransformer transformer) {
+        this(transformer, ForkJoinPool.commonPool(), DEFAULT_MAX_PENDING_BYTES);
+    }
+
+    /**
+     * Constructs JAR transformer
+     *
+     * @param transformer {@link FrozenAccessTransformer} to transform classes with
+     * @param pool {@link ForkJoinPool} to transform classes on
+     * @param maxPendingBytes Limit for bytes of entries held in memory at once
+     */
+    public JarTransformer(@NonNull FrozenAccessTransformer transformer, @NonNull ForkJoinPool pool, long maxPendingBytes) {
+        if(maxPendingBytes <= 0)
+            throw new IllegalArgumentException("maxPendingBytes must be positive");
+
+        this.transformer = Objects.requireNonNull(transformer, "transformer must not be null");
+        this.pool = Objects.requireNonNull(pool, "pool must not be null");
+        this.maxPendingBytes = maxPendingBytes;
+    }
+
+    /**
+     * Transforms JAR file. Input file is memory-mapped, and entries which are not classes affected by the ruleset
+     * are copied over with their compressed bytes as-is. Zip64 and files larger than 2GB are streamed instead.
+     * Output is the same as of {@link #transform(InputStream, OutputStream)}
+     *
+     * @param input Input JAR file path
+     * @param output Output JAR file path
+     * @throws IOException if reading or writing JAR file fails
+     */
+    public void transform(@NonNull Path input, @NonNull Path output) throws IOException {
+        RawZipTransformer rawZipTransformer = RawZipTransformer.open(transformer, input);
+        if(rawZipTransformer != null) {
+            rawZipTransformer.transform(output, pool, maxPendingBytes);
+            return;
+        }
+
+        try(InputStream in = Files.newInputStream(input); OutputStream out = Files.newOutputStream(output)) {
+            transform(in, out);
+        }
+    }
+
+    /**
+     * Transforms JAR file incrementally, reusing output of a previous run for classes whose rules did not change
+     * since then, see {@link RulesetDiff}. Only classes affected by changed rules get inflated and transformed again.
+     *
+     * Entries of previous output are reused only if they were written from an identical input entry (same CRC
+     * and size) using the same {@link TransformMode}, other classes are transformed again.
+     * Falls back to {@link #transform(Path, Path)} when previous output does not exist, or either file cannot
+     * be memory-mapped
+     *
+     * @param input Input JAR file path
+     * @param output Output JAR file path, must differ from previous output path
+     * @param previousOutput Output JAR file path of the previous run
+     * @param previousRuleset {@link CompiledRuleset} used in the previous run
+     * @throws IOException if reading or writing JAR file fails
+     */
+    public void transform(@NonNull Path input, @NonNull Path output, @NonNull Path previousOutput,
+                          @NonNull CompiledRuleset previousRuleset) throws IOException {
+        if(!Files.exists(previousOutput)) {
+            transform(input, output);
+            return;
+        }
+        if(Files.exists(output) && Files.isSameFile(output, previousOutput))
+            throw new IllegalArgumentException("Output must not overwrite previous output");
+
+        RulesetDiff diff = RulesetDiff.compute(previousRuleset, transformer.getRuleset());
+        RawZipTransformer rawZipTransformer = RawZipTransformer.open(transformer, input);
+        RawZipTransformer previous = rawZipTransformer != null ? RawZipTransformer.open(transformer, previousOutput) : null;
+        if(previous == null) {
+            transform(input, output);
+            return;
+        }
+
+        rawZipTransformer.reuse(previous, diff);
+        rawZipTransformer.transform(output, pool, maxPendingBytes);
+    }
+
+    /**
+     * Transforms JAR file read from {@link InputStream} and writes it into {@link OutputStream}.
+     * Neither of the streams are closed
+     *
+     * @param input JAR file {@link InputStream}
+     * @param output JAR file {@link OutputStream}
+     * @throws IOException if reading or writing JAR file fails
+     */
+    public void transform(@NonNull InputStream input, @NonNull OutputStream output) throws IOException {
+        ZipInputStream zipInput = new ZipInputStream(input);
+        ZipOutputStream zipOutput = new ZipOutputStream(output);
+        Deque<PendingEntry> pending = new ArrayDeque<>();
+        long pendingBytes = 0;
+
+        ZipEntry entry;
+        while((entry = zipInput.getNextEntry()) != null) {
+            byte[] data = readEntry(zipInput, entry);
+            PendingEntry pendingEntry = new PendingEntry(entry, data.length);
+            if(isClass(entry)) {
+                pendingEntry.task = pool.submit(() -> transformer.transformClass(data));
+            } else {
+                pendingEntry.data = data;
+            }
+
+            pending.addLast(pendingEntry);
+            pendingBytes += data.length;
+
+            /* Bound memory usage by writing out oldest entries */
+            while(pendingBytes > maxPendingBytes && !pending.isEmpty())
+                pendingBytes -= writeEntry(zipOutput, pending.removeFirst());
+        }
+
+        while(!pending.isEmpty())
+            writeEntry(zipOutput, pending.removeFirst());
+
+        zipOutput.finish();
+    }
+
+    private long writeEntry(@NonNull ZipOutputStream zipOutput, @NonNull PendingEntry pendingEntry) throws IOException {
+        ZipEntry original = pendingEntry.entry;
+        byte[] data = pendingEntry.data;
+        if(pendingEntry.task != null) {
+            try {
+                data = pendingEntry.task.join();
+            } catch (RuntimeException e) {
+                throw new IOException("Failed to transform class '" + original.getName() + "'", e);
+            }
+        }
+
+        ZipEntry newEntry = new ZipEntry(original.getName());
+        newEntry.setTime(original.getTime());
+        if(original.getLastModifiedTime() != null)
+            newEntry.setLastModifiedTime(original.getLastModifiedTime());
+        if(original.getLastAccessTime() != null)
+            newEntry.setLastAccessTime(original.getLastAccessTime());
+        if(original.getCreationTime() != null)
+            newEntry.setCreationTime(original.getCreationTime());
+        newEntry.setComment(original.getComment());
+        newEntry.setExtra(original.getExtra());
+
+        /* Stored entries must have their size and CRC known upfront */
+        if(original.getMethod() == ZipEntry.STORED) {
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            newEntry.setMethod(ZipEntry.STORED);
+            newEntry.setSize(data.length);
+            newEntry.setCompressedSize(data.length);
+            newEntry.setCrc(crc.getValue());
+        }
+
+        zipOutput.putNextEntry(newEntry);
+        zipOutput.write(data);
+        zipOutput.closeEntry();
+        return pendingEntry.size;
+    }
+
+    @NonNull
+    private static byte[] readEntry(@NonNull ZipInputStream zipInput, @NonNull ZipEntry entry) throws IOException {
+        long size = entry.getSize();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(size > 0 && size < Integer.MAX_VALUE ? (int) size : 8192);
+        byte[] buf = new byte[8192];
+        int read;
+        while((read = zipInput.read(buf)) != -1)
+            baos.write(buf, 0, read);
+        return baos.toByteArray();
+    }
+
+    private static boolean isClass(@NonNull ZipEntry entry) {
+        return !entry.isDirectory() && entry.getName().endsWith(".class");
+    }
+
+    /**
+     * Entry waiting to be written out
+     */
+    private static class PendingEntry {
+        private final ZipEntry entry;
+        private final long size;
+        private byte[] data;
+        private ForkJoinTask<byte[]> task;
+
+        private PendingEntry(@NonNull ZipEntry entry, long size) {
+            this.entry = entry;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Command line entry point
+     *
+     * <pre>JarTransformer [--mode MODE] &lt;input jar&gt; &lt;output jar&gt; &lt;at file&gt;...</pre>
+     *
+     * Mode defaults to {@link TransformMode#REBUILD}
+     *
+     * @param args Command line arguments
+     * @throws IOException if reading AT files or transforming JAR file fails
+     */
+    public static void main(String[] args) throws IOException {
+        TransformMode transformMode = TransformMode.REBUILD;
+        List<String> arguments = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if("--mode".equals(args[i]) && i + 1 < args.length) {
+                transformMode = TransformMode.valueOf(args[++i]);
+            } else {
+                arguments.add(args[i]);
+            }
+        }
+
+        if(arguments.size() < 3) {
+            System.err.println("Usage: JarTransformer [--mode MODE] <input jar> <output jar> <at file>...");
+            System.exit(1);
+            return;
+        }
+
+        AccessTransformer at = new AccessTransformer();
+        at.setTransformMode(transformMode);
+        for (String atFile : arguments.subList(2, arguments.size())) {
+            try(InputStream in = Files.newInputStream(Paths.get(atFile))) {
+                at.loadAccessTransformers(in);
+            }
+        }
+
+        new JarTransformer(at.freeze()).transform(Paths.get(arguments.get(0)), Paths.get(arguments.get(1)));
+    }
+}
@@ -0,0 +1,565 @@
+package eu.mikroskeem.orion.at.jar;
+
+import eu.mikroskeem.orion.at.CompiledRuleset;
+import eu.mikroskeem.orion.at.FrozenAccessTransformer;
+import eu.mikroskeem.orion.at.RulesetDiff;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * Transforms memory-mapped zip files. Entries which do not need transforming are copied over with their
+ * compressed bytes and CRC as-is, only classes affected by the ruleset get inflated, transformed and deflated again.
+ *
+ * Classes are picked by their entry names, multi-release entries under 'META-INF/versions/N/' included. When
+ * the ruleset has rules for nested classes, any class may carry them in its InnerClasses attribute, so then all
+ * classes are inflated and left to {@link FrozenAccessTransformer#transformClass(byte[])} to decide
+ *
+ * Transformed entries record CRC and size of their input entry and the transform mode in a central directory
+ * extra field, so incremental transforms can tell whether an entry of previous output is still up to date
+ *
+ * @author Mark Vainomaa
+ */
+final class RawZipTransformer {
+    private final static int LOCAL_HEADER = 0x04034b50;
+    private final static int CENTRAL_HEADER = 0x02014b50;
+    private final static int END_HEADER = 0x06054b50;
+    private final static int DATA_DESCRIPTOR = 0x08074b50;
+
+    private final static int LOCAL_HEADER_SIZE = 30;
+    private final static int CENTRAL_HEADER_SIZE = 46;
+    private final static int END_HEADER_SIZE = 22;
+
+    private final static String VERSIONS_PREFIX = "META-INF/versions/";
+
+    private final static int FLAG_ENCRYPTED = 1;
+    private final static int FLAG_DATA_DESCRIPTOR = 1 << 3;
+    private final static int FLAG_UTF8 = 1 << 11;
+
+    /* Entry names without UTF-8 flag are in IBM code page 437, as per zip specification */
+    private final static Charset CP437 = Charset.forName("IBM437");
+
+    /* Central directory extra field of transformed entries: input CRC, input size and transform mode */
+    private final static int INPUT_RECORD_ID = 0x7441;
+    private final static int INPUT_RECORD_SIZE = 9;
+
+    private final FrozenAccessTransformer transformer;
+    private final MappedByteBuffer buffer;
+    private final int centralDirectoryOffset;
+    private final int centralDirectorySize;
+    private final int entryCount;
+    private final int endHeaderOffset;
+    private final boolean checkAllClasses;
+
+    /* Previous output and rules difference, when transforming incrementally */
+    private Map<String, PendingEntry> previousEntries;
+    private RulesetDiff diff;
+    private boolean diffAffectsAllClasses;
+
+    private RawZipTransformer(@NonNull FrozenAccessTransformer transformer, @NonNull MappedByteBuffer buffer,
+                              int centralDirectoryOffset, int centralDirectorySize, int entryCount, int endHeaderOffset) {
+        this.transformer = transformer;
+        this.buffer = buffer;
+        this.centralDirectoryOffset = centralDirectoryOffset;
+        this.centralDirectorySize = centralDirectorySize;
+        this.entryCount = entryCount;
+        this.endHeaderOffset = endHeaderOffset;
+
+        CompiledRuleset ruleset = transformer.getRuleset();
+        this.checkAllClasses = !ruleset.getPatterns().isEmpty() || hasNestedClasses(ruleset.getClassNames());
+    }
+
+    /**
+     * Maps given zip file into memory and reads its end of central directory record
+     *
+     * @param transformer {@link FrozenAccessTransformer} to transform classes with
+     * @param input Input zip file path
+     * @return Instance of {@link RawZipTransformer}, or null if zip file layout is not supported
+     *         (zip64, split archives, files larger than 2GB, or files with data prepended to them, such as
+     *         self-extracting archives)
+     * @throws IOException if mapping zip file fails
+     */
+    @Nullable
+    static RawZipTransformer open(@NonNull FrozenAccessTransformer transformer, @NonNull Path input) throws IOException {
+        MappedByteBuffer buffer;
+        try(FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+            if(channel.size() > Integer.MAX_VALUE)
+                return null;
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        /* Find end of central directory record, it may be followed by up to 64k of comment */
+        int endHeaderOffset = -1;
+        for(int i = buffer.limit() - END_HEADER_SIZE; i >= Math.max(0, buffer.limit() - END_HEADER_SIZE - 0xFFFF); i--) {
+            if(buffer.getInt(i) == END_HEADER) {
+                endHeaderOffset = i;
+                break;
+            }
+        }
+        if(endHeaderOffset == -1)
+            return null;
+
+        int diskNumber = u16(buffer, endHeaderOffset + 4);
+        int centralDirectoryDisk = u16(buffer, endHeaderOffset + 6);
+        int diskEntryCount = u16(buffer, endHeaderOffset + 8);
+        int entryCount = u16(buffer, endHeaderOffset + 10);
+        long centralDirectorySize = u32(buffer, endHeaderOffset + 12);
+        long centralDirectoryOffset = u32(buffer, endHeaderOffset + 16);
+
+        /* Zip64 and split archives are left to ZipInputStream */
+        if(diskNumber != 0 || centralDirectoryDisk != 0 || diskEntryCount != entryCount || entryCount == 0xFFFF
+                || centralDirectorySize == 0xFFFFFFFFL || centralDirectoryOffset == 0xFFFFFFFFL)
+            return null;
+
+        /* Offsets of files with prepended data are off by its length, unless they were adjusted */
+        if(centralDirectoryOffset + centralDirectorySize != endHeaderOffset
+                || !hasValidHeaders(buffer, (int) centralDirectoryOffset, endHeaderOffset, entryCount))
+            return null;
+
+        return new RawZipTransformer(transformer, buffer, (int) centralDirectoryOffset, (int) centralDirectorySize,
+                entryCount, endHeaderOffset);
+    }
+
+    /**
+     * Makes this transformer reuse entries of previous output for classes whose rules did not change
+     *
+     * @param previous Previous output, opened with {@link #open(FrozenAccessTransformer, Path)}
+     * @param diff Difference between rulesets used for previous output and this transformer
+     * @throws IOException if central directory of previous output is malformed
+     */
+    void reuse(@NonNull RawZipTransformer previous, @NonNull RulesetDiff diff) throws IOException {
+        Map<String, PendingEntry> previousEntries = new HashMap<>(previous.entryCount);
+        int offset = previous.centralDirectoryOffset;
+        for(int i = 0; i < previous.entryCount; i++) {
+            PendingEntry entry = previous.readCentralHeader(offset);
+            previousEntries.put(entry.getName(), entry);
+            offset += entry.centralHeaderLength;
+        }
+        this.previousEntries = previousEntries;
+        this.diff = diff;
+        this.diffAffectsAllClasses = !diff.getChangedPatterns().isEmpty() || hasNestedClasses(diff.getChangedClasses());
+    }
+
+    /**
+     * Transforms zip file into given output path
+     *
+     * @param output Output zip file path
+     * @param pool {@link ForkJoinPool} to transform classes on
+     * @param maxPendingBytes Limit for uncompressed bytes of classes being transformed at once
+     * @throws IOException if zip file is malformed or writing fails
+     */
+    void transform(@NonNull Path output, @NonNull ForkJoinPool pool, long maxPendingBytes) throws IOException {
+        try(FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteArrayOutputStream centralDirectory = new ByteArrayOutputStream(centralDirectorySize);
+            Deque<PendingEntry> pending = new ArrayDeque<>();
+            long pendingBytes = 0;
+
+            int offset = centralDirectoryOffset;
+            for(int i = 0; i < entryCount; i++) {
+                PendingEntry entry = readCentralHeader(offset);
+                offset += entry.centralHeaderLength;
+
+                if(needsTransform(entry)) {
+                    /* Previous output of classes whose rules did not change is copied over as-is */
+                    PendingEntry previous = getReusableEntry(entry);
+                    if(previous != null) {
+                        entry = previous;
+                    } else {
+                        PendingEntry transformed = entry;
+                        entry.task = pool.submit(() -> transformEntry(transformed));
+                        pendingBytes += entry.getSize();
+                    }
+                }
+                pending.addLast(entry);
+
+                /* Bound memory usage by writing out oldest entries */
+                while(pendingBytes > maxPendingBytes && !pending.isEmpty()) {
+                    PendingEntry written = pending.removeFirst();
+                    written.writeTo(out, centralDirectory);
+                    if(written.task != null)
+                        pendingBytes -= written.getSize();
+                }
+            }
+
+            while(!pending.isEmpty())
+                pending.removeFirst().writeTo(out, centralDirectory);
+
+            /* Write central directory and end of central directory record */
+            long newCentralDirectoryOffset = out.position();
+            if(newCentralDirectoryOffset > 0xFFFFFFFFL)
+                throw new IOException("Output zip file is too large");
+            write(out, ByteBuffer.wrap(centralDirectory.toByteArray()));
+
+            ByteBuffer endHeader = slice(endHeaderOffset, buffer.limit());
+            ByteBuffer newEndHeader = ByteBuffer.allocate(endHeader.remaining()).order(ByteOrder.LITTLE_ENDIAN);
+            newEndHeader.put(endHeader);
+            newEndHeader.putInt(12, centralDirectory.size());
+            newEndHeader.putInt(16, (int) newCentralDirectoryOffset);
+            newEndHeader.flip();
+            write(out, newEndHeader);
+        }
+    }
+
+    /* Checks that central directory headers and local headers they point to are where they should be */
+    private static boolean hasValidHeaders(@NonNull ByteBuffer buffer, int centralDirectoryOffset,
+                                           int centralDirectoryEnd, int entryCount) {
+        int offset = centralDirectoryOffset;
+        for(int i = 0; i < entryCount; i++) {
+            if(offset + CENTRAL_HEADER_SIZE > centralDirectoryEnd || buffer.getInt(offset) != CENTRAL_HEADER)
+                return false;
+
+            long localHeader = u32(buffer, offset + 42);
+            if(localHeader + LOCAL_HEADER_SIZE > centralDirectoryOffset
+                    || buffer.getInt((int) localHeader) != LOCAL_HEADER)
+                return false;
+            offset += CENTRAL_HEADER_SIZE + u16(buffer, offset + 28) + u16(buffer, offset + 30) + u16(buffer, offset + 32);
+        }
+        return offset == centralDirectoryEnd;
+    }
+
+    @NonNull
+    private PendingEntry readCentralHeader(int offset) throws IOException {
+        if(buffer.getInt(offset) != CENTRAL_HEADER)
+            throw new IOException("Invalid central directory header at " + offset);
+
+        int headerLength = CENTRAL_HEADER_SIZE + u16(buffer, offset + 28) + u16(buffer, offset + 30)
+                + u16(buffer, offset + 32);
+        return new PendingEntry(offset, headerLength);
+    }
+
+    @Nullable
+    private PendingEntry getReusableEntry(@NonNull PendingEntry entry) {
+        if(diff == null || diffAffectsAllClasses)
+            return null;
+
+        String name = entry.getName();
+        String className = getClassName(name);
+        if(className == null || diff.affectsClass(className))
+            return null;
+
+        /* Previous entry must have been written from the same input entry, using the same transform mode */
+        PendingEntry previous = previousEntries.get(name);
+        if(previous == null)
+            return null;
+        int inputRecord = previous.getInputRecordOffset();
+        if(inputRecord == -1)
+            return previous.getCrc() == entry.getCrc() && previous.getSize() == entry.getSize() ? previous : null;
+
+        ByteBuffer previousBuffer = previous.getBuffer();
+        if(u32(previousBuffer, inputRecord) != entry.getCrc() || u32(previousBuffer, inputRecord + 4) != entry.getSize()
+                || previousBuffer.get(inputRecord + 8) != transformer.getTransformMode().ordinal())
+            return null;
+        return previous;
+    }
+
+    private boolean needsTransform(@NonNull PendingEntry entry) {
+        int header = entry.centralHeaderOffset;
+        int method = u16(buffer, header + 10);
+        if((u16(buffer, header + 8) & FLAG_ENCRYPTED) != 0 || (method != ZipEntry.STORED && method != ZipEntry.DEFLATED))
+            return false;
+
+        String className = getClassName(entry.getName());
+        if(className == null)
+            return false;
+        return checkAllClasses || transformer.getRuleset().affectsClass(className);
+    }
+
+    /* Gets class name of class entry, a'la 'foo.bar.Baz' */
+    @Nullable
+    private static String getClassName(@NonNull String entryName) {
+        if(!entryName.endsWith(".class"))
+            return null;
+
+        int start = 0;
+        if(entryName.startsWith(VERSIONS_PREFIX)) {
+            start = entryName.indexOf('/', VERSIONS_PREFIX.length()) + 1;
+            if(start == 0)
+                return null;
+        }
+        return entryName.substring(start, entryName.length() - 6).replace('/', '.');
+    }
+
+    /* Rules of nested classes can affect any class referring to them in its InnerClasses attribute */
+    private static boolean hasNestedClasses(@NonNull Collection<String> classNames) {
+        for (String className : classNames) {
+            if(className.indexOf('$') != -1)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Inflates, transforms and deflates given entry. Runs on {@link ForkJoinPool}
+     */
+    @Nullable
+    private TransformedEntry transformEntry(@NonNull PendingEntry entry) throws IOException, DataFormatException {
+        int header = entry.centralHeaderOffset;
+        int method = u16(buffer, header + 10);
+        int size = (int) u32(buffer, header + 24);
+        byte[] compressed = new byte[(int) u32(buffer, header + 20)];
+        ByteBuffer data = buffer.duplicate();
+        data.position(entry.getDataOffset());
+        data.get(compressed);
+
+        /* Inflate */
+        byte[] source;
+        if(method == ZipEntry.STORED) {
+            source = compressed;
+        } else {
+            source = new byte[size];
+            Inflater inflater = new Inflater(true);
+            try {
+                inflater.setInput(compressed);
+                int read = 0;
+                while(read < size) {
+                    int n = inflater.inflate(source, read, size - read);
+                    if(n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary()))
+                        throw new IOException("Truncated entry '" + entry.getName() + "'");
+                    read += n;
+                }
+            } finally {
+                inflater.end();
+            }
+        }
+
+        /* Transform, and copy entry as-is if nothing changed */
+        byte[] transformed = transformer.transformClass(source);
+        if(transformed == source)
+            return null;
+
+        CRC32 crc = new CRC32();
+        crc.update(transformed);
+        if(method == ZipEntry.STORED)
+            return new TransformedEntry(transformed, transformed.length, crc.getValue(), ZipEntry.STORED);
+
+        /* Deflate */
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(transformed);
+            deflater.finish();
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(compressed.length + 64);
+            byte[] buf = new byte[8192];
+            while(!deflater.finished()) {
+                int n = deflater.deflate(buf);
+                baos.write(buf, 0, n);
+            }
+            return new TransformedEntry(baos.toByteArray(), transformed.length, crc.getValue(), ZipEntry.DEFLATED);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    @NonNull
+    private ByteBuffer slice(int start, int end) {
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(start);
+        slice.limit(end);
+        return slice;
+    }
+
+    private static void write(@NonNull FileChannel out, @NonNull ByteBuffer data) throws IOException {
+        while(data.hasRemaining())
+            out.write(data);
+    }
+
+    private static int u16(@NonNull ByteBuffer buffer, int offset) {
+        return buffer.getShort(offset) & 0xFFFF;
+    }
+
+    private static long u32(@NonNull ByteBuffer buffer, int offset) {
+        return buffer.getInt(offset) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Central directory entry waiting to be written out
+     */
+    private final class PendingEntry {
+        private final int centralHeaderOffset;
+        private final int centralHeaderLength;
+        private ForkJoinTask<TransformedEntry> task;
+
+        private PendingEntry(int centralHeaderOffset, int centralHeaderLength) {
+            this.centralHeaderOffset = centralHeaderOffset;
+            this.centralHeaderLength = centralHeaderLength;
+        }
+
+        @NonNull
+        private String getName() {
+            byte[] name = new byte[u16(buffer, centralHeaderOffset + 28)];
+            ByteBuffer data = buffer.duplicate();
+            data.position(centralHeaderOffset + CENTRAL_HEADER_SIZE);
+            data.get(name);
+            Charset charset = (u16(buffer, centralHeaderOffset + 8) & FLAG_UTF8) != 0 ? StandardCharsets.UTF_8 : CP437;
+            return new String(name, charset);
+        }
+
+        private long getSize() {
+            return u32(buffer, centralHeaderOffset + 24);
+        }
+
+        private long getCrc() {
+            return u32(buffer, centralHeaderOffset + 16);
+        }
+
+        @NonNull
+        private ByteBuffer getBuffer() {
+            return buffer;
+        }
+
+        /* Finds data of input record extra field, or -1 if entry has none */
+        private int getInputRecordOffset() {
+            int offset = centralHeaderOffset + CENTRAL_HEADER_SIZE + u16(buffer, centralHeaderOffset + 28);
+            int end = offset + u16(buffer, centralHeaderOffset + 30);
+            while(offset + 4 <= end) {
+                int length = u16(buffer, offset + 2);
+                if(u16(buffer, offset) == INPUT_RECORD_ID && length == INPUT_RECORD_SIZE && offset + 4 + length <= end)
+                    return offset + 4;
+                offset += 4 + length;
+            }
+            return -1;
+        }
+
+        private int getLocalHeaderOffset() throws IOException {
+            int localHeader = (int) u32(buffer, centralHeaderOffset + 42);
+            if(localHeader < 0 || localHeader >= centralDirectoryOffset || buffer.getInt(localHeader) != LOCAL_HEADER)
+                throw new IOException("Invalid local header for entry '" + getName() + "'");
+            return localHeader;
+        }
+
+        private int getDataOffset() throws IOException {
+            int localHeader = getLocalHeaderOffset();
+            return localHeader + LOCAL_HEADER_SIZE + u16(buffer, localHeader + 26) + u16(buffer, localHeader + 28);
+        }
+
+        /**
+         * Writes this entry and appends its central directory header. Entries of previous output are always
+         * copied as-is
+         */
+        private void writeTo(@NonNull FileChannel out, @NonNull ByteArrayOutputStream centralDirectory) throws IOException {
+            TransformedEntry transformed = null;
+            if(task != null) {
+                try {
+                    transformed = task.join();
+                } catch (RuntimeException e) {
+                    throw new IOException("Failed to transform class '" + getName() + "'", e);
+                }
+            }
+
+            long localHeaderOffset = out.position();
+            if(localHeaderOffset > 0xFFFFFFFFL)
+                throw new IOException("Output zip file is too large");
+
+            int header = centralHeaderOffset;
+            int localHeader = getLocalHeaderOffset();
+            ByteBuffer centralHeader = transformed == null
+                    ? ByteBuffer.allocate(centralHeaderLength).order(ByteOrder.LITTLE_ENDIAN).put(slice(header, header + centralHeaderLength))
+                    : copyCentralHeaderWithInputRecord();
+            centralHeader.putInt(42, (int) localHeaderOffset);
+
+            if(transformed == null) {
+                /* Copy local header, compressed data and data descriptor as-is */
+                int dataEnd = getDataOffset() + (int) u32(buffer, header + 20);
+                if((u16(buffer, localHeader + 6) & FLAG_DATA_DESCRIPTOR) != 0)
+                    dataEnd += buffer.getInt(dataEnd) == DATA_DESCRIPTOR ? 16 : 12;
+                write(out, slice(localHeader, dataEnd));
+            } else {
+                /* Write new local header, followed by transformed data */
+                int nameAndExtraLength = u16(buffer, localHeader + 26) + u16(buffer, localHeader + 28);
+                ByteBuffer newLocalHeader = ByteBuffer.allocate(LOCAL_HEADER_SIZE + nameAndExtraLength).order(ByteOrder.LITTLE_ENDIAN);
+                newLocalHeader.put(slice(localHeader, localHeader + LOCAL_HEADER_SIZE + nameAndExtraLength));
+                newLocalHeader.putShort(6, (short) (u16(buffer, localHeader + 6) & ~FLAG_DATA_DESCRIPTOR));
+                newLocalHeader.putShort(8, (short) transformed.method);
+                newLocalHeader.putInt(14, (int) transformed.crc);
+                newLocalHeader.putInt(18, transformed.data.length);
+                newLocalHeader.putInt(22, transformed.size);
+                newLocalHeader.flip();
+                write(out, newLocalHeader);
+                write(out, ByteBuffer.wrap(transformed.data));
+
+                centralHeader.putShort(8, (short) (u16(buffer, header + 8) & ~FLAG_DATA_DESCRIPTOR));
+                centralHeader.putShort(10, (short) transformed.method);
+                centralHeader.putInt(16, (int) transformed.crc);
+                centralHeader.putInt(20, transformed.data.length);
+                centralHeader.putInt(24, transformed.size);
+            }
+
+            centralDirectory.write(centralHeader.array(), 0, centralHeader.position());
+        }
+
+        /**
+         * Copies central directory header, replacing input record extra field with one describing this entry
+         */
+        @NonNull
+        private ByteBuffer copyCentralHeaderWithInputRecord() {
+            int header = centralHeaderOffset;
+            int extraStart = header + CENTRAL_HEADER_SIZE + u16(buffer, header + 28);
+            int extraEnd = extraStart + u16(buffer, header + 30);
+            ByteBuffer centralHeader = ByteBuffer.allocate(centralHeaderLength + 4 + INPUT_RECORD_SIZE)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            centralHeader.put(slice(header, extraStart));
+
+            /* Keep other extra fields, malformed trailing bytes included */
+            int offset = extraStart;
+            while(offset < extraEnd) {
+                int next = offset + 4 <= extraEnd ? Math.min(offset + 4 + u16(buffer, offset + 2), extraEnd) : extraEnd;
+                if(next - offset < 4 || u16(buffer, offset) != INPUT_RECORD_ID)
+                    centralHeader.put(slice(offset, next));
+                offset = next;
+            }
+
+            int extraLength = centralHeader.position() - (extraStart - header);
+            if(extraLength + 4 + INPUT_RECORD_SIZE <= 0xFFFF) {
+                centralHeader.putShort((short) INPUT_RECORD_ID);
+                centralHeader.putShort((short) INPUT_RECORD_SIZE);
+                centralHeader.putInt((int) getCrc());
+                centralHeader.putInt((int) getSize());
+                centralHeader.put((byte) transformer.getTransformMode().ordinal());
+                extraLength += 4 + INPUT_RECORD_SIZE;
+            }
+            centralHeader.putShort(30, (short) extraLength);
+            centralHeader.put(slice(extraEnd, header + centralHeaderLength));
+            return centralHeader;
+        }
+    }
+
+    /**
+     * Transformed and compressed entry data
+     */
+    private static final class TransformedEntry {
+        private final byte[] data;
+        private final int size;
+        private final long crc;
+        private final int method;
+
+        private TransformedEntry(@NonNull byte[] data, int size, long crc, int method) {
+            this.data = data;
+            this.size = size;
+            this.crc = crc;
+            this.method = method;
+        }
+    }
+}
@@ -1,6 +1,15 @@
 package eu.mikroskeem.test.orion.at;
 
+import eu.mikroskeem.orion.at.AccessTransformEntry;
 import eu.mikroskeem.orion.at.AccessTransformer;
+import eu.mikroskeem.orion.at.CompiledRuleset;
+import eu.mikroskeem.orion.at.FrozenAccessTransformer;
+import eu.mikroskeem.orion.at.LazyRuleset;
+import eu.mikroskeem.orion.at.ReloadableAccessTransformer;
+import eu.mikroskeem.orion.at.RuleConflict;
+import eu.mikroskeem.orion.at.TransformListener;
+import eu.mikroskeem.orion.at.TransformMode;
+import eu.mikroskeem.orion.at.access.AccessLevel;
 import eu.mikroskeem.shuriken.instrumentation.ClassLoaderTools;
 import eu.mikroskeem.shuriken.instrumentation.ClassTools;
 import eu.mikroskeem.shuriken.reflect.ClassWrapper;
@@ -13,6 +22,7 @@ import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.util.TraceClassVisitor;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -21,7 +31,14 @@ import java.io.PrintWriter;
 import java.lang.reflect.Modifier;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.IntStream;
 
 /**
  * @author Mark Vainomaa
@@ -109,6 +126,157 @@ public class AccessTransformerTest {
         //Assertions.assertEquals(baseClass.getDeclaredClasses()[1], newClass2);
     }
 
+    @Test
+    public void testCompiledRuleset() throws Exception {
+        AccessTransformer at = setupAt("test_field_at.cfg");
+        CompiledRuleset ruleset = at.getCompiledRuleset();
+        CompiledRuleset.ClassRules classRules = ruleset.getClassRules(TestClass1.class.getName());
+
+        Assertions.assertNotNull(classRules, "TestClass1 should have rules");
+        Assertions.assertNotNull(classRules.getFieldTransform("a"), "Field a should have a rule");
+        Assertions.assertNull(classRules.getFieldTransform("c"), "Field c should not have a rule");
+        Assertions.assertNull(ruleset.getClassRules(TestClass2.class.getName()), "TestClass2 should not have rules");
+        Assertions.assertSame(ruleset, at.getCompiledRuleset(), "Ruleset should be cached");
+
+        at.loadAccessTransformer("public-f " + TestClass2.class.getName());
+        Assertions.assertNotSame(ruleset, at.getCompiledRuleset(), "Ruleset should be recompiled after loading entries");
+        Assertions.assertTrue(at.getCompiledRuleset().hasRules(TestClass2.class.getName()), "TestClass2 should have rules");
+    }
+
+    @Test
+    public void testUntouchedClassPassthrough() throws Exception {
+        AccessTransformer at = setupAt("test_inner_class_at.cfg");
+        byte[] untouched = getClass(TestClass1.class);
+        byte[] outer = getClass(TestClass4.class);
+
+        Assertions.assertSame(untouched, at.transformClass(untouched), "Class without rules should be passed through");
+        Assertions.assertNotSame(outer, at.transformClass(outer), "Class with inner class rules should be transformed");
+    }
+
+    @Test
+    public void testTransformModes() throws Exception {
+        for (TransformMode transformMode : TransformMode.values()) {
+            AccessTransformer at = setupAt("test_method_at.cfg");
+            at.setTransformMode(transformMode);
+            Class<?> newClass = transformAndLoad(at, TestClass1.class);
+
+            Assertions.assertTrue(Modifier.isPublic(newClass.getDeclaredMethod("h", String.class).getModifiers()),
+                    "Method h should be public in " + transformMode + " mode!");
+            Assertions.assertTrue(Modifier.isPrivate(newClass.getDeclaredMethod("g").getModifiers()),
+                    "Method g should stay private in " + transformMode + " mode!");
+        }
+    }
+
+    @Test
+    public void testReloadableAccessTransformer() throws Exception {
+        FrozenAccessTransformer fieldAt = setupAt("test_field_at.cfg").freeze();
+        FrozenAccessTransformer classAt = setupAt("test_class_at.cfg").freeze();
+        ReloadableAccessTransformer at = new ReloadableAccessTransformer(fieldAt);
+        byte[] source = getClass(TestClass2.class);
+
+        /* Transform from multiple threads at once */
+        long transformed = IntStream.range(0, 1000).parallel()
+                .mapToObj(i -> at.transformClass(source))
+                .filter(result -> result != source)
+                .count();
+        Assertions.assertEquals(0, transformed, "TestClass2 should not be transformed by field AT");
+
+        Assertions.assertSame(fieldAt, at.reload(classAt), "Reload should return previous snapshot");
+        Assertions.assertNotSame(source, at.transformClass(source), "TestClass2 should be transformed after reload");
+    }
+
+    @Test
+    public void testMultiSourceLoading() throws Exception {
+        String owner = TestClass1.class.getName();
+        Path first = Files.createTempFile("orion-at-first", ".cfg");
+        Path second = Files.createTempFile("orion-at-second", ".cfg");
+        try {
+            Files.write(first, Arrays.asList("public " + owner + " a", "protected-f " + owner + " b # comment"));
+            Files.write(second, Arrays.asList("public " + owner + " a", "public+f " + owner + " b", "public " + owner));
+
+            AccessTransformer at = new AccessTransformer();
+            List<RuleConflict> conflicts = new ArrayList<>();
+            at.setConflictHandler(conflicts::add);
+            at.loadAccessTransformers(Arrays.asList(first, second));
+
+            Assertions.assertEquals(4, at.getAtEntries().size(), "Duplicate entry should be skipped");
+            AccessTransformEntry fieldB = at.getCompiledRuleset().getClassRules(owner).getFieldTransform("b");
+            Assertions.assertEquals(AccessLevel.PUBLIC, fieldB.getAccessLevel(), "Widest access level should be used");
+            Assertions.assertEquals(1, conflicts.size(), "Overlapping entries should be reported");
+            Assertions.assertTrue(conflicts.get(0).isModifierConflict(), "Contradicting modifiers should be reported");
+            Assertions.assertEquals(owner + " b", conflicts.get(0).getTarget());
+
+            /* Every loader skips duplicates */
+            at.loadAccessTransformer("public " + owner + " a");
+            at.loadAccessTransformers(Files.newInputStream(first));
+            Assertions.assertEquals(4, at.getAtEntries().size(), "Duplicate entries should be skipped");
+
+            /* Handler installed after compiling sees conflicts too */
+            List<RuleConflict> lateConflicts = new ArrayList<>();
+            at.setConflictHandler(lateConflicts::add);
+            at.getCompiledRuleset();
+            Assertions.assertEquals(1, lateConflicts.size(), "New conflict handler should see conflicts");
+
+            /* Parse errors point at the file and line */
+            Files.write(second, Arrays.asList("public " + owner, "public-x " + owner));
+            IllegalStateException e = Assertions.assertThrows(IllegalStateException.class,
+                    () -> new AccessTransformer().loadAccessTransformers(Arrays.asList(first, second)));
+            Assertions.assertTrue(e.getMessage().startsWith(second + ":2: "), e.getMessage());
+
+            /* Stream and reader loaders report line numbers */
+            e = Assertions.assertThrows(IllegalStateException.class,
+                    () -> new AccessTransformer().loadAccessTransformers(Files.newInputStream(second)));
+            Assertions.assertTrue(e.getMessage().startsWith("line 2: "), e.getMessage());
+            e = Assertions.assertThrows(IllegalStateException.class,
+                    () -> new AccessTransformer().loadAccessTransformers(Files.newBufferedReader(second)));
+            Assertions.assertTrue(e.getMessage().startsWith("line 2: "), e.getMessage());
+        } finally {
+            Files.deleteIfExists(first);
+            Files.deleteIfExists(second);
+        }
+    }
+
+    @Test
+    public void testUtf8Loading() throws Exception {
+        String owner = TestClass1.class.getName();
+        /* Byte order mark, non-ASCII comments and CRLF line endings */
+        byte[] content = ("\uFEFF# K\u00f5ik v\u00e4ljad \u2014 all fields\r\npublic " + owner + " a # \u00fc\r\n\r\n"
+                + "public-f " + owner + " b\n").getBytes(StandardCharsets.UTF_8);
+        Path file = Files.createTempFile("orion-at-utf8", ".cfg");
+        try {
+            Files.write(file, content);
+
+            AccessTransformer fromPath = new AccessTransformer();
+            List<String> lines = new ArrayList<>();
+            fromPath.setTransformListener(new TransformListener() {
+                @Override
+                public void ruleParsed(String line, AccessTransformEntry entry) {
+                    lines.add(line);
+                }
+            });
+            fromPath.loadAccessTransformers(file);
+            Assertions.assertEquals(Arrays.asList("public " + owner + " a # \u00fc", "public-f " + owner + " b"), lines);
+
+            AccessTransformer fromChannel = new AccessTransformer();
+            fromChannel.loadAccessTransformers(Channels.newChannel(new ByteArrayInputStream(content)));
+            AccessTransformer fromStream = new AccessTransformer();
+            fromStream.loadAccessTransformers(new ByteArrayInputStream(content));
+            Assertions.assertEquals(fromPath.getAtEntries(), fromChannel.getAtEntries());
+            Assertions.assertEquals(fromPath.getAtEntries(), fromStream.getAtEntries());
+            Assertions.assertEquals(2, fromPath.getAtEntries().size());
+
+            LazyRuleset lazy = LazyRuleset.builder().loadAccessTransformers(file).build();
+            Assertions.assertTrue(lazy.getErrors().isEmpty(), lazy.getErrors().toString());
+            Assertions.assertNotNull(lazy.getClassRules(owner).getFieldTransform("b"));
+
+            /* Malformed UTF-8 is rejected instead of being silently replaced */
+            Files.write(file, new byte[] { '#', ' ', (byte) 0xC3, '\n' });
+            Assertions.assertThrows(IOException.class, () -> new AccessTransformer().loadAccessTransformers(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
     /* Utils */
     private AccessTransformer setupAt(String file) throws IOException {
         AccessTransformer at = new AccessTransformer();
@@ -0,0 +1,88 @@
+package eu.mikroskeem.test.orion.at;
+
+import eu.mikroskeem.orion.at.AccessTransformEntry;
+import eu.mikroskeem.orion.at.AccessTransformer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author Mark Vainomaa
+ */
+public class AtLineParserTest {
+    private final static List<String> CFG_FILES = Arrays.asList(
+            "test_class_at.cfg", "test_field_at.cfg", "test_inner_class_at.cfg", "test_method_at.cfg",
+            "test_method_final_remove_at.cfg", "test_method_wildcard_final_remove_at.cfg",
+            "test_private_method_at.cfg", "test_wildcard_final_remove_at.cfg"
+    );
+
+    private final static List<String> LINES = Arrays.asList(
+            "public foo.Bar",
+            "  private-f\tfoo.Bar   baz  ",
+            "protected+f foo.Bar$Inner",
+            "default-f+f foo.Bar a(ILjava/lang/String;)V # trailing comment",
+            "public foo.Bar *()",
+            "public foo.Bar *",
+            "public-f foo.Bar <init>()V extra tokens",
+            "# comment",
+            "   ",
+            ""
+    );
+
+    @Test
+    public void testEquivalence() throws Exception {
+        List<String> lines = new ArrayList<>(LINES);
+        for (String file : CFG_FILES) {
+            try(BufferedReader reader = new BufferedReader(new InputStreamReader(getClass().getResourceAsStream("/" + file)))) {
+                String line;
+                while((line = reader.readLine()) != null)
+                    lines.add(line);
+            }
+        }
+
+        for (String line : lines) {
+            LegacyAtLineParser.Entry expected = LegacyAtLineParser.processLine(line);
+            AccessTransformEntry actual = parse(line);
+            if(expected == null) {
+                Assertions.assertNull(actual, "Line '" + line + "' should be skipped");
+                continue;
+            }
+
+            Assertions.assertNotNull(actual, "Line '" + line + "' should be parsed");
+            Assertions.assertEquals(expected.accessLevel, actual.getAccessLevel(), line);
+            Assertions.assertEquals(expected.accessModifiers, actual.getAccessModifiers(), line);
+            Assertions.assertEquals(expected.className, actual.getClassName(), line);
+            Assertions.assertEquals(expected.descriptor, actual.getDescriptor(), line);
+            Assertions.assertEquals(expected.methodAt, actual.isMethodAt(), line);
+            Assertions.assertEquals(expected.classAt, actual.isClassAt(), line);
+            Assertions.assertEquals(expected.fieldAt, actual.isFieldAt(), line);
+        }
+    }
+
+    @Test
+    public void testErrorMessages() {
+        for (String line : Arrays.asList("public-x foo.Bar", "public+ foo.Bar", "public foo.Bar a(I", "public-f--f foo.Bar")) {
+            IllegalStateException expected = Assertions.assertThrows(IllegalStateException.class,
+                    () -> LegacyAtLineParser.processLine(line));
+            IllegalStateException actual = Assertions.assertThrows(IllegalStateException.class, () -> parse(line));
+            Assertions.assertEquals("line 1: " + expected.getMessage(), actual.getMessage(), line);
+        }
+
+        Assertions.assertThrows(IllegalStateException.class, () -> parse("publik foo.Bar"));
+        Assertions.assertThrows(IllegalStateException.class, () -> parse("public"));
+    }
+
+    /* Utils */
+    private static AccessTransformEntry parse(String line) throws IOException {
+        AccessTransformer at = new AccessTransformer();
+        at.loadAccessTransformers(new BufferedReader(new StringReader(line)));
+        return at.getAtEntries().isEmpty() ? null : at.getAtEntries().get(0);
+    }
+}
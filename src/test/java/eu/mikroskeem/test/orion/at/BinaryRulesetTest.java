@@ -0,0 +1,117 @@
+package eu.mikroskeem.test.orion.at;
+
+import eu.mikroskeem.orion.at.AccessTransformEntry;
+import eu.mikroskeem.orion.at.AccessTransformer;
+import eu.mikroskeem.orion.at.BinaryRuleset;
+import eu.mikroskeem.orion.at.CompiledRuleset;
+import eu.mikroskeem.orion.at.FrozenAccessTransformer;
+import eu.mikroskeem.orion.at.TransformMode;
+import eu.mikroskeem.shuriken.instrumentation.ClassTools;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * @author Mark Vainomaa
+ */
+public class BinaryRulesetTest {
+    private final static List<String> CFG_FILES = Arrays.asList(
+            "test_class_at.cfg", "test_field_at.cfg", "test_inner_class_at.cfg", "test_method_at.cfg",
+            "test_method_final_remove_at.cfg", "test_private_method_at.cfg"
+    );
+
+    @Test
+    public void testBinaryRuleset() throws Exception {
+        AccessTransformer at = new AccessTransformer();
+        for (String file : CFG_FILES)
+            at.loadAccessTransformers(getClass().getResourceAsStream("/" + file));
+        CompiledRuleset compiled = at.getCompiledRuleset();
+
+        Path path = Files.createTempFile("orion-at-ruleset", ".bin");
+        try {
+            BinaryRuleset.write(compiled, path);
+            BinaryRuleset binary = BinaryRuleset.open(path);
+
+            Assertions.assertEquals(new HashSet<>(compiled.getClassNames()), new HashSet<>(binary.getClassNames()));
+            Assertions.assertArrayEquals(compiled.getFingerprint(), binary.getFingerprint(), "Fingerprints should match");
+            for (String className : compiled.getClassNames()) {
+                CompiledRuleset.ClassRules expected = compiled.getClassRules(className);
+                CompiledRuleset.ClassRules actual = binary.getClassRules(className);
+                Assertions.assertNotNull(actual, className);
+                Assertions.assertEquals(expected.getClassTransform(), actual.getClassTransform(), className);
+                Assertions.assertEquals(new HashSet<>(expected.getMethodTransforms()),
+                        new HashSet<>(actual.getMethodTransforms()), className);
+                Assertions.assertEquals(new HashSet<>(expected.getFieldTransforms()),
+                        new HashSet<>(actual.getFieldTransforms()), className);
+                for (AccessTransformEntry method : expected.getMethodTransforms()) {
+                    String descriptor = method.getDescriptor();
+                    int descStart = descriptor.indexOf('(');
+                    Assertions.assertEquals(method, actual.getMethodTransform(descriptor));
+                    Assertions.assertEquals(method, actual.getMethodTransform(descriptor.substring(0, descStart),
+                            descriptor.substring(descStart)));
+                }
+                Assertions.assertSame(actual, binary.getClassRules(className), "Decoded rules should be cached");
+
+                String internalName = className.replace('.', '/');
+                Assertions.assertSame(expected, compiled.getClassRulesByInternalName(internalName));
+                Assertions.assertSame(actual, binary.getClassRulesByInternalName(internalName));
+            }
+
+            /* Enclosing classes are indexed, but have no rules */
+            String outer = TestClass4.class.getName();
+            Assertions.assertFalse(binary.hasRules(outer));
+            Assertions.assertTrue(binary.affectsClass(outer));
+            Assertions.assertTrue(binary.affectsInternalName(ClassTools.unqualifyName(TestClass4.class)));
+            Assertions.assertNull(binary.getClassRules(outer));
+            Assertions.assertNull(binary.getClassRulesByInternalName(ClassTools.unqualifyName(TestClass4.class)));
+            Assertions.assertFalse(binary.affectsClass("java.lang.String"));
+            Assertions.assertFalse(binary.affectsInternalName("java/lang/String"));
+
+            /* Both rulesets transform classes the same way */
+            FrozenAccessTransformer fromText = new FrozenAccessTransformer(compiled, TransformMode.SHARE_CONSTANT_POOL);
+            FrozenAccessTransformer fromBinary = new FrozenAccessTransformer(binary, TransformMode.SHARE_CONSTANT_POOL);
+            for (Class<?> clazz : Arrays.asList(TestClass1.class, TestClass2.class, TestClass3.class, TestClass4.class)) {
+                byte[] source = getClass(clazz);
+                Assertions.assertArrayEquals(fromText.transformClass(source), fromBinary.transformClass(source),
+                        clazz.getName());
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void testEmptyAndInvalidRuleset() throws Exception {
+        Path path = Files.createTempFile("orion-at-ruleset", ".bin");
+        try {
+            BinaryRuleset.write(CompiledRuleset.EMPTY, path);
+            BinaryRuleset binary = BinaryRuleset.open(path);
+            Assertions.assertTrue(binary.isEmpty());
+            Assertions.assertFalse(binary.affectsClass("foo.Bar"));
+
+            Files.write(path, "public foo.Bar".getBytes());
+            Assertions.assertThrows(IOException.class, () -> BinaryRuleset.open(path));
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /* Utils */
+    private byte[] getClass(Class<?> clazz) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try(InputStream is = this.getClass().getClassLoader().getResourceAsStream(ClassTools.unqualifyName(clazz) + ".class")) {
+            byte[] buf = new byte[4096];
+            int read;
+            while((read = is.read(buf)) != -1) baos.write(buf, 0, read);
+        }
+        return baos.toByteArray();
+    }
+}
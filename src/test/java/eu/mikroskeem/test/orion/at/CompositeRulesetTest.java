@@ -0,0 +1,135 @@
+package eu.mikroskeem.test.orion.at;
+
+import eu.mikroskeem.orion.at.AccessTransformEntry;
+import eu.mikroskeem.orion.at.AccessTransformer;
+import eu.mikroskeem.orion.at.CompiledRuleset;
+import eu.mikroskeem.orion.at.CompositeRuleset;
+import eu.mikroskeem.orion.at.FrozenAccessTransformer;
+import eu.mikroskeem.orion.at.RuleConflict;
+import eu.mikroskeem.orion.at.TransformMode;
+import eu.mikroskeem.shuriken.instrumentation.ClassTools;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * @author Mark Vainomaa
+ */
+public class CompositeRulesetTest {
+    private final static String CLASS_NAME = TestClass1.class.getName();
+    private final static List<String> BASE_LINES = Arrays.asList(
+            "protected " + CLASS_NAME + " a",
+            "public " + CLASS_NAME + " a()V",
+            "public-f " + CLASS_NAME + " *"
+    );
+    private final static List<String> MOD_LINES = Arrays.asList(
+            "public+f " + CLASS_NAME + " a",
+            "public " + TestClass5.class.getName() + " fib(I)I"
+    );
+
+    @Test
+    public void testCompositeMatchesSingleTransformer() throws Exception {
+        AccessTransformer single = new AccessTransformer();
+        AccessTransformer base = new AccessTransformer();
+        AccessTransformer mod = new AccessTransformer();
+        BASE_LINES.forEach(single::loadAccessTransformer);
+        BASE_LINES.forEach(base::loadAccessTransformer);
+        MOD_LINES.forEach(single::loadAccessTransformer);
+        MOD_LINES.forEach(mod::loadAccessTransformer);
+
+        List<RuleConflict> conflicts = new ArrayList<>();
+        CompositeRuleset composite = CompositeRuleset.builder()
+                .addLayer("base", base)
+                .addLayer("mod", mod)
+                .conflictHandler(conflicts::add)
+                .build();
+
+        Assertions.assertEquals(2, composite.getClassNames().size());
+        Assertions.assertArrayEquals(single.getCompiledRuleset().getFingerprint(), composite.getFingerprint());
+
+        for (TransformMode mode : TransformMode.values()) {
+            single.setTransformMode(mode);
+            FrozenAccessTransformer layered = new FrozenAccessTransformer(composite, mode);
+            for (Class<?> clazz : Arrays.asList(TestClass1.class, TestClass3.class, TestClass5.class)) {
+                byte[] source = getClass(clazz);
+                Assertions.assertArrayEquals(single.transformClass(source), layered.transformClass(source),
+                        mode + ": " + clazz.getName());
+            }
+        }
+
+        /* Conflicts are reported once, when class rules get combined */
+        Assertions.assertEquals(1, conflicts.size());
+        Assertions.assertEquals(CLASS_NAME + " a", conflicts.get(0).getTarget());
+    }
+
+    @Test
+    public void testProvenance() {
+        CompiledRuleset base = CompiledRuleset.compile(BASE_LINES.stream().map(AccessTransformEntry::new).collect(Collectors.toList()));
+        CompiledRuleset mod = CompiledRuleset.compile(MOD_LINES.stream().map(AccessTransformEntry::new).collect(Collectors.toList()));
+        CompositeRuleset composite = CompositeRuleset.builder()
+                .addLayer("base", base)
+                .addLayer("mod", mod)
+                .build();
+
+        CompiledRuleset.ClassRules rules = composite.getClassRules(CLASS_NAME);
+        Assertions.assertNotNull(rules);
+        Assertions.assertEquals(Arrays.asList("base", "mod"), names(composite.getProvenance(rules.getFieldTransform("a"))));
+        Assertions.assertEquals(Arrays.asList("base"), names(composite.getProvenance(rules.getFieldTransform("*"))));
+        Assertions.assertEquals(Arrays.asList("base", "mod"), names(composite.getLayers(CLASS_NAME)));
+        Assertions.assertEquals(Arrays.asList("mod"), names(composite.getLayers(TestClass5.class.getName())));
+
+        /* Classes targeted by a single layer get its rules as-is */
+        Assertions.assertSame(mod.getClassRules(TestClass5.class.getName()), composite.getClassRules(TestClass5.class.getName()));
+
+        /* Classes with exact rules in several layers are combined once */
+        Assertions.assertSame(rules, composite.getClassRules(CLASS_NAME));
+        Assertions.assertSame(rules, composite.getClassRulesByInternalName(CLASS_NAME.replace('.', '/')));
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> CompositeRuleset.builder()
+                .addLayer("base", base)
+                .addLayer("base", mod));
+    }
+
+    @Test
+    public void testPatternLayerCombination() {
+        String packageName = TestClass5.class.getPackage().getName();
+        CompiledRuleset patterns = CompiledRuleset.compile(Arrays.asList(
+                new AccessTransformEntry("public " + packageName + ".* *()")));
+        CompiledRuleset mod = CompiledRuleset.compile(MOD_LINES.stream().map(AccessTransformEntry::new).collect(Collectors.toList()));
+        CompositeRuleset composite = CompositeRuleset.builder()
+                .addLayer("patterns", patterns)
+                .addLayer("mod", mod)
+                .build();
+
+        /* Classes matched by patterns are combined on every lookup instead of being cached */
+        CompiledRuleset.ClassRules rules = composite.getClassRules(TestClass5.class.getName());
+        Assertions.assertNotNull(rules);
+        Assertions.assertNotNull(rules.getMethodTransform("fib(I)I"));
+        Assertions.assertNotNull(rules.getMethodTransform("*()"));
+        Assertions.assertNotSame(rules, composite.getClassRules(TestClass5.class.getName()));
+        Assertions.assertEquals(rules.getMethodTransform("*()"),
+                composite.getClassRulesByInternalName(TestClass5.class.getName().replace('.', '/')).getMethodTransform("*()"));
+    }
+
+    /* Utils */
+    private List<String> names(List<CompositeRuleset.Layer> layers) {
+        return layers.stream().map(CompositeRuleset.Layer::getName).collect(Collectors.toList());
+    }
+
+    private byte[] getClass(Class<?> clazz) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try(InputStream is = this.getClass().getClassLoader().getResourceAsStream(ClassTools.unqualifyName(clazz) + ".class")) {
+            byte[] buf = new byte[4096];
+            int read;
+            while((read = is.read(buf)) != -1) baos.write(buf, 0, read);
+        }
+        return baos.toByteArray();
+    }
+}
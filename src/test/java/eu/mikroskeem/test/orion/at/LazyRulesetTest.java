@@ -0,0 +1,97 @@
+package eu.mikroskeem.test.orion.at;
+
+import eu.mikroskeem.orion.at.AccessTransformer;
+import eu.mikroskeem.orion.at.FrozenAccessTransformer;
+import eu.mikroskeem.orion.at.LazyRuleset;
+import eu.mikroskeem.orion.at.TransformMode;
+import eu.mikroskeem.shuriken.instrumentation.ClassTools;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * @author Mark Vainomaa
+ */
+public class LazyRulesetTest {
+    private final static List<String> CFG_FILES = Arrays.asList(
+            "test_class_at.cfg", "test_field_at.cfg", "test_inner_class_at.cfg", "test_method_at.cfg",
+            "test_method_final_remove_at.cfg", "test_private_method_at.cfg"
+    );
+
+    @Test
+    public void testLazyRuleset() throws Exception {
+        AccessTransformer at = new AccessTransformer();
+        LazyRuleset.Builder builder = LazyRuleset.builder();
+        for (String file : CFG_FILES) {
+            at.loadAccessTransformers(getClass().getResourceAsStream("/" + file));
+            builder.loadAccessTransformers(getClass().getResourceAsStream("/" + file));
+        }
+        LazyRuleset lazy = builder.build();
+
+        Assertions.assertEquals(0, lazy.getResolvedClassCount(), "Nothing should be parsed before lookup");
+        Assertions.assertTrue(lazy.affectsClass(TestClass4.class.getName()));
+        Assertions.assertFalse(lazy.affectsClass("java.lang.String"));
+
+        /* Both rulesets transform classes the same way */
+        FrozenAccessTransformer eager = new FrozenAccessTransformer(at.getCompiledRuleset(), TransformMode.SHARE_CONSTANT_POOL);
+        FrozenAccessTransformer fromLazy = new FrozenAccessTransformer(lazy, TransformMode.SHARE_CONSTANT_POOL);
+        byte[] source = getClass(TestClass1.class);
+        Assertions.assertArrayEquals(eager.transformClass(source), fromLazy.transformClass(source));
+        Assertions.assertEquals(1, lazy.getResolvedClassCount(), "Only looked up class should be parsed");
+
+        for (Class<?> clazz : Arrays.asList(TestClass2.class, TestClass3.class, TestClass4.class)) {
+            source = getClass(clazz);
+            Assertions.assertArrayEquals(eager.transformClass(source), fromLazy.transformClass(source), clazz.getName());
+        }
+        Assertions.assertTrue(lazy.validate().isEmpty());
+    }
+
+    @Test
+    public void testMalformedLines() {
+        LazyRuleset lazy = LazyRuleset.builder()
+                .loadAccessTransformer("public foo.Bar")
+                .loadAccessTransformer("publik foo.Baz")
+                .loadAccessTransformer("public foo.Baz method(")
+                .loadAccessTransformer("public # no class")
+                .loadAccessTransformer("# comment")
+                .build();
+
+        /* Missing class name is found while loading */
+        Assertions.assertEquals(1, lazy.getErrors().size());
+        Assertions.assertEquals("Invalid AT entry: public", lazy.getErrors().iterator().next().getMessage());
+
+        /* Malformed lines of a class are found on lookup, and skipped */
+        Assertions.assertNotNull(lazy.getClassRules("foo.Bar"));
+        Assertions.assertEquals(1, lazy.getErrors().size());
+
+        Collection<LazyRuleset.ParseError> errors = lazy.validate();
+        Assertions.assertEquals(3, errors.size());
+        LazyRuleset.ParseError accessError = errors.stream()
+                .filter(e -> e.getMessage().startsWith("Invalid access level"))
+                .findFirst().orElseThrow(AssertionError::new);
+        Assertions.assertEquals("publik foo.Baz", accessError.getLine());
+        Assertions.assertTrue(errors.stream().anyMatch(e -> e.getMessage().startsWith("Invalid method AT entry")));
+
+        LazyRuleset.ClassRules rules = lazy.getClassRules("foo.Baz");
+        Assertions.assertNotNull(rules);
+        Assertions.assertNull(rules.getClassTransform());
+        Assertions.assertEquals(3, lazy.validate().size(), "Errors should not be reported twice");
+    }
+
+    /* Utils */
+    private byte[] getClass(Class<?> clazz) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try(InputStream is = this.getClass().getClassLoader().getResourceAsStream(ClassTools.unqualifyName(clazz) + ".class")) {
+            byte[] buf = new byte[4096];
+            int read;
+            while((read = is.read(buf)) != -1) baos.write(buf, 0, read);
+        }
+        return baos.toByteArray();
+    }
+}
@@ -0,0 +1,88 @@
+package eu.mikroskeem.test.orion.at;
+
+import eu.mikroskeem.orion.at.access.AccessLevel;
+import eu.mikroskeem.orion.at.access.AccessModifier;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Regular expression based access transformer line parser, which was used before the single pass parser.
+ * Kept for equivalence testing, and as a baseline for parser benchmarks in 'benchmarks' module
+ *
+ * @author Mark Vainomaa
+ */
+public final class LegacyAtLineParser {
+    private LegacyAtLineParser() {}
+
+    public static Entry processLine(String rawAtEntry) {
+        /* It is a comment! */
+        if(rawAtEntry.startsWith("#"))
+            return null;
+
+        /* It has a comment! */
+        int hashPos = rawAtEntry.indexOf('#');
+        if(hashPos != -1)
+            rawAtEntry = rawAtEntry.substring(0, hashPos);
+
+        /* It must be trimmed! */
+        rawAtEntry = rawAtEntry.trim();
+
+        /* It must not be empty! */
+        if(rawAtEntry.isEmpty())
+            return null;
+
+        /* Parse line */
+        return new Entry(rawAtEntry);
+    }
+
+    public static final class Entry {
+        final AccessLevel accessLevel;
+        final List<AccessModifier.ModifierEntry> accessModifiers;
+        final String className;
+        final String descriptor;
+        final boolean methodAt;
+        final boolean classAt;
+        final boolean fieldAt;
+
+        Entry(String rawAtEntry) {
+            String[] atEntry = rawAtEntry.split("\\s+");
+            String[] modifiers = atEntry[0].split("(?=[-+])");
+            classAt = atEntry.length == 2;
+            this.accessLevel = AccessLevel.BY_NAME.get(modifiers[0]);
+            this.accessModifiers = Stream.of(Arrays.copyOfRange(modifiers, 1, modifiers.length)).map(entry -> {
+                char action = entry.charAt(0);
+                AccessModifier accessModifier = AccessModifier.BY_NAME.get(entry.substring(1));
+
+                /* Validate */
+                if(accessModifier == null) throw new IllegalStateException("Invalid access modifier: " + entry.substring(1));
+                if(action != '-' && action != '+') throw new IllegalStateException("Invalid access modifier action: " + action);
+                return new AccessModifier.ModifierEntry(action == '-', accessModifier);
+            }).collect(Collectors.toList());
+            this.className = atEntry[1];
+            this.descriptor = classAt ? null : atEntry[2];
+
+            if(classAt) {
+                methodAt = false;
+                fieldAt = false;
+                return;
+            }
+
+            int start = descriptor.indexOf('(');
+            if(start != -1) {
+                int end = descriptor.indexOf(')', start);
+                if(end != -1) {
+                    methodAt = true;
+                    fieldAt = false;
+                } else {
+                    throw new IllegalStateException("Invalid method AT entry: " + rawAtEntry);
+                }
+            } else {
+                methodAt = false;
+                fieldAt = true;
+            }
+        }
+    }
+}
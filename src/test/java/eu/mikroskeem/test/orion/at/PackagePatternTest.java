@@ -0,0 +1,128 @@
+package eu.mikroskeem.test.orion.at;
+
+import eu.mikroskeem.orion.at.AccessTransformer;
+import eu.mikroskeem.orion.at.BinaryRuleset;
+import eu.mikroskeem.orion.at.CompiledRuleset;
+import eu.mikroskeem.orion.at.FrozenAccessTransformer;
+import eu.mikroskeem.orion.at.LazyRuleset;
+import eu.mikroskeem.orion.at.TransformMode;
+import eu.mikroskeem.shuriken.instrumentation.ClassTools;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author Mark Vainomaa
+ */
+public class PackagePatternTest {
+    private final static String PACKAGE = "eu.mikroskeem.test.orion.at";
+    private final static List<String> LINES = Arrays.asList(
+            "public " + PACKAGE + ".* *()",
+            "public-f eu.mikroskeem.test.** *",
+            "protected+f " + PACKAGE + ".TestClass1 d"
+    );
+
+    @Test
+    public void testPatternMatching() {
+        AccessTransformer at = new AccessTransformer();
+        at.loadAccessTransformer("public foo.bar.*");
+        at.loadAccessTransformer("public foo.baz.**");
+        at.loadAccessTransformer("public Toplevel");
+        CompiledRuleset ruleset = at.getCompiledRuleset();
+
+        Assertions.assertTrue(ruleset.hasRules("foo.bar.Baz"));
+        Assertions.assertTrue(ruleset.hasRules("foo.bar.Baz$Inner"));
+        Assertions.assertFalse(ruleset.hasRules("foo.bar.qux.Baz"), "Single star should not match subpackages");
+        Assertions.assertFalse(ruleset.hasRules("foo.barn.Baz"));
+        Assertions.assertFalse(ruleset.hasRules("foo.Bar"));
+        Assertions.assertTrue(ruleset.hasRules("foo.baz.Qux"));
+        Assertions.assertTrue(ruleset.hasRules("foo.baz.qux.deep.Qux"));
+        Assertions.assertFalse(ruleset.hasRules("java.lang.String"));
+        Assertions.assertTrue(ruleset.affectsInternalName("foo/baz/qux/Qux"));
+        Assertions.assertFalse(ruleset.affectsInternalName("foo/Baz"));
+        Assertions.assertNotNull(ruleset.getClassRulesByInternalName("foo/bar/Baz"));
+
+        Assertions.assertEquals(1, ruleset.getClassNames().size(), "Patterns are not class names");
+        Assertions.assertEquals(2, ruleset.getPatterns().size());
+        Assertions.assertNotNull(ruleset.getPatternRules("foo.baz.**"));
+
+        /* Classes matched by a single pattern share its rules instead of getting a combined copy each */
+        Assertions.assertSame(ruleset.getPatternRules("foo.baz.**"), ruleset.getClassRules("foo.baz.qux.Qux"));
+        Assertions.assertSame(ruleset.getPatternRules("foo.bar.*"), ruleset.getClassRulesByInternalName("foo/bar/Baz"));
+    }
+
+    @Test
+    public void testPatternTransform() throws Exception {
+        AccessTransformer at = new AccessTransformer();
+        LazyRuleset.Builder builder = LazyRuleset.builder();
+        for (String line : LINES) {
+            at.loadAccessTransformer(line);
+            builder.loadAccessTransformer(line);
+        }
+        LazyRuleset lazy = builder.build();
+
+        for (TransformMode mode : TransformMode.values()) {
+            at.setTransformMode(mode);
+            ClassNode classNode = readClass(at.transformClass(getClass(TestClass1.class)));
+            for (MethodNode method : classNode.methods) {
+                if(!method.name.equals("<clinit>"))
+                    Assertions.assertTrue((method.access & Opcodes.ACC_PUBLIC) != 0, mode + ": " + method.name);
+            }
+
+            for (FieldNode field : classNode.fields) {
+                /* Exact rule takes precedence on modifiers, and the wider access level wins */
+                boolean exact = field.name.equals("d");
+                Assertions.assertTrue((field.access & Opcodes.ACC_PUBLIC) != 0, mode + ": " + field.name);
+                Assertions.assertEquals(exact, (field.access & Opcodes.ACC_FINAL) != 0, mode + ": " + field.name);
+            }
+
+            /* Lazy ruleset applies patterns the same way */
+            FrozenAccessTransformer fromLazy = new FrozenAccessTransformer(lazy, mode);
+            for (Class<?> clazz : Arrays.asList(TestClass1.class, TestClass3.class)) {
+                byte[] source = getClass(clazz);
+                Assertions.assertArrayEquals(at.transformClass(source), fromLazy.transformClass(source), clazz.getName());
+            }
+        }
+    }
+
+    @Test
+    public void testBinaryRulesetRejectsPatterns() throws Exception {
+        AccessTransformer at = new AccessTransformer();
+        at.loadAccessTransformer("public foo.bar.**");
+        Path file = Files.createTempFile("patterns", ".atb");
+        try {
+            Assertions.assertThrows(IllegalArgumentException.class, () -> BinaryRuleset.write(at.getCompiledRuleset(), file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /* Utils */
+    private ClassNode readClass(byte[] rawClass) {
+        ClassNode classNode = new ClassNode();
+        new ClassReader(rawClass).accept(classNode, 0);
+        return classNode;
+    }
+
+    private byte[] getClass(Class<?> clazz) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try(InputStream is = this.getClass().getClassLoader().getResourceAsStream(ClassTools.unqualifyName(clazz) + ".class")) {
+            byte[] buf = new byte[4096];
+            int read;
+            while((read = is.read(buf)) != -1) baos.write(buf, 0, read);
+        }
+        return baos.toByteArray();
+    }
+}
@@ -0,0 +1,123 @@
+package eu.mikroskeem.test.orion.at;
+
+import eu.mikroskeem.orion.at.AccessTransformer;
+import eu.mikroskeem.orion.at.RulesetValidator;
+import eu.mikroskeem.orion.at.ValidationReport;
+import eu.mikroskeem.shuriken.instrumentation.ClassTools;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * @author Mark Vainomaa
+ */
+public class RulesetValidatorTest {
+    private final static String CLASS_NAME = TestClass1.class.getName();
+
+    @Test
+    public void testValidateClassDirectory() throws Exception {
+        AccessTransformer at = new AccessTransformer();
+        at.loadAccessTransformer("public " + CLASS_NAME + " a");
+        at.loadAccessTransformer("public " + CLASS_NAME + " noSuchField");
+        at.loadAccessTransformer("public " + CLASS_NAME + " a(I)V");
+        at.loadAccessTransformer("private " + CLASS_NAME + " d");
+        at.loadAccessTransformer("public eu.mikroskeem.test.orion.at.NoSuchClass");
+
+        Path classes = Paths.get(TestClass1.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        ValidationReport report = new RulesetValidator(at.getCompiledRuleset()).validate(Collections.singletonList(classes));
+
+        Assertions.assertFalse(report.isValid());
+        Assertions.assertEquals(1, report.getClassesScanned(), "Only classes with rules should be scanned");
+        Assertions.assertEquals(1, report.getMembersChanged());
+        Assertions.assertEquals(3, report.getUnmatchedRules().size(), report.getUnmatchedRules().toString());
+        Assertions.assertEquals(Collections.singleton("eu.mikroskeem.test.orion.at.NoSuchClass"), report.getMissingClasses());
+
+        Assertions.assertEquals(1, report.getDescriptorMismatches().size());
+        ValidationReport.DescriptorMismatch mismatch = report.getDescriptorMismatches().get(0);
+        Assertions.assertEquals("a(I)V", mismatch.getEntry().getDescriptor());
+        Assertions.assertEquals(Collections.singletonList("()V"), mismatch.getFoundDescriptors());
+
+        Assertions.assertEquals(1, report.getDeniedDowngrades().size());
+        Assertions.assertEquals("d", report.getDeniedDowngrades().get(0).getMemberName());
+    }
+
+    @Test
+    public void testValidateJar() throws Exception {
+        AccessTransformer at = new AccessTransformer();
+        at.loadAccessTransformers(getClass().getResourceAsStream("/test_method_at.cfg"));
+        at.loadAccessTransformers(getClass().getResourceAsStream("/test_private_method_at.cfg"));
+
+        Path jar = Files.createTempFile("validate", ".jar");
+        try {
+            try(ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(jar))) {
+                for (Class<?> clazz : Arrays.asList(TestClass1.class, TestClass3.class, TestClass5.class))
+                    writeEntry(out, ClassTools.unqualifyName(clazz) + ".class", getClass(clazz));
+                writeEntry(out, "README.txt", new byte[0]);
+            }
+
+            ValidationReport report = new RulesetValidator(at.getCompiledRuleset()).validate(Collections.singletonList(jar));
+            Assertions.assertTrue(report.isValid(), report.getUnmatchedRules().toString());
+            Assertions.assertTrue(report.getMissingClasses().isEmpty());
+            Assertions.assertTrue(report.getMembersChanged() > 0);
+        } finally {
+            Files.deleteIfExists(jar);
+        }
+    }
+
+    @Test
+    public void testFirstCopyOnClasspathIsScanned() throws Exception {
+        AccessTransformer at = new AccessTransformer();
+        at.loadAccessTransformer("public " + CLASS_NAME + " a");
+        String entryName = ClassTools.unqualifyName(TestClass1.class) + ".class";
+
+        Path real = Files.createTempFile("validate-real", ".jar");
+        Path shadowed = Files.createTempFile("validate-shadowed", ".jar");
+        try {
+            try(ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(real))) {
+                writeEntry(out, entryName, getClass(TestClass1.class));
+            }
+            /* Some other class under the same name, which does not have field 'a' */
+            try(ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(shadowed))) {
+                writeEntry(out, entryName, getClass(TestClass5.class));
+            }
+
+            RulesetValidator validator = new RulesetValidator(at.getCompiledRuleset());
+            for (int i = 0; i < 10; i++) {
+                Assertions.assertTrue(validator.validate(Arrays.asList(real, shadowed)).isValid(),
+                        "Shadowed copy should not be scanned");
+                Assertions.assertEquals(1, validator.validate(Arrays.asList(shadowed, real)).getUnmatchedRules().size(),
+                        "First copy should be scanned");
+            }
+        } finally {
+            Files.deleteIfExists(real);
+            Files.deleteIfExists(shadowed);
+        }
+    }
+
+    /* Utils */
+    private void writeEntry(ZipOutputStream out, String name, byte[] data) throws IOException {
+        out.putNextEntry(new ZipEntry(name));
+        out.write(data);
+        out.closeEntry();
+    }
+
+    private byte[] getClass(Class<?> clazz) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try(InputStream is = this.getClass().getClassLoader().getResourceAsStream(ClassTools.unqualifyName(clazz) + ".class")) {
+            byte[] buf = new byte[4096];
+            int read;
+            while((read = is.read(buf)) != -1) baos.write(buf, 0, read);
+        }
+        return baos.toByteArray();
+    }
+}
@@ -0,0 +1,18 @@
+package eu.mikroskeem.test.orion.at;
+
+/**
+ * @author Mark Vainomaa
+ */
+public class TestClass5 {
+    public int sum(int n) {
+        return twice(fib(n));
+    }
+
+    private int fib(int n) {
+        return n < 2 ? n : fib(n - 1) + fib(n - 2);
+    }
+
+    private int twice(int n) {
+        return n * 2;
+    }
+}
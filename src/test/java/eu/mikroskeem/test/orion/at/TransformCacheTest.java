@@ -0,0 +1,211 @@
+package eu.mikroskeem.test.orion.at;
+
+import eu.mikroskeem.orion.at.AccessTransformer;
+import eu.mikroskeem.orion.at.DiskTransformCache;
+import eu.mikroskeem.orion.at.FrozenAccessTransformer;
+import eu.mikroskeem.orion.at.MemoryTransformCache;
+import eu.mikroskeem.orion.at.TransformCache;
+import eu.mikroskeem.shuriken.instrumentation.ClassTools;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * @author Mark Vainomaa
+ */
+public class TransformCacheTest {
+    @Test
+    public void testRulesetFingerprint() throws Exception {
+        AccessTransformer first = new AccessTransformer();
+        first.loadAccessTransformer("public eu.mikroskeem.test.orion.at.TestClass1 a");
+        first.loadAccessTransformer("public-f eu.mikroskeem.test.orion.at.TestClass2");
+        AccessTransformer second = new AccessTransformer();
+        second.loadAccessTransformer("public-f eu.mikroskeem.test.orion.at.TestClass2");
+        second.loadAccessTransformer("public eu.mikroskeem.test.orion.at.TestClass1 a");
+        second.loadAccessTransformer("public eu.mikroskeem.test.orion.at.TestClass1 a");
+
+        Assertions.assertArrayEquals(first.getCompiledRuleset().getFingerprint(),
+                second.getCompiledRuleset().getFingerprint(), "Entry order and duplicates should not matter");
+
+        second.loadAccessTransformer("protected eu.mikroskeem.test.orion.at.TestClass1 b");
+        Assertions.assertFalse(Arrays.equals(first.getCompiledRuleset().getFingerprint(),
+                second.getCompiledRuleset().getFingerprint()), "Different rules should have different fingerprints");
+    }
+
+    @Test
+    public void testDiskTransformCache() throws Exception {
+        Path directory = Files.createTempDirectory("orion-at-cache");
+        try {
+            byte[] source = getClass(TestClass2.class);
+            byte[] untouched = getClass(TestClass1.class);
+
+            CountingCache cold = new CountingCache(new DiskTransformCache(directory, 1024 * 1024));
+            FrozenAccessTransformer coldAt = setupAt("test_class_at.cfg").freeze().withCache(cold);
+            byte[] transformed = coldAt.transformClass(source);
+            Assertions.assertSame(untouched, coldAt.transformClass(untouched), "Untouched class should be passed through");
+            Assertions.assertEquals(0, cold.hits.get(), "Cold cache should not have hits");
+            Assertions.assertEquals(1, listEntries(directory).size(), "Only affected class should be cached");
+
+            /* Fresh cache instance on same directory, as if JVM was restarted */
+            CountingCache warm = new CountingCache(new DiskTransformCache(directory, 1024 * 1024));
+            FrozenAccessTransformer warmAt = setupAt("test_class_at.cfg").freeze().withCache(warm);
+            Assertions.assertArrayEquals(transformed, warmAt.transformClass(source), "Cached class should match");
+            Assertions.assertEquals(1, warm.hits.get(), "Warm cache should have a hit");
+
+            /* Different ruleset must not see cached result */
+            FrozenAccessTransformer otherAt = setupAt("test_method_at.cfg").freeze().withCache(warm);
+            otherAt.transformClass(getClass(TestClass1.class));
+            Assertions.assertEquals(1, warm.hits.get(), "Different ruleset should miss");
+
+            /* Corrupt entries are discarded */
+            for (Path entry : listEntries(directory))
+                Files.write(entry, new byte[] { 1, 2, 3 });
+            Assertions.assertNull(new DiskTransformCache(directory, 1024 * 1024).get(coldAt.getCacheKey(source)),
+                    "Corrupt entry should be a miss");
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    @Test
+    public void testDiskTransformCacheEviction() throws Exception {
+        Path directory = Files.createTempDirectory("orion-at-cache");
+        try {
+            DiskTransformCache cache = new DiskTransformCache(directory, 4096);
+            byte[] value = new byte[1000];
+            for (int i = 0; i < 20; i++) {
+                cache.put(key(i), value);
+            }
+
+            long total = 0;
+            for (Path entry : listEntries(directory))
+                total += Files.size(entry);
+            Assertions.assertTrue(total <= 4096, "Cache size should stay within limit, was " + total);
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    @Test
+    public void testMemoryTransformCache() throws Exception {
+        byte[] source = getClass(TestClass2.class);
+        MemoryTransformCache cache = new MemoryTransformCache(1024 * 1024);
+
+        /* Fresh snapshots, as if classes were loaded by several classloaders */
+        byte[] transformed = setupAt("test_class_at.cfg").freeze().withCache(cache).transformClass(source);
+        for (int i = 0; i < 10; i++) {
+            byte[] cached = setupAt("test_class_at.cfg").freeze().withCache(cache).transformClass(source);
+            Assertions.assertArrayEquals(transformed, cached, "Cached class should match");
+            Assertions.assertNotSame(transformed, cached, "Cached class should be a copy");
+        }
+
+        Assertions.assertEquals(10, cache.getHitCount(), "Repeated loads should hit");
+        Assertions.assertEquals(1, cache.getMissCount(), "First load should miss");
+        Assertions.assertEquals(1, cache.getEntryCount());
+    }
+
+    @Test
+    public void testMemoryTransformCacheEviction() throws Exception {
+        CountingCache next = new CountingCache(new MemoryTransformCache(1024 * 1024));
+        MemoryTransformCache cache = new MemoryTransformCache(4096, next);
+        TransformCache.Key first = key(0);
+        cache.put(first, new byte[1000]);
+        for (int i = 1; i < 20; i++) {
+            cache.put(key(i), new byte[1000]);
+
+            /* Keep first entry recently used */
+            Assertions.assertNotNull(cache.get(first), "Recently used entry should not be evicted");
+        }
+
+        Assertions.assertTrue(cache.getSize() <= 4096, "Cache size should stay within limit, was " + cache.getSize());
+        Assertions.assertTrue(cache.getEvictionCount() > 0, "Entries should have been evicted");
+        Assertions.assertEquals(0, next.hits.get(), "Recently used entry should not be looked up from next cache");
+
+        /* Evicted entries are found from next cache */
+        Assertions.assertNotNull(cache.get(key(1)), "Evicted entry should be found from next cache");
+        Assertions.assertEquals(1, next.hits.get());
+    }
+
+    @Test
+    public void testMemoryTransformCacheConcurrentAccess() throws Exception {
+        MemoryTransformCache cache = new MemoryTransformCache(16 * 1024 * 1024);
+        IntStream.range(0, 100).parallel().forEach(i -> cache.put(key(i), new byte[] { (byte) i }));
+        IntStream.range(0, 100).parallel().forEach(i ->
+                Assertions.assertArrayEquals(new byte[] { (byte) i }, cache.get(key(i)), "Entry " + i + " should be found"));
+
+        Assertions.assertEquals(100, cache.getEntryCount());
+        Assertions.assertEquals(100, cache.getHitCount());
+        Assertions.assertEquals(0, cache.getEvictionCount());
+        cache.clear();
+        Assertions.assertEquals(0, cache.getSize());
+    }
+
+    /* Utils */
+    private static TransformCache.Key key(int i) {
+        byte[] digest = new byte[32];
+        digest[0] = (byte) i;
+        return new TransformCache.Key(digest);
+    }
+
+    private AccessTransformer setupAt(String file) throws IOException {
+        AccessTransformer at = new AccessTransformer();
+        at.loadAccessTransformers(this.getClass().getResourceAsStream("/" + file));
+        return at;
+    }
+
+    private byte[] getClass(Class<?> clazz) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try(InputStream is = this.getClass().getClassLoader().getResourceAsStream(ClassTools.unqualifyName(clazz) + ".class")) {
+            byte[] buf = new byte[4096];
+            int read;
+            while((read = is.read(buf)) != -1) baos.write(buf, 0, read);
+        }
+        return baos.toByteArray();
+    }
+
+    private static List<Path> listEntries(Path directory) throws IOException {
+        try(Stream<Path> files = Files.walk(directory)) {
+            return files.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try(Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList()))
+                Files.deleteIfExists(path);
+        }
+    }
+
+    private static class CountingCache implements TransformCache {
+        private final TransformCache delegate;
+        private final AtomicInteger hits = new AtomicInteger();
+
+        private CountingCache(TransformCache delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public byte[] get(Key key) {
+            byte[] value = delegate.get(key);
+            if(value != null) hits.incrementAndGet();
+            return value;
+        }
+
+        @Override
+        public void put(Key key, byte[] value) {
+            delegate.put(key, value);
+        }
+    }
+}
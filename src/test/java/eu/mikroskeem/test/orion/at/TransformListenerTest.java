@@ -0,0 +1,105 @@
+package eu.mikroskeem.test.orion.at;
+
+import eu.mikroskeem.orion.at.AccessTransformEntry;
+import eu.mikroskeem.orion.at.AccessTransformer;
+import eu.mikroskeem.orion.at.Slf4jTransformListener;
+import eu.mikroskeem.orion.at.TransformListener;
+import eu.mikroskeem.orion.at.TransformMode;
+import eu.mikroskeem.shuriken.instrumentation.ClassTools;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author Mark Vainomaa
+ */
+public class TransformListenerTest {
+    private final static String TEST_CLASS_1 = "eu/mikroskeem/test/orion/at/TestClass1";
+
+    @Test
+    public void testTransformListener() throws Exception {
+        byte[] source = getClass(TestClass1.class);
+        List<String> expected = null;
+
+        /* Wildcard method rule deprivatizes methods, so patching falls back to ASM */
+        for (TransformMode mode : TransformMode.values()) {
+            RecordingListener listener = new RecordingListener();
+            AccessTransformer at = new AccessTransformer();
+            at.setTransformMode(mode);
+            at.setTransformListener(listener);
+            at.loadAccessTransformer("public eu.mikroskeem.test.orion.at.TestClass1 a");
+            at.loadAccessTransformer("private eu.mikroskeem.test.orion.at.TestClass1 d");
+            at.loadAccessTransformer("protected eu.mikroskeem.test.orion.at.TestClass1 *()");
+            Assertions.assertEquals(3, listener.parsed.size(), mode.name());
+
+            at.transformClass(source);
+            Assertions.assertTrue(listener.events.contains("changed " + TEST_CLASS_1 + " a null 2 -> 1"), mode.name());
+            Assertions.assertTrue(listener.events.contains("changed " + TEST_CLASS_1 + " a ()V 2 -> 4"), mode.name());
+            Assertions.assertTrue(listener.events.contains("denied " + TEST_CLASS_1 + " d null"), mode.name());
+            Assertions.assertTrue(listener.events.contains("denied " + TEST_CLASS_1 + " d ()V"), mode.name());
+            Assertions.assertEquals("processed " + TEST_CLASS_1 + " true", listener.events.get(listener.events.size() - 1));
+
+            /* All modes should report the same events, although order may differ */
+            List<String> events = new ArrayList<>(listener.events);
+            Collections.sort(events);
+            if(expected == null)
+                expected = events;
+            Assertions.assertEquals(expected, events, mode.name());
+        }
+    }
+
+    @Test
+    public void testSlf4jTransformListener() throws Exception {
+        AccessTransformer at = new AccessTransformer();
+        at.setTransformListener(new Slf4jTransformListener());
+        at.loadAccessTransformer("public eu.mikroskeem.test.orion.at.TestClass1 a");
+        at.loadAccessTransformer("private eu.mikroskeem.test.orion.at.TestClass1 d");
+        Assertions.assertNotSame(getClass(TestClass1.class), at.transformClass(getClass(TestClass1.class)));
+    }
+
+    /* Utils */
+    private byte[] getClass(Class<?> clazz) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try(InputStream is = this.getClass().getClassLoader().getResourceAsStream(ClassTools.unqualifyName(clazz) + ".class")) {
+            byte[] buf = new byte[4096];
+            int read;
+            while((read = is.read(buf)) != -1) baos.write(buf, 0, read);
+        }
+        return baos.toByteArray();
+    }
+
+    private static class RecordingListener implements TransformListener {
+        private final List<AccessTransformEntry> parsed = new ArrayList<>();
+        private final List<String> events = new ArrayList<>();
+
+        @Override
+        public void ruleParsed(@NonNull String line, @NonNull AccessTransformEntry entry) {
+            parsed.add(entry);
+        }
+
+        @Override
+        public void classProcessed(@NonNull String className, boolean changed) {
+            events.add("processed " + className + " " + changed);
+        }
+
+        @Override
+        public void memberChanged(@NonNull String className, @Nullable String memberName, @Nullable String memberDesc,
+                                  int oldAccess, int newAccess) {
+            events.add("changed " + className + " " + memberName + " " + memberDesc + " " + oldAccess + " -> " + newAccess);
+        }
+
+        @Override
+        public void downgradeDenied(@NonNull AccessTransformEntry entry, @Nullable String memberName,
+                                    @Nullable String memberDesc, int access) {
+            events.add("denied " + entry.getClassName().replace('.', '/') + " " + memberName + " " + memberDesc);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package eu.mikroskeem.test.orion.at;
+
+import eu.mikroskeem.orion.at.AccessTransformEntry;
+import eu.mikroskeem.orion.at.AccessTransformer;
+import eu.mikroskeem.orion.at.FrozenAccessTransformer;
+import eu.mikroskeem.orion.at.TransformMetrics;
+import eu.mikroskeem.orion.at.TransformMode;
+import eu.mikroskeem.orion.at.TransformStatistics;
+import eu.mikroskeem.shuriken.instrumentation.ClassTools;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * @author Mark Vainomaa
+ */
+public class TransformMetricsTest {
+    @Test
+    public void testTransformStatistics() throws Exception {
+        byte[] source = getClass(TestClass1.class);
+        byte[] untouched = getClass(TestClass3.class);
+
+        /* Wildcard method rule deprivatizes methods, so patching falls back to ASM */
+        for (TransformMode mode : TransformMode.values()) {
+            TransformStatistics statistics = new TransformStatistics();
+            AccessTransformer at = new AccessTransformer();
+            at.setTransformMode(mode);
+            at.setTransformMetrics(statistics);
+            at.loadAccessTransformer("public eu.mikroskeem.test.orion.at.TestClass1 a");
+            at.loadAccessTransformer("public eu.mikroskeem.test.orion.at.TestClass1 b");
+            at.loadAccessTransformer("public eu.mikroskeem.test.orion.at.TestClass1 d");
+            at.loadAccessTransformer("public eu.mikroskeem.test.orion.at.TestClass1 missing");
+            at.loadAccessTransformer("public eu.mikroskeem.test.orion.at.TestClass1 *()");
+            at.loadAccessTransformer("public eu.mikroskeem.test.orion.at.Missing");
+
+            at.transformClass(source);
+            at.transformClass(source);
+            Assertions.assertSame(untouched, at.transformClass(untouched));
+
+            Assertions.assertEquals(3, statistics.getClassesSeen(), mode.name());
+            Assertions.assertEquals(1, statistics.getClassesSkipped(), mode.name());
+            Assertions.assertEquals(2, statistics.getClassesModified(), mode.name());
+            Assertions.assertTrue(statistics.getNanosSpent() > 0, mode.name());
+
+            /* Fields 'a' and 'b', two constructors, and methods 'a', 'b', 'c', 'g' and 'h', twice */
+            Assertions.assertEquals(18, statistics.getMembersRewritten(), mode.name());
+
+            /* 'd' matches but changes nothing, wildcard matches every method but <clinit> */
+            AccessTransformEntry d = new AccessTransformEntry("public eu.mikroskeem.test.orion.at.TestClass1 d");
+            AccessTransformEntry wildcard = new AccessTransformEntry("public eu.mikroskeem.test.orion.at.TestClass1 *()");
+            Assertions.assertEquals(2, statistics.getRuleHits(d), mode.name());
+            Assertions.assertEquals(2 * 11, statistics.getRuleHits(wildcard), mode.name());
+
+            Set<String> unmatched = statistics.getUnmatchedRules(at.getCompiledRuleset()).stream()
+                    .map(AccessTransformEntry::toString)
+                    .collect(Collectors.toSet());
+            Assertions.assertEquals(new HashSet<>(Arrays.asList(
+                    new AccessTransformEntry("public eu.mikroskeem.test.orion.at.TestClass1 missing").toString(),
+                    new AccessTransformEntry("public eu.mikroskeem.test.orion.at.Missing").toString()
+            )), unmatched, mode.name());
+        }
+    }
+
+    @Test
+    public void testNoopMetrics() throws Exception {
+        AccessTransformer at = new AccessTransformer();
+        at.loadAccessTransformer("public eu.mikroskeem.test.orion.at.TestClass1 a");
+        FrozenAccessTransformer frozen = at.freeze();
+        Assertions.assertSame(TransformMetrics.NOOP, frozen.getMetrics());
+
+        TransformStatistics statistics = new TransformStatistics();
+        FrozenAccessTransformer measured = frozen.withMetrics(statistics);
+        Assertions.assertArrayEquals(frozen.transformClass(getClass(TestClass1.class)),
+                measured.transformClass(getClass(TestClass1.class)));
+        Assertions.assertEquals(1, statistics.getClassesModified());
+
+        statistics.reset();
+        Assertions.assertEquals(0, statistics.getClassesSeen());
+        Assertions.assertTrue(statistics.getRuleHits().isEmpty());
+    }
+
+    /* Utils */
+    private byte[] getClass(Class<?> clazz) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try(InputStream is = this.getClass().getClassLoader().getResourceAsStream(ClassTools.unqualifyName(clazz) + ".class")) {
+            byte[] buf = new byte[4096];
+            int read;
+            while((read = is.read(buf)) != -1) baos.write(buf, 0, read);
+        }
+        return baos.toByteArray();
+    }
+}
@@ -0,0 +1,136 @@
+package eu.mikroskeem.test.orion.at;
+
+import eu.mikroskeem.orion.at.AccessTransformer;
+import eu.mikroskeem.orion.at.TransformMode;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.InnerClassNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Differential tests comparing {@link TransformMode}s against each other
+ *
+ * @author Mark Vainomaa
+ */
+public class TransformModeTest {
+    private final static String[] AT_FILES = {
+            "test_class_at.cfg",
+            "test_field_at.cfg",
+            "test_inner_class_at.cfg",
+            "test_method_at.cfg",
+            "test_method_final_remove_at.cfg",
+            "test_method_wildcard_final_remove_at.cfg",
+            "test_private_method_at.cfg",
+            "test_wildcard_final_remove_at.cfg",
+    };
+
+    private final static String[] CLASSES = {
+            "eu.mikroskeem.test.orion.at.TestClass1",
+            "eu.mikroskeem.test.orion.at.TestClass2",
+            "eu.mikroskeem.test.orion.at.TestClass3",
+            "eu.mikroskeem.test.orion.at.TestClass4",
+            "eu.mikroskeem.test.orion.at.TestClass4$InnerClass1",
+            "eu.mikroskeem.test.orion.at.TestClass4$InnerClass2",
+            "eu.mikroskeem.test.orion.at.TestClass5",
+    };
+
+    @Test
+    public void testPatchedClassesMatchVisitorOutput() throws Exception {
+        for (String atFile : AT_FILES) {
+            for (String className : CLASSES) {
+                byte[] source = getClass(className);
+                String expected = describe(transform(atFile, TransformMode.REBUILD, source));
+
+                for (TransformMode transformMode : TransformMode.values()) {
+                    Assertions.assertEquals(expected, describe(transform(atFile, transformMode, source)),
+                            "Output of " + transformMode + " for " + className + " with " + atFile);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testPatchAccessFlagsKeepsClassLayout() throws Exception {
+        byte[] source = getClass("eu.mikroskeem.test.orion.at.TestClass1");
+        byte[] patched = transform("test_field_at.cfg", TransformMode.PATCH_ACCESS_FLAGS, source);
+
+        Assertions.assertNotSame(source, patched, "Class must be copied before patching");
+        Assertions.assertEquals(source.length, patched.length, "Patched class must have same size as original");
+    }
+
+    @Test
+    public void testCallSitesRewrittenInAllMethods() throws Exception {
+        byte[] source = getClass("eu.mikroskeem.test.orion.at.TestClass5");
+        for (TransformMode transformMode : TransformMode.values()) {
+            ClassNode classNode = new ClassNode();
+            new ClassReader(transform("test_private_method_at.cfg", transformMode, source)).accept(classNode, 0);
+
+            for (MethodNode method : classNode.methods) {
+                for (AbstractInsnNode insn = method.instructions.getFirst(); insn != null; insn = insn.getNext()) {
+                    if(!(insn instanceof MethodInsnNode) || !((MethodInsnNode) insn).owner.equals(classNode.name))
+                        continue;
+
+                    /* fib is turned public, twice stays private */
+                    MethodInsnNode methodInsn = (MethodInsnNode) insn;
+                    int expected = methodInsn.name.equals("fib") ? Opcodes.INVOKEVIRTUAL : Opcodes.INVOKESPECIAL;
+                    Assertions.assertEquals(expected, methodInsn.getOpcode(),
+                            transformMode + ": call to " + methodInsn.name + " in " + method.name);
+                }
+            }
+        }
+    }
+
+    /* Utils */
+    private byte[] transform(String atFile, TransformMode transformMode, byte[] source) throws IOException {
+        AccessTransformer at = new AccessTransformer();
+        at.setTransformMode(transformMode);
+        at.loadAccessTransformers(this.getClass().getResourceAsStream("/" + atFile));
+        return at.transformClass(source);
+    }
+
+    private byte[] getClass(String className) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try(InputStream is = this.getClass().getResourceAsStream("/" + className.replace('.', '/') + ".class")) {
+            byte[] buf = new byte[4096];
+            int read;
+            while((read = is.read(buf)) != -1) baos.write(buf, 0, read);
+        }
+        return baos.toByteArray();
+    }
+
+    private String describe(byte[] rawClass) {
+        ClassNode classNode = new ClassNode();
+        new ClassReader(rawClass).accept(classNode, 0);
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("class ").append(classNode.name).append(' ').append(classNode.access).append('\n');
+        for (InnerClassNode innerClass : classNode.innerClasses)
+            sb.append("inner ").append(innerClass.name).append(' ').append(innerClass.access).append('\n');
+        for (FieldNode field : classNode.fields)
+            sb.append("field ").append(field.name).append(field.desc).append(' ').append(field.access).append('\n');
+        for (MethodNode method : classNode.methods) {
+            sb.append("method ").append(method.name).append(method.desc).append(' ').append(method.access).append('\n');
+            for (AbstractInsnNode insn = method.instructions.getFirst(); insn != null; insn = insn.getNext()) {
+                if(insn.getOpcode() == -1)
+                    continue;
+                sb.append("  ").append(insn.getOpcode());
+                if(insn instanceof MethodInsnNode) {
+                    MethodInsnNode methodInsn = (MethodInsnNode) insn;
+                    sb.append(' ').append(methodInsn.owner).append('.').append(methodInsn.name).append(methodInsn.desc);
+                }
+                sb.append('\n');
+            }
+        }
+        return sb.toString();
+    }
+}
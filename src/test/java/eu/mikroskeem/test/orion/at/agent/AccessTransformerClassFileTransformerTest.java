@@ -0,0 +1,84 @@
+package eu.mikroskeem.test.orion.at.agent;
+
+import eu.mikroskeem.orion.at.AccessTransformer;
+import eu.mikroskeem.orion.at.ReloadableAccessTransformer;
+import eu.mikroskeem.orion.at.TransformListener;
+import eu.mikroskeem.orion.at.agent.AccessTransformerClassFileTransformer;
+import eu.mikroskeem.shuriken.instrumentation.ClassTools;
+import eu.mikroskeem.test.orion.at.TestClass1;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Mark Vainomaa
+ */
+public class AccessTransformerClassFileTransformerTest {
+    /* Package-private, so can be referred only by name */
+    private final static String CLASS_2 = "eu/mikroskeem/test/orion/at/TestClass2";
+
+    @Test
+    public void testClassFileTransformer() throws Exception {
+        AccessTransformer at = new AccessTransformer();
+        at.loadAccessTransformers(this.getClass().getResourceAsStream("/test_class_at.cfg"));
+        AccessTransformerClassFileTransformer transformer =
+                new AccessTransformerClassFileTransformer(new ReloadableAccessTransformer(at.freeze()));
+
+        Assertions.assertNotNull(transform(transformer, CLASS_2), "TestClass2 should be transformed");
+        Assertions.assertNull(transform(transformer, ClassTools.unqualifyName(TestClass1.class)), "TestClass1 has no rules");
+
+        /* Class is rejected by name before its bytes are looked at */
+        Assertions.assertNull(transformer.transform(null, "java/lang/String", null, null, new byte[0]),
+                "Class without rules should be rejected by name");
+    }
+
+    @Test
+    public void testUnchangedClassReturnsNull() throws Exception {
+        /* Rule which does not change anything still passes name filter */
+        AccessTransformer at = new AccessTransformer();
+        at.loadAccessTransformer("private " + TestClass1.class.getName() + " a");
+        AccessTransformerClassFileTransformer transformer =
+                new AccessTransformerClassFileTransformer(new ReloadableAccessTransformer(at.freeze()));
+
+        Assertions.assertNull(transform(transformer, ClassTools.unqualifyName(TestClass1.class)), "Unchanged class should not be returned");
+    }
+
+    @Test
+    public void testMalformedClassIsReported() throws Exception {
+        AccessTransformer at = new AccessTransformer();
+        at.loadAccessTransformers(this.getClass().getResourceAsStream("/test_class_at.cfg"));
+        List<String> failed = new ArrayList<>();
+        AccessTransformerClassFileTransformer transformer = new AccessTransformerClassFileTransformer(
+                new ReloadableAccessTransformer(at.freeze().withListener(new TransformListener() {
+                    @Override
+                    public void classFailed(String className, RuntimeException cause) {
+                        failed.add(className);
+                    }
+                })));
+
+        Assertions.assertNull(transformer.transform(null, CLASS_2, null, null, new byte[] { 1, 2, 3 }),
+                "Malformed class should be left unchanged");
+        Assertions.assertEquals(1, failed.size(), "Failure should be reported to listener");
+        Assertions.assertEquals(CLASS_2, failed.get(0));
+    }
+
+    /* Utils */
+    private byte[] transform(AccessTransformerClassFileTransformer transformer, String internalName) throws IOException {
+        return transformer.transform(null, internalName, null, null, getClass(internalName));
+    }
+
+    private byte[] getClass(String internalName) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try(InputStream is = this.getClass().getClassLoader().getResourceAsStream(internalName + ".class")) {
+            byte[] buf = new byte[4096];
+            int read;
+            while((read = is.read(buf)) != -1) baos.write(buf, 0, read);
+        }
+        return baos.toByteArray();
+    }
+}
@@ -0,0 +1,321 @@
+package eu.mikroskeem.test.orion.at.jar;
+
+import eu.mikroskeem.orion.at.AccessTransformer;
+import eu.mikroskeem.orion.at.CompiledRuleset;
+import eu.mikroskeem.orion.at.FrozenAccessTransformer;
+import eu.mikroskeem.orion.at.RulesetDiff;
+import eu.mikroskeem.orion.at.TransformListener;
+import eu.mikroskeem.orion.at.TransformMode;
+import eu.mikroskeem.orion.at.jar.JarTransformer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * @author Mark Vainomaa
+ */
+public class JarTransformerTest {
+    private final static String CLASS_2 = "eu/mikroskeem/test/orion/at/TestClass2.class";
+    private final static String CLASS_3 = "eu/mikroskeem/test/orion/at/TestClass3.class";
+    private final static long TIME = 1500000000000L;
+
+    @Test
+    public void testJarTransform() throws Exception {
+        AccessTransformer at = new AccessTransformer();
+        at.loadAccessTransformers(this.getClass().getResourceAsStream("/test_class_at.cfg"));
+        byte[] resource = "Hello, world!".getBytes(StandardCharsets.UTF_8);
+
+        /* Transform it with tiny memory window to exercise draining */
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new JarTransformer(at.freeze(), ForkJoinPool.commonPool(), 1)
+                .transform(new ByteArrayInputStream(buildJar(resource)), output);
+
+        verifyJar(output.toByteArray(), resource);
+    }
+
+    @Test
+    public void testJarFileTransform() throws Exception {
+        AccessTransformer at = new AccessTransformer();
+        at.loadAccessTransformers(this.getClass().getResourceAsStream("/test_class_at.cfg"));
+        byte[] resource = "Hello, world!".getBytes(StandardCharsets.UTF_8);
+
+        Path input = Files.createTempFile("orion-at-input", ".jar");
+        Path output = Files.createTempFile("orion-at-output", ".jar");
+        try {
+            Files.write(input, buildJar(resource));
+            new JarTransformer(at.freeze(), ForkJoinPool.commonPool(), 1).transform(input, output);
+            verifyJar(Files.readAllBytes(output), resource);
+
+            /* Untouched entries must be copied with their compressed data as-is */
+            try(ZipFile inputZip = new ZipFile(input.toFile()); ZipFile outputZip = new ZipFile(output.toFile())) {
+                for (String name : Arrays.asList("META-INF/MANIFEST.MF", "resource.txt", CLASS_3)) {
+                    ZipEntry original = inputZip.getEntry(name);
+                    ZipEntry copied = outputZip.getEntry(name);
+                    Assertions.assertEquals(original.getMethod(), copied.getMethod(), "Entry " + name + " method");
+                    Assertions.assertEquals(original.getCrc(), copied.getCrc(), "Entry " + name + " CRC");
+                    Assertions.assertEquals(original.getCompressedSize(), copied.getCompressedSize(),
+                            "Entry " + name + " compressed size");
+                }
+            }
+        } finally {
+            Files.deleteIfExists(input);
+            Files.deleteIfExists(output);
+        }
+    }
+
+    @Test
+    public void testIncrementalJarFileTransform() throws Exception {
+        AccessTransformer previousAt = new AccessTransformer();
+        previousAt.loadAccessTransformers(this.getClass().getResourceAsStream("/test_class_at.cfg"));
+        AccessTransformer at = new AccessTransformer();
+        at.loadAccessTransformers(this.getClass().getResourceAsStream("/test_class_at.cfg"));
+        at.loadAccessTransformer("public-f eu.mikroskeem.test.orion.at.TestClass3 h(Ljava/lang/String;)V");
+
+        RulesetDiff diff = RulesetDiff.compute(previousAt.getCompiledRuleset(), at.getCompiledRuleset());
+        Assertions.assertEquals(Collections.singleton("eu.mikroskeem.test.orion.at.TestClass3"), diff.getChangedClasses());
+
+        byte[] resource = "Hello, world!".getBytes(StandardCharsets.UTF_8);
+        Path input = Files.createTempFile("orion-at-input", ".jar");
+        Path previousOutput = Files.createTempFile("orion-at-previous", ".jar");
+        Path output = Files.createTempFile("orion-at-output", ".jar");
+        try {
+            Files.write(input, buildJar(resource));
+            new JarTransformer(previousAt.freeze()).transform(input, previousOutput);
+
+            /* Previous output of classes with unchanged rules is reused without transforming them again */
+            Set<String> processed = ConcurrentHashMap.newKeySet();
+            new JarTransformer(at.freeze().withListener(recordProcessed(processed)), ForkJoinPool.commonPool(), 1)
+                    .transform(input, output, previousOutput, previousAt.getCompiledRuleset());
+            Assertions.assertEquals(Collections.singleton(CLASS_3.replace(".class", "")), processed);
+
+            try(ZipFile previousZip = new ZipFile(previousOutput.toFile()); ZipFile outputZip = new ZipFile(output.toFile())) {
+                Assertions.assertArrayEquals(readFully(previousZip.getInputStream(previousZip.getEntry(CLASS_2))),
+                        readFully(outputZip.getInputStream(outputZip.getEntry(CLASS_2))));
+                Assertions.assertArrayEquals(resource, readFully(outputZip.getInputStream(outputZip.getEntry("resource.txt"))));
+
+                byte[] class3 = readFully(outputZip.getInputStream(outputZip.getEntry(CLASS_3)));
+                ClassNode classNode = new ClassNode();
+                new ClassReader(class3).accept(classNode, 0);
+                for (MethodNode method : classNode.methods) {
+                    if(method.name.equals("h"))
+                        Assertions.assertFalse(Modifier.isFinal(method.access), "TestClass3.h should be transformed");
+                }
+            }
+        } finally {
+            Files.deleteIfExists(input);
+            Files.deleteIfExists(previousOutput);
+            Files.deleteIfExists(output);
+        }
+    }
+
+    @Test
+    public void testIncrementalJarFileTransformWithChangedInput() throws Exception {
+        AccessTransformer at = new AccessTransformer();
+        at.loadAccessTransformers(this.getClass().getResourceAsStream("/test_class_at.cfg"));
+        CompiledRuleset ruleset = at.getCompiledRuleset();
+        String class2Name = CLASS_2.replace(".class", "");
+        byte[] resource = "Hello, world!".getBytes(StandardCharsets.UTF_8);
+
+        Path previousInput = Files.createTempFile("orion-at-previous-input", ".jar");
+        Path input = Files.createTempFile("orion-at-input", ".jar");
+        Path previousOutput = Files.createTempFile("orion-at-previous", ".jar");
+        Path output = Files.createTempFile("orion-at-output", ".jar");
+        try {
+            /* Previous input had different contents for TestClass2 */
+            try(ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(previousInput))) {
+                writeEntry(zos, "META-INF/MANIFEST.MF", "Manifest-Version: 1.0\n".getBytes(StandardCharsets.UTF_8), false);
+                writeEntry(zos, CLASS_2, readResource("/" + CLASS_3), false);
+            }
+            Files.write(input, buildJar(resource));
+            new JarTransformer(new FrozenAccessTransformer(ruleset, TransformMode.REBUILD)).transform(previousInput, previousOutput);
+
+            Set<String> processed = ConcurrentHashMap.newKeySet();
+            new JarTransformer(new FrozenAccessTransformer(ruleset, TransformMode.REBUILD).withListener(recordProcessed(processed)))
+                    .transform(input, output, previousOutput, ruleset);
+            Assertions.assertTrue(processed.contains(class2Name), "Changed input entry should be transformed again");
+            verifyJar(Files.readAllBytes(output), resource);
+
+            /* Output of the same input is reused, unless transform mode changes */
+            Files.copy(output, previousOutput, StandardCopyOption.REPLACE_EXISTING);
+            processed.clear();
+            new JarTransformer(new FrozenAccessTransformer(ruleset, TransformMode.REBUILD).withListener(recordProcessed(processed)))
+                    .transform(input, output, previousOutput, ruleset);
+            Assertions.assertFalse(processed.contains(class2Name), "Unchanged input entry should be reused");
+
+            processed.clear();
+            new JarTransformer(new FrozenAccessTransformer(ruleset, TransformMode.SHARE_CONSTANT_POOL).withListener(recordProcessed(processed)))
+                    .transform(input, output, previousOutput, ruleset);
+            Assertions.assertTrue(processed.contains(class2Name), "Entries should be transformed again when mode changes");
+            verifyJar(Files.readAllBytes(output), resource);
+        } finally {
+            Files.deleteIfExists(previousInput);
+            Files.deleteIfExists(input);
+            Files.deleteIfExists(previousOutput);
+            Files.deleteIfExists(output);
+        }
+    }
+
+    @Test
+    public void testMultiReleaseJarFileTransform() throws Exception {
+        AccessTransformer at = new AccessTransformer();
+        at.loadAccessTransformers(this.getClass().getResourceAsStream("/test_class_at.cfg"));
+        String versionedClass2 = "META-INF/versions/9/" + CLASS_2;
+
+        Path input = Files.createTempFile("orion-at-input", ".jar");
+        Path output = Files.createTempFile("orion-at-output", ".jar");
+        try {
+            try(ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(input))) {
+                writeEntry(zos, "META-INF/MANIFEST.MF", "Multi-Release: true\n".getBytes(StandardCharsets.UTF_8), false);
+                writeEntry(zos, CLASS_2, readResource("/" + CLASS_2), false);
+                writeEntry(zos, versionedClass2, readResource("/" + CLASS_2), false);
+            }
+
+            /* Memory-mapped path must give same output as streaming path */
+            new JarTransformer(at.freeze()).transform(input, output);
+            ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+            new JarTransformer(at.freeze()).transform(new ByteArrayInputStream(Files.readAllBytes(input)), streamed);
+
+            try(ZipFile outputZip = new ZipFile(output.toFile());
+                ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(streamed.toByteArray()))) {
+                ZipEntry entry;
+                while((entry = zis.getNextEntry()) != null) {
+                    byte[] data = readFully(outputZip.getInputStream(outputZip.getEntry(entry.getName())));
+                    Assertions.assertArrayEquals(readFully(zis), data, "Entry " + entry.getName() + " should match");
+                }
+
+                byte[] versioned = readFully(outputZip.getInputStream(outputZip.getEntry(versionedClass2)));
+                Assertions.assertTrue(Modifier.isPublic(new ClassReader(versioned).getAccess()),
+                        "Versioned TestClass2 should be transformed");
+            }
+        } finally {
+            Files.deleteIfExists(input);
+            Files.deleteIfExists(output);
+        }
+    }
+
+    @Test
+    public void testPrefixedJarFileTransform() throws Exception {
+        AccessTransformer at = new AccessTransformer();
+        at.loadAccessTransformers(this.getClass().getResourceAsStream("/test_class_at.cfg"));
+        byte[] prefix = "#!/bin/sh\nexec java -jar \"$0\" \"$@\"\n".getBytes(StandardCharsets.UTF_8);
+        byte[] jar = buildJar("Hello, world!".getBytes(StandardCharsets.UTF_8));
+        byte[] prefixed = new byte[prefix.length + jar.length];
+        System.arraycopy(prefix, 0, prefixed, 0, prefix.length);
+        System.arraycopy(jar, 0, prefixed, prefix.length, jar.length);
+
+        Path input = Files.createTempFile("orion-at-input", ".jar");
+        Path output = Files.createTempFile("orion-at-output", ".jar");
+        try {
+            /* Offsets of prepended jar are off, so it must go through the streaming path */
+            Files.write(input, prefixed);
+            new JarTransformer(at.freeze()).transform(input, output);
+            ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+            new JarTransformer(at.freeze()).transform(new ByteArrayInputStream(prefixed), streamed);
+            Assertions.assertArrayEquals(streamed.toByteArray(), Files.readAllBytes(output));
+        } finally {
+            Files.deleteIfExists(input);
+            Files.deleteIfExists(output);
+        }
+    }
+
+    /* Utils */
+    private static TransformListener recordProcessed(Set<String> processed) {
+        return new TransformListener() {
+            @Override
+            public void classProcessed(String className, boolean changed) {
+                processed.add(className);
+            }
+        };
+    }
+
+    private byte[] buildJar(byte[] resource) throws IOException {
+        ByteArrayOutputStream input = new ByteArrayOutputStream();
+        try(ZipOutputStream zos = new ZipOutputStream(input)) {
+            writeEntry(zos, "META-INF/MANIFEST.MF", "Manifest-Version: 1.0\n".getBytes(StandardCharsets.UTF_8), false);
+            writeEntry(zos, CLASS_2, readResource("/" + CLASS_2), false);
+            writeEntry(zos, "resource.txt", resource, true);
+            writeEntry(zos, CLASS_3, readResource("/" + CLASS_3), false);
+        }
+        return input.toByteArray();
+    }
+
+    private void verifyJar(byte[] jar, byte[] resource) throws IOException {
+        List<String> names = new ArrayList<>();
+        try(ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(jar))) {
+            ZipEntry entry;
+            while((entry = zis.getNextEntry()) != null) {
+                names.add(entry.getName());
+                Assertions.assertEquals(TIME, entry.getTime(), "Entry " + entry.getName() + " timestamp should be kept");
+                byte[] data = readFully(zis);
+                switch(entry.getName()) {
+                    case CLASS_2:
+                        int access = new ClassReader(data).getAccess();
+                        Assertions.assertTrue(Modifier.isPublic(access), "TestClass2 should be public after transform");
+                        Assertions.assertFalse(Modifier.isFinal(access), "TestClass2 shouldn't be final after transform");
+                        break;
+                    case CLASS_3:
+                        Assertions.assertArrayEquals(readResource("/" + CLASS_3), data, "TestClass3 should be untouched");
+                        break;
+                    case "resource.txt":
+                        Assertions.assertArrayEquals(resource, data, "Resource should be untouched");
+                        break;
+                }
+            }
+        }
+        Assertions.assertEquals(Arrays.asList("META-INF/MANIFEST.MF", CLASS_2, "resource.txt", CLASS_3), names,
+                "Entry order should be kept");
+    }
+
+    private static void writeEntry(ZipOutputStream zos, String name, byte[] data, boolean stored) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setTime(TIME);
+        if(stored) {
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(data.length);
+            entry.setCrc(crc.getValue());
+        }
+        zos.putNextEntry(entry);
+        zos.write(data);
+        zos.closeEntry();
+    }
+
+    private byte[] readResource(String name) throws IOException {
+        try(InputStream is = this.getClass().getResourceAsStream(name)) {
+            return readFully(is);
+        }
+    }
+
+    private static byte[] readFully(InputStream is) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        int read;
+        while((read = is.read(buf)) != -1) baos.write(buf, 0, read);
+        return baos.toByteArray();
+    }
+}